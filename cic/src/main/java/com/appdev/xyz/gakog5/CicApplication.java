@@ -2,8 +2,12 @@ package com.appdev.xyz.gakog5;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@PropertySource("classpath:defaults.properties")
+@EnableScheduling
 public class CicApplication {
 
 	public static void main(String[] args) {
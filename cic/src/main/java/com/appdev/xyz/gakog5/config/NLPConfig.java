@@ -1,14 +1,175 @@
 package com.appdev.xyz.gakog5.config;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.EmbeddingModel;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.HashingEmbeddingModel;
+import com.appdev.xyz.gakog5.service.llm.ChatCompletionClient;
+import com.appdev.xyz.gakog5.service.llm.CircuitBreaker;
+import com.appdev.xyz.gakog5.service.llm.GradientConcurrencyLimit;
+import com.appdev.xyz.gakog5.service.llm.HedgingChatCompletionClient;
+import com.appdev.xyz.gakog5.service.llm.HttpChatCompletionClient;
+import com.appdev.xyz.gakog5.service.llm.ResilientChatCompletionClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 public class NLPConfig {
-    
+
+    @Value("${groq.api.url:https://api.groq.com/openai/v1/chat/completions}")
+    private String groqApiUrl;
+
+    @Value("${groq.api.key}")
+    private String groqApiKey;
+
+    @Value("${llm.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    @Value("${llm.http.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${llm.http.total-timeout-ms:45000}")
+    private long totalTimeoutMs;
+
+    @Value("${llm.http.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${llm.http.io-threads:4}")
+    private int ioThreads;
+
+    @Value("${llm.limit.initial:20}")
+    private int limitInitial;
+
+    @Value("${llm.limit.min:2}")
+    private int limitMin;
+
+    @Value("${llm.limit.max:200}")
+    private int limitMax;
+
+    @Value("${llm.limit.smoothing:0.2}")
+    private double limitSmoothing;
+
+    @Value("${llm.circuit.window-size:20}")
+    private int circuitWindowSize;
+
+    @Value("${llm.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls;
+
+    @Value("${llm.circuit.failure-rate:0.5}")
+    private double circuitFailureRate;
+
+    @Value("${llm.circuit.slow-call-ms:15000}")
+    private long circuitSlowCallMs;
+
+    @Value("${llm.circuit.slow-call-rate:0.8}")
+    private double circuitSlowCallRate;
+
+    @Value("${llm.circuit.open-ms:30000}")
+    private long circuitOpenMs;
+
+    @Value("${llm.circuit.half-open-calls:3}")
+    private int circuitHalfOpenCalls;
+
+    // Fallback endpoints after the Groq one, in order. Keys and models line up with the URLs; a
+    // blank key reuses groq.api.key and a blank model keeps the model the request asked for.
+    @Value("${llm.endpoints.urls:}")
+    private List<String> endpointUrls;
+
+    @Value("${llm.endpoints.keys:}")
+    private List<String> endpointKeys;
+
+    @Value("${llm.endpoints.models:}")
+    private List<String> endpointModels;
+
+    @Value("${llm.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${llm.hedge.min-delay-ms:500}")
+    private long hedgeMinDelayMs;
+
+    @Value("${llm.hedge.initial-delay-ms:5000}")
+    private long hedgeInitialDelayMs;
+
+    @Value("${llm.hedge.budget-ratio:0.05}")
+    private double hedgeBudgetRatio;
+
+    @Value("${nlp.embedding.dimensions:384}")
+    private int embeddingDimensions;
+
+    @Bean
+    public HttpClient llmHttpClient() {
+        // Read once by the JDK connection pool, so it has to be set before the first client is built
+        if(System.getProperty("jdk.httpclient.keepalive.timeout") == null){
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+        // Only runs response callbacks, never waits on the network. Kept out of the context so
+        // it does not replace Spring's applicationTaskExecutor.
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("llm-http-");
+        threadFactory.setDaemon(true);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .executor(executor)
+            .build();
+    }
+
+    @Bean
+    public ChatCompletionClient chatCompletionClient(HttpClient llmHttpClient, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        List<HedgingChatCompletionClient.Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(endpoint("primary", groqApiUrl, groqApiKey, null, llmHttpClient, objectMapper, meterRegistry));
+        for(int i = 0; i < endpointUrls.size(); i++){
+            String url = endpointUrls.get(i).trim();
+            if(url.isEmpty()) continue;
+            endpoints.add(endpoint("fallback-" + (i + 1), url, entry(endpointKeys, i, groqApiKey),
+                entry(endpointModels, i, null), llmHttpClient, objectMapper, meterRegistry));
+        }
+
+        // Only waits out hedge delays; the attempts themselves run on the HTTP client
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("llm-hedge-");
+        threadFactory.setDaemon(true);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        return new HedgingChatCompletionClient(endpoints, timer, hedgeEnabled, Duration.ofMillis(hedgeMinDelayMs),
+            Duration.ofMillis(hedgeInitialDelayMs), hedgeBudgetRatio, meterRegistry);
+    }
+
+    // Each endpoint gets its own limit and breaker, so a failing one is shed without slowing the rest
+    private HedgingChatCompletionClient.Endpoint endpoint(String name, String url, String apiKey, String model,
+            HttpClient llmHttpClient, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        HttpChatCompletionClient http = new HttpChatCompletionClient(llmHttpClient, objectMapper, url, apiKey,
+            Duration.ofMillis(readTimeoutMs), Duration.ofMillis(totalTimeoutMs));
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(limitInitial, limitMin, limitMax, limitSmoothing);
+        CircuitBreaker breaker = new CircuitBreaker(circuitWindowSize, circuitMinimumCalls, circuitFailureRate,
+            Duration.ofMillis(circuitSlowCallMs), circuitSlowCallRate, Duration.ofMillis(circuitOpenMs), circuitHalfOpenCalls);
+        return new HedgingChatCompletionClient.Endpoint(name,
+            new ResilientChatCompletionClient(http, limit, breaker, name, meterRegistry), model);
+    }
+
+    private static String entry(List<String> values, int index, String fallback) {
+        if(index >= values.size() || values.get(index).isBlank()) return fallback;
+        return values.get(index).trim();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public EmbeddingModel embeddingModel() {
+        return new HashingEmbeddingModel(embeddingDimensions);
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,21 @@
 package com.appdev.xyz.gakog5.controller.rest;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.appdev.xyz.gakog5.annotation.RequireAuth;
 import com.appdev.xyz.gakog5.dto.auth.request.UUIDRequest;
@@ -15,41 +26,164 @@ import com.appdev.xyz.gakog5.entity.chatbot.Chat;
 import com.appdev.xyz.gakog5.entity.chatbot.Message;
 import com.appdev.xyz.gakog5.entity.user.User;
 import com.appdev.xyz.gakog5.service.chatbot.ChatService;
+import com.appdev.xyz.gakog5.service.chatbot.ChatSyncService;
 import com.appdev.xyz.gakog5.service.chatbot.MessageService;
+import com.appdev.xyz.gakog5.service.chatbot.QueryRejectedException;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 
 
 
 @RestController
-@RequiredArgsConstructor
 @RequestMapping("/api/chat")
+@Slf4j
 public class ChatController {
     private final ChatService chatService;
+    private final ChatSyncService chatSyncService;
     private final MessageService messageService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
+    @Value("${chat.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
+    @Value("${chat.query.timeout-ms:60000}")
+    private long queryTimeoutMs;
+
+    private final Counter queryTimeouts;
+
+    // What the client sees when answering fails; the cause is only logged, it may carry internals
+    private static final String ANSWER_FAILED = "Could not answer the question. Please try again.";
+
+    public ChatController(ChatService chatService, ChatSyncService chatSyncService, MessageService messageService,
+            AsyncTaskExecutor applicationTaskExecutor, MeterRegistry meterRegistry){
+        this.chatService = chatService;
+        this.chatSyncService = chatSyncService;
+        this.messageService = messageService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.queryTimeouts = Counter.builder("cic.chat.timeouts")
+            .description("Questions answered with 503 because the answer took longer than chat.query.timeout-ms")
+            .register(meterRegistry);
+    }
+
+    // Answered asynchronously: the request thread goes back to Tomcat while the question waits
+    // for its turn and for the LLM, and the response is written once the answer is saved
     @RequireAuth
     @PostMapping("/process-query")
-    public ResponseEntity<?> processQuery(@RequestBody ChatRequest req, HttpServletRequest request) {
+    public DeferredResult<ResponseEntity<?>> processQuery(@RequestBody ChatRequest req, HttpServletRequest request) {
         User user = (User) request.getAttribute("currentUser");
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(queryTimeoutMs, ResponseEntity
+            .status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "5")
+            .body(new ApiResponse("The assistant is taking too long to answer. Please try again shortly.")));
+        result.onTimeout(queryTimeouts::increment);
+
+        CompletableFuture<NLPResponse> answer;
         try{
-            NLPResponse response = chatService.processQuery(req, user);
-            if(req.isTest()){
-                return ResponseEntity.ok(new ApiResponse("The query has been processed", response.getAnswer()));
-            }else{
-                req.setCategoryId(response.getCategoryId());
-                Message message = chatService.saveQueryToChat(req, user, response.getAnswer());
-                Chat chat = message.getChat();
-                return ResponseEntity.ok(new ApiResponse(response.getAnswer(), chatService.convertToChatResponse(chat), messageService.convertToMessageResponse(message)));
-            }
+            answer = chatService.processQueryAsync(req, user);
+        }catch(QueryRejectedException e){
+            result.setResult(rejected(e));
+            return result;
         }catch(IllegalArgumentException e){
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse(e.getMessage()));
+            result.setResult(ResponseEntity.badRequest()
+                .body(new ApiResponse(e.getMessage())));
+            return result;
+        }
+        answer
+            // An answer that comes after the timeout is not saved; the user was told to ask again
+            .thenApplyAsync(response -> result.isSetOrExpired() ? null : toQueryResponse(req, user, response),
+                applicationTaskExecutor)
+            .whenComplete((response, e) -> {
+                if(e == null){
+                    if(response != null) result.setResult(ResponseEntity.ok(response));
+                    return;
+                }
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if(cause instanceof QueryRejectedException rejected){
+                    result.setResult(rejected(rejected));
+                }else if(cause instanceof IllegalArgumentException){
+                    result.setResult(ResponseEntity.badRequest()
+                        .body(new ApiResponse(cause.getMessage())));
+                }else{
+                    log.error("Could not answer question", cause);
+                    result.setResult(ResponseEntity.internalServerError()
+                        .body(new ApiResponse(ANSWER_FAILED)));
+                }
+            });
+        return result;
+    }
+
+    private static ResponseEntity<ApiResponse> rejected(QueryRejectedException e){
+        return ResponseEntity.status(e.getStatusCode())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(new ApiResponse(e.getMessage()));
+    }
+
+    // Relays answer tokens as "token" events, then sends the saved message as a final "done" event.
+    // Like processQuery, an answer whose client has gone away or timed out is not saved.
+    @RequireAuth
+    @PostMapping(value = "/process-query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> processQueryStream(@RequestBody ChatRequest req, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        emitter.onTimeout(() -> abandoned.set(true));
+        emitter.onError(e -> abandoned.set(true));
+
+        CompletableFuture<NLPResponse> answer;
+        // Rejected before anything was streamed, so these can still be plain statuses
+        try{
+            answer = chatService.streamQuery(req, user, token -> {
+                if(!sendEvent(emitter, "token", token)) abandoned.set(true);
+            });
+        }catch(QueryRejectedException e){
+            return ResponseEntity.status(e.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+        answer
+            .thenApplyAsync(response -> abandoned.get() ? null : toQueryResponse(req, user, response), applicationTaskExecutor)
+            .whenComplete((response, e) -> {
+                if(e != null){
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.error("Could not answer question", cause);
+                    sendEvent(emitter, "error", new ApiResponse(ANSWER_FAILED));
+                }else if(response != null){
+                    sendEvent(emitter, "done", response);
+                }
+                emitter.complete();
+            });
+        return ResponseEntity.ok(emitter);
+    }
+
+    private ApiResponse toQueryResponse(ChatRequest req, User user, NLPResponse response){
+        if(ChatService.isAdminTest(req, user)){
+            return new ApiResponse("The query has been processed", response.getAnswer());
+        }
+        req.setCategoryId(response.getCategoryId());
+        Message message = chatService.saveQueryToChat(req, user, response.getAnswer(), response.isWithHistory());
+        // Just the new message and the chat's list entry; the client already has the rest
+        return new ApiResponse(response.getAnswer(), chatService.toChatSummary(message), messageService.convertToMessageResponse(message));
+    }
+
+    // False when the client has gone away
+    private boolean sendEvent(SseEmitter emitter, String name, Object data){
+        try{
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        }catch(IOException | IllegalStateException e){
+            log.debug("Could not send {} event: {}", name, e.getMessage());
+            return false;
         }
     }
 
@@ -78,12 +212,52 @@ public class ChatController {
         }
     }
 
+    // The chat list a page at a time, without messages; pass nextCursor back for the next page
+    @RequireAuth
+    @GetMapping("/summaries")
+    public ResponseEntity<?> getChatSummaries(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
+        try{
+            return ResponseEntity.ok(new ApiResponse("Chats were successfully fetched", chatService.getChatSummaries(user, cursor, size)));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(e.getMessage()));
+        }
+    }
+
+    // The latest messages of a chat; nextCursor gets the ones before them
+    @RequireAuth
+    @GetMapping("/messages")
+    public ResponseEntity<?> getMessages(@RequestParam UUID chatId, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
+        try{
+            return ResponseEntity.ok(new ApiResponse("Messages were successfully fetched", chatService.getMessages(chatId, user, cursor, size)));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(e.getMessage()));
+        }
+    }
+
+    // Chats and messages changed after the watermark of the previous call; none gives a watermark to start from
+    @RequireAuth
+    @GetMapping("/changes")
+    public ResponseEntity<?> getChanges(@RequestParam(required = false) String since, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
+        try{
+            return ResponseEntity.ok(new ApiResponse("Changes were successfully fetched", chatSyncService.changesSince(user, since)));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(e.getMessage()));
+        }
+    }
+
     @RequireAuth
     @GetMapping("/getAll")
     public ResponseEntity<?> getAllChats() {
         try{
-            List<Chat> chats = chatService.getAll();
-            return ResponseEntity.ok(new ApiResponse("Chats were successfully fetched", chatService.convertAllToChatResponse(chats)));
+            return ResponseEntity.ok(new ApiResponse("Chats were successfully fetched", chatService.getAllChatResponses()));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
                 .body(new ApiResponse(e.getMessage()));
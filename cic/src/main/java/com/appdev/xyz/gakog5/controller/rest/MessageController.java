@@ -11,8 +11,10 @@ import com.appdev.xyz.gakog5.dto.auth.request.IdRequest;
 import com.appdev.xyz.gakog5.dto.auth.response.ApiResponse;
 import com.appdev.xyz.gakog5.dto.chatbot.MessageRequest;
 import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.entity.user.User;
 import com.appdev.xyz.gakog5.service.chatbot.MessageService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.RequestMapping;
 
@@ -24,9 +26,10 @@ public class MessageController {
     private final MessageService messageService;
     @RequireAuth
     @PostMapping("/handle-like")
-    public ResponseEntity<?> handleLike(@RequestBody MessageRequest req){
+    public ResponseEntity<?> handleLike(@RequestBody MessageRequest req, HttpServletRequest request){
+        User user = (User) request.getAttribute("currentUser");
         try{
-            Message message = messageService.handleLike(req.getId(), req.getLike());
+            Message message = messageService.handleLike(req.getId(), req.getLike(), user);
             return ResponseEntity.ok(new ApiResponse("Like is successfully handled", messageService.convertToMessageResponse(message)));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
@@ -36,9 +39,10 @@ public class MessageController {
 
     @RequireAuth
     @PostMapping("/delete")
-    public ResponseEntity<?> delete(@RequestBody IdRequest req) {
+    public ResponseEntity<?> delete(@RequestBody IdRequest req, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
         try{
-            Message message = messageService.deleteMessage(req.getId());
+            Message message = messageService.deleteMessage(req.getId(), user);
             return ResponseEntity.ok(new ApiResponse("Message deleted successfully", messageService.convertToMessageResponse(message)));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
@@ -48,9 +52,10 @@ public class MessageController {
 
     @RequireAuth
     @PostMapping("/updateBot")
-    public ResponseEntity<?> updateBot(@RequestBody MessageRequest req) {
+    public ResponseEntity<?> updateBot(@RequestBody MessageRequest req, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
         try{
-            Message message = messageService.updateBotMessage(req.getId(), req.getText());
+            Message message = messageService.updateBotMessage(req.getId(), req.getText(), user);
             return ResponseEntity.ok(new ApiResponse("Message deleted successfully", messageService.convertToMessageResponse(message)));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
@@ -60,9 +65,10 @@ public class MessageController {
 
     @RequireAuth
     @PostMapping("/updateUser")
-    public ResponseEntity<?> updateUser(@RequestBody MessageRequest req) {
+    public ResponseEntity<?> updateUser(@RequestBody MessageRequest req, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
         try{
-            Message message = messageService.updateUserMessage(req.getId(), req.getText());
+            Message message = messageService.updateUserMessage(req.getId(), req.getText(), user);
             return ResponseEntity.ok(new ApiResponse("Message deleted successfully", messageService.convertToMessageResponse(message)));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
@@ -0,0 +1,51 @@
+package com.appdev.xyz.gakog5.controller.rest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.appdev.xyz.gakog5.annotation.RequireAdminAuth;
+import com.appdev.xyz.gakog5.dto.auth.response.ApiResponse;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/metrics")
+public class MetricsController {
+    private final MeterRegistry meterRegistry;
+
+    // Snapshot of the app's own meters (cic.*) plus anything matching the optional prefix
+    @RequireAdminAuth
+    @GetMapping("/getAll")
+    public ResponseEntity<ApiResponse> getAllMetrics(@RequestParam(defaultValue = "cic.") String prefix) {
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for(Meter meter : meterRegistry.getMeters()){
+            Meter.Id id = meter.getId();
+            if(!id.getName().startsWith(prefix)) continue;
+
+            Map<String, Object> metric = new LinkedHashMap<>();
+            metric.put("name", id.getName());
+            Map<String, String> tags = new LinkedHashMap<>();
+            for(Tag tag : id.getTags()){
+                tags.put(tag.getKey(), tag.getValue());
+            }
+            metric.put("tags", tags);
+            Map<String, Double> values = new LinkedHashMap<>();
+            meter.measure().forEach(m -> values.put(m.getStatistic().getTagValueRepresentation(), m.getValue()));
+            metric.put("values", values);
+            metrics.add(metric);
+        }
+        return ResponseEntity.ok(new ApiResponse("Metrics fetched successfully", metrics));
+    }
+}
@@ -0,0 +1,40 @@
+package com.appdev.xyz.gakog5.controller.rest;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.appdev.xyz.gakog5.annotation.RequireAdminAuth;
+import com.appdev.xyz.gakog5.dto.auth.response.ApiResponse;
+import com.appdev.xyz.gakog5.service.chatbot.TokenUsageService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/usage")
+public class UsageController {
+    private final TokenUsageService tokenUsageService;
+
+    // Upstream tokens and their cost, per user, category or day; the last 30 days by default
+    @RequireAdminAuth
+    @GetMapping("/report")
+    public ResponseEntity<ApiResponse> getReport(@RequestParam(defaultValue = TokenUsageService.BY_CATEGORY) String groupBy,
+            @RequestParam(required = false) String from, @RequestParam(required = false) String to) {
+        try{
+            LocalDate end = to != null ? LocalDate.parse(to) : LocalDate.now();
+            LocalDate start = from != null ? LocalDate.parse(from) : end.minusDays(29);
+            return ResponseEntity.ok(new ApiResponse("Usage report fetched successfully",
+                tokenUsageService.report(groupBy, start, end)));
+        }catch(DateTimeParseException e){
+            return ResponseEntity.badRequest().body(new ApiResponse("Dates must look like 2025-01-31"));
+        }catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage()));
+        }
+    }
+}
@@ -8,20 +8,30 @@ import com.appdev.xyz.gakog5.annotation.RequireAuth;
 import com.appdev.xyz.gakog5.dto.auth.request.IdRequest;
 import com.appdev.xyz.gakog5.dto.auth.response.ApiResponse;
 import com.appdev.xyz.gakog5.dto.chatbot.CategoryRequest;
+import com.appdev.xyz.gakog5.dto.chatbot.EvaluationRequest;
 import com.appdev.xyz.gakog5.entity.chatbot.Category;
 import com.appdev.xyz.gakog5.entity.user.Admin;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.service.chatbot.CategoryEvaluationService;
 import com.appdev.xyz.gakog5.service.chatbot.CategoryService;
+import com.appdev.xyz.gakog5.service.chatbot.PresetAnswerService;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.*;
+import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 
@@ -29,9 +39,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 @Getter
 @Setter
 @RequiredArgsConstructor
+@Slf4j
 @RequestMapping("/api/category")
 public class CategoryController {
     private final CategoryService categoryService;
+    private final PresetAnswerService presetAnswerService;
+    private final CategoryEvaluationService categoryEvaluationService;
+
+    @Value("${nlp.evaluation.timeout-ms:600000}")
+    private long evaluationTimeoutMs;
 
     @RequireAuth
     @GetMapping("/getAll")
@@ -46,6 +62,49 @@ public class CategoryController {
         }
     }
 
+    // Progress of the background answers for the category's presets
+    @RequireAdminAuth
+    @GetMapping("/preset-status")
+    public ResponseEntity<ApiResponse> getPresetStatus(@RequestParam Long id) {
+        return ResponseEntity.ok(new ApiResponse("Preset status fetched successfully", presetAnswerService.status(id)));
+    }
+
+    // Runs the questions (or the category's presets) and streams a "result" event per question as
+    // it finishes, then a "done" event with the latency and token totals
+    @RequireAdminAuth
+    @PostMapping(value = "/evaluate", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> evaluateCategory(@RequestBody EvaluationRequest req, HttpServletRequest request) {
+        User user = (User) request.getAttribute("currentUser");
+        SseEmitter emitter = new SseEmitter(evaluationTimeoutMs);
+        try{
+            categoryEvaluationService.evaluate(req, user != null ? user.getId() : null,
+                    result -> sendEvent(emitter, "result", result))
+                .whenComplete((summary, e) -> {
+                    if(e != null){
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        sendEvent(emitter, "error", new ApiResponse(cause.getMessage()));
+                    }else{
+                        sendEvent(emitter, "done", new ApiResponse("Evaluation finished", summary));
+                    }
+                    emitter.complete();
+                });
+        }catch(IllegalArgumentException e){
+            sendEvent(emitter, "error", new ApiResponse(e.getMessage()));
+            emitter.complete();
+            return ResponseEntity.badRequest().body(emitter);
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data){
+        try{
+            emitter.send(SseEmitter.event().name(name).data(data));
+        }catch(IOException | IllegalStateException e){
+            // The admin closed the terminal; the run finishes on its own
+            log.debug("Could not send {} event: {}", name, e.getMessage());
+        }
+    }
+
     @RequireAdminAuth
     @PostMapping("/add")
     public ResponseEntity<?> addCategory(@RequestBody CategoryRequest req, HttpServletRequest request) {
@@ -76,7 +135,8 @@ public class CategoryController {
     public ResponseEntity<?> updateCategory(@RequestBody CategoryRequest req, HttpServletRequest request) {
         Admin admin = (Admin) request.getAttribute(("currentAdmin"));
         try{
-            Category category = categoryService.updateCategory(req.getName(), req.getContent(), req.getPresets(), req.getId(), admin);
+            Category category = categoryService.updateCategory(req.getName(), req.getContent(), req.getPresets(),
+                req.getModelRoute(), req.getMaxTokens(), req.getId(), admin);
             return ResponseEntity.ok(new ApiResponse("Category updated successfully", category));
         }catch(IllegalArgumentException e){
             return ResponseEntity.badRequest()
@@ -12,4 +12,7 @@ public class CategoryRequest {
     private String name;
     private String content;
     private List<String> presets;
+    // Empty string or 0 clears the override
+    private String modelRoute;
+    private Integer maxTokens;
 }
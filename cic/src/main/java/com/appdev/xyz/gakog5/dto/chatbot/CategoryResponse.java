@@ -17,6 +17,8 @@ public class CategoryResponse {
     private String name;
     private String content;
     private List<String> presets;
+    private String modelRoute;
+    private Integer maxTokens;
     private String createdBy;
     private String updatedBy;
     private LocalDateTime createdAt;
@@ -0,0 +1,18 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import java.util.List;
+import java.util.UUID;
+
+
+@lombok.Data
+@lombok.Builder
+public class ChatChanges {
+    // Passed back as since on the next sync
+    private String watermark;
+    // Too much changed, or since is too old to know about deletions: reload the first pages instead
+    private boolean resync;
+    private List<ChatSummaryResponse> chats;
+    private List<MessageResponse> messages;
+    private List<UUID> deletedChatIds;
+    private List<Long> deletedMessageIds;
+}
@@ -12,4 +12,6 @@ public class ChatRequest {
     private UUID id;
     private Long categoryId;
     private boolean test;
+    private boolean instant;
+    private boolean fanOut;
 }
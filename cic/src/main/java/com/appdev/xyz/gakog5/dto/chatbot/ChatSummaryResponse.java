@@ -0,0 +1,16 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+
+@lombok.Data
+@lombok.Builder
+public class ChatSummaryResponse {
+    private UUID id;
+    private String title;
+    private LocalDateTime timestamp;
+    // Start of the latest message, the answer if there is one
+    private String lastMessage;
+    private long messageCount;
+}
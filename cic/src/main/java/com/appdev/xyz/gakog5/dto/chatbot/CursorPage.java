@@ -0,0 +1,17 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One page of a keyset-paginated list. nextCursor is passed back as the cursor parameter to
+ * get the following page, and is null on the last one.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
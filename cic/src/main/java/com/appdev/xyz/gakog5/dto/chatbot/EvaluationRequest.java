@@ -0,0 +1,16 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class EvaluationRequest {
+    private Long categoryId;
+    // Questions to run; the category's presets when empty
+    private List<String> questions;
+    // How many questions run at once; capped by nlp.evaluation.max-concurrency
+    private Integer concurrency;
+}
@@ -0,0 +1,23 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@Builder
+public class EvaluationResult {
+    // Position of the question in the request; results arrive in completion order
+    private int index;
+    private String question;
+    private String answer;
+    private String model;
+    private long latencyMs;
+    private int promptTokens;
+    private int completionTokens;
+    // Set instead of an answer when the question failed
+    private String error;
+}
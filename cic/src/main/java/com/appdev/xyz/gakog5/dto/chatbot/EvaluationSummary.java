@@ -0,0 +1,21 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@Builder
+public class EvaluationSummary {
+    private Long categoryId;
+    private int total;
+    private int failed;
+    private long elapsedMs;
+    private long p50LatencyMs;
+    private long p95LatencyMs;
+    private long promptTokens;
+    private long completionTokens;
+}
@@ -1,12 +1,14 @@
 package com.appdev.xyz.gakog5.dto.chatbot;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 
 @lombok.Data
 @lombok.Builder
 public  class MessageResponse {
     private Long id;
+    private UUID chatId;
     private LocalDateTime timestamp;
     private String botMessage, userMessage;
     private Boolean like;
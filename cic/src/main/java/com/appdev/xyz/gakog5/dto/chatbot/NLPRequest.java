@@ -0,0 +1,23 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import java.util.List;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+
+@lombok.Data
+@lombok.Builder
+public class NLPRequest {
+    private String question;
+    private Long categoryId;
+    // Who asked, for token accounting; null for background work
+    private Long userId;
+    // Admin test queries skip the answer cache so they always reflect the live content
+    private boolean bypassCache;
+    // Answer by quoting the category content instead of asking the LLM, when that covers the question
+    private boolean instant;
+    // With no category and no clear route, ask the likeliest categories at once instead of answering generally
+    private boolean fanOut;
+    // Earlier turns of the chat, oldest first; answers that depend on them are never cached
+    @lombok.Builder.Default
+    private List<ChatMessage> history = List.of();
+}
@@ -8,4 +8,6 @@ public  class NLPResponse {
     private Long categoryId;
     private String categoryName;
     private Long matchedQueryId;
+    // Answered with earlier turns of the conversation in the prompt
+    private boolean withHistory;
 }
\ No newline at end of file
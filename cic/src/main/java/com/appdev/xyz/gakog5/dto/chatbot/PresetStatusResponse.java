@@ -0,0 +1,19 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@Builder
+public class PresetStatusResponse {
+    private Long categoryId;
+    private String contentVersion;
+    private int total;
+    private int ready;
+    private int failed;
+    private boolean running;
+}
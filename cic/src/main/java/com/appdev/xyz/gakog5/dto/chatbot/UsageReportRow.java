@@ -0,0 +1,21 @@
+package com.appdev.xyz.gakog5.dto.chatbot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@Builder
+public class UsageReportRow {
+    // User id, category id or ISO date, depending on how the report is grouped
+    private String key;
+    private String label;
+    private long promptTokens;
+    private long completionTokens;
+    private long requests;
+    // USD at the configured per-model prices
+    private double cost;
+}
@@ -0,0 +1,13 @@
+package com.appdev.xyz.gakog5.dto.llm;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ChatCompletion {
+    private String content;
+    private String model;
+    private int promptTokens;
+    private int completionTokens;
+}
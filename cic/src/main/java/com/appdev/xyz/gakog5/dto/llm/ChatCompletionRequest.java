@@ -0,0 +1,15 @@
+package com.appdev.xyz.gakog5.dto.llm;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder(toBuilder = true)
+public class ChatCompletionRequest {
+    private String model;
+    private List<ChatMessage> messages;
+    private int maxTokens;
+    private double temperature;
+}
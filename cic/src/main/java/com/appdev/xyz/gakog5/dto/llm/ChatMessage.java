@@ -0,0 +1,27 @@
+package com.appdev.xyz.gakog5.dto.llm;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessage {
+    private String role;
+    private String content;
+
+    public static ChatMessage user(String content){
+        return new ChatMessage("user", content);
+    }
+
+    public static ChatMessage system(String content){
+        return new ChatMessage("system", content);
+    }
+
+    public static ChatMessage assistant(String content){
+        return new ChatMessage("assistant", content);
+    }
+}
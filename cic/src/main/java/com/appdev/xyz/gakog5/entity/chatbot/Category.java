@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import com.appdev.xyz.gakog5.entity.user.Admin;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -37,17 +38,33 @@ public class Category {
     private Admin updatedBy;
 
     private List<String> preset;
+
+    // Model route (see ModelRouter) and max tokens pinned for this category; null lets routing decide
+    @Column(length = 32)
+    private String modelRoute;
+    private Integer maxTokens;
+
+    // Fingerprint of content, refreshed on every save; derived caches key on it
+    @Column(length = 32)
+    private String contentVersion;
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    public String getContentVersion(){
+        // Rows saved before the column existed get it on their next save; reading must not dirty the entity
+        return contentVersion != null ? contentVersion : TextNormalizer.contentVersion(content);
+    }
+
     @PrePersist
     private void prePersist(){
         if(createdAt == null) createdAt = LocalDateTime.now();
+        contentVersion = TextNormalizer.contentVersion(content);
     }
 
     @PreUpdate
     private void preUpdate(){
         updatedAt = LocalDateTime.now();
+        contentVersion = TextNormalizer.contentVersion(content);
     }
 }
@@ -5,13 +5,16 @@ import java.util.UUID;
 
 import com.appdev.xyz.gakog5.entity.user.User;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import lombok.*;
 
 @Getter
@@ -20,6 +23,7 @@ import lombok.*;
 @AllArgsConstructor
 @Builder
 @Entity
+@Table(indexes = @Index(name = "idx_chat_user_timestamp", columnList = "user_id, timestamp"))
 public class Chat {
     @Id
     @GeneratedValue
@@ -29,6 +33,11 @@ public class Chat {
     private User user;
     private String title;
     private LocalDateTime timestamp;
+    // Running summary of the turns that no longer fit the context window
+    @Column(columnDefinition = "TEXT")
+    private String summary;
+    // Id of the last message folded into the summary
+    private Long summarizedThroughId;
 
     @PrePersist
     private void PrePersist(){
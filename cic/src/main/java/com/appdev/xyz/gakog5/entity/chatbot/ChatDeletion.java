@@ -0,0 +1,45 @@
+package com.appdev.xyz.gakog5.entity.chatbot;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.*;
+
+/**
+ * A deleted chat or message, kept so that clients syncing through /api/chat/changes learn it
+ * is gone. Pruned once older than chat.sync.retention-days.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = @Index(name = "idx_chat_deletion_user_deleted", columnList = "user_id, deleted_at"))
+public class ChatDeletion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    // Plain ids rather than relations, since the chat and message no longer exist
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    @Column(nullable = false)
+    private UUID chatId;
+    // Null when the whole chat was deleted
+    private Long messageId;
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    @PrePersist
+    private void PrePersist(){
+        if(deletedAt == null) deletedAt = LocalDateTime.now();
+    }
+}
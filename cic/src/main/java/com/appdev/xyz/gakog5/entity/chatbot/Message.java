@@ -7,11 +7,18 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import lombok.*;
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_message_chat_timestamp", columnList = "chat_id, timestamp"),
+    @Index(name = "idx_message_chat_updated", columnList = "chat_id, updated_at")
+})
 @Builder
 @Setter
 @Getter
@@ -28,14 +35,29 @@ public class Message {
     @Column(name = "liked", nullable = true)
     private Boolean like;
     private LocalDateTime timestamp;
+    // Last change of any kind, for clients syncing through /api/chat/changes
+    private LocalDateTime updatedAt;
     @ManyToOne
     @JoinColumn(name = "chat_id")
     private Chat chat;
     @ManyToOne
     @JoinColumn(name = "category_id")
     private Category category;
+    // Category content version the answer was generated from; null for messages saved before it was kept
+    @Column(length = 32)
+    private String contentVersion;
+    // Answered with earlier turns in the prompt, so it may only make sense in its own chat
+    private Boolean withHistory;
+    // Question or answer changed by the user after it was saved
+    private Boolean edited;
     @PrePersist
     private void PrePersist(){
         if(timestamp == null) timestamp = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    private void PreUpdate(){
+        updatedAt = LocalDateTime.now();
     }
 }
@@ -0,0 +1,45 @@
+package com.appdev.xyz.gakog5.entity.chatbot;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.*;
+
+/**
+ * Answer to one of a category's preset questions, generated ahead of time for a given
+ * content version of the category.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = @Index(name = "idx_preset_answer_category_version", columnList = "category_id, content_version"))
+public class PresetAnswer {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    // Plain id rather than a relation, so deleting a category is not blocked by its answers
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+    @Column(name = "content_version", length = 32, nullable = false)
+    private String contentVersion;
+    @Column(length = 500, nullable = false)
+    private String question;
+    @Column(columnDefinition = "TEXT")
+    private String answer;
+    private LocalDateTime generatedAt;
+
+    @PrePersist
+    private void prePersist(){
+        if(generatedAt == null) generatedAt = LocalDateTime.now();
+    }
+}
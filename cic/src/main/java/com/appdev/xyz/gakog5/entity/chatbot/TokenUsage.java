@@ -0,0 +1,52 @@
+package com.appdev.xyz.gakog5.entity.chatbot;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+/**
+ * Upstream tokens spent in one day by one user on one category and model. Rows are added to
+ * by the periodic flush of the in-memory counters, never written per completion.
+ *
+ * The unique key keeps two instances from inserting the same row twice. Databases treat NULLs
+ * as distinct there, so background and general rows are not covered; every reader sums rows,
+ * so such a duplicate only costs a row.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = {
+    @Index(name = "idx_token_usage_day", columnList = "usage_date"),
+    @Index(name = "idx_token_usage_user_day", columnList = "user_id, usage_date")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_token_usage_day_user_category_model",
+    columnNames = {"usage_date", "user_id", "category_id", "model"}))
+public class TokenUsage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    // DAY is a reserved word in some databases
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate day;
+    // Plain ids rather than relations, so the history outlives deleted users and categories.
+    // No user means background work (preset answers); no category means a general answer.
+    @Column(name = "user_id")
+    private Long userId;
+    @Column(name = "category_id")
+    private Long categoryId;
+    @Column(length = 100, nullable = false)
+    private String model;
+    private long promptTokens;
+    private long completionTokens;
+    private long requests;
+}
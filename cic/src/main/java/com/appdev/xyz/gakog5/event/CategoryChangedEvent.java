@@ -0,0 +1,18 @@
+package com.appdev.xyz.gakog5.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by CategoryService whenever a category is created, edited or removed,
+ * so in-memory caches and indexes derived from category content can refresh.
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Long categoryId;
+    private final Type type;
+}
@@ -0,0 +1,17 @@
+package com.appdev.xyz.gakog5.event;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ChatService after a question and its answer are saved to a chat, so the
+ * conversation summary can catch up with messages that left the context window.
+ */
+@Getter
+@AllArgsConstructor
+public class ChatTurnSavedEvent {
+
+    private final UUID chatId;
+}
@@ -0,0 +1,17 @@
+package com.appdev.xyz.gakog5.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a saved message is liked or unliked, edited or deleted, so indexes built
+ * from liked answers can pick up the change.
+ */
+@Getter
+@AllArgsConstructor
+public class MessageChangedEvent {
+
+    private final Long messageId;
+    // Category the message was answered from; null for general answers
+    private final Long categoryId;
+}
@@ -1,5 +1,6 @@
 package com.appdev.xyz.gakog5.interceptor;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,12 @@ public class AuthInterceptor implements HandlerInterceptor {
             return true;
         }
 
+        // Async results (streams, deferred answers) are dispatched again once ready;
+        // the request was already authenticated on its first pass
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
         HandlerMethod handlerMethod = (HandlerMethod) handler;
         RequireAuth requireAuth = handlerMethod.getMethodAnnotation(RequireAuth.class);
         RequireAdminAuth requireAdminAuth = handlerMethod.getMethodAnnotation(RequireAdminAuth.class);
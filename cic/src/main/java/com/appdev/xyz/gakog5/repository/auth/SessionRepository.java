@@ -1,7 +1,9 @@
 package com.appdev.xyz.gakog5.repository.auth;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -13,6 +15,12 @@ import com.appdev.xyz.gakog5.entity.user.User;
 public interface SessionRepository extends JpaRepository<Session, Long> {
     Optional<Session> findByUser(User user);
     Optional<Session> findByRefreshToken_Value(String value);
+    // The user is read after the transaction ends (request attributes, responses)
+    @EntityGraph(attributePaths = "user")
     Optional<Session> findByAccessToken_Value(String value);
+
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Session> findAll();
 }
 
@@ -0,0 +1,23 @@
+package com.appdev.xyz.gakog5.repository.chatbot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.appdev.xyz.gakog5.entity.chatbot.ChatDeletion;
+
+@Repository
+public interface ChatDeletionRepository extends JpaRepository<ChatDeletion, Long>{
+    List<ChatDeletion> findByUserIdAndDeletedAtAfter(Long userId, LocalDateTime since);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ChatDeletion d where d.deletedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
@@ -1,10 +1,17 @@
 package com.appdev.xyz.gakog5.repository.chatbot;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.appdev.xyz.gakog5.entity.chatbot.Chat;
 import com.appdev.xyz.gakog5.entity.user.User;
@@ -12,5 +19,42 @@ import com.appdev.xyz.gakog5.entity.user.User;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, UUID>{
+    @EntityGraph(attributePaths = "user")
     List<Chat> findByUser(User user);
+
+    // The user is joined in, so listing every chat does not select each chat's user separately
+    @EntityGraph(attributePaths = "user")
+    @Query("select c from Chat c")
+    List<Chat> findAllWithUser();
+
+    // Newest first, ordered by (timestamp, id) so chats saved in the same instant still page
+    // cleanly; walks idx_chat_user_timestamp. The latest message is the one with the highest id.
+    int SNIPPET_LENGTH = 160;
+    String SUMMARY_SELECT = "select c.id as id, c.title as title, c.timestamp as timestamp, "
+        + "(select count(m) from Message m where m.chat = c) as messageCount, "
+        + "substring(lm.userMessage, 1, " + SNIPPET_LENGTH + ") as lastUserMessage, "
+        + "substring(lm.botMessage, 1, " + SNIPPET_LENGTH + ") as lastBotMessage "
+        + "from Chat c left join Message lm on lm.id = (select max(m2.id) from Message m2 where m2.chat = c) "
+        + "where c.user = :user ";
+
+    @Query(SUMMARY_SELECT + "order by c.timestamp desc, c.id desc")
+    List<ChatSummary> findSummariesByUser(@Param("user") User user, Pageable page);
+
+    @Query(SUMMARY_SELECT + "and (c.timestamp < :timestamp or (c.timestamp = :timestamp and c.id < :id)) "
+        + "order by c.timestamp desc, c.id desc")
+    List<ChatSummary> findSummariesByUserBefore(@Param("user") User user, @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") UUID id, Pageable page);
+
+    // Chats created or updated since, or with a message changed since
+    @Query(SUMMARY_SELECT + "and (c.timestamp > :since or exists "
+        + "(select 1 from Message m3 where m3.chat = c and m3.updatedAt > :since)) "
+        + "order by c.timestamp desc, c.id desc")
+    List<ChatSummary> findChangedSummaries(@Param("user") User user, @Param("since") LocalDateTime since, Pageable page);
+
+    // Bulk update so saving a summary does not bump the chat's timestamp through @PreUpdate
+    @Modifying
+    @Transactional
+    @Query("update Chat c set c.summary = :summary, c.summarizedThroughId = :through "
+        + "where c.id = :id and (c.summarizedThroughId is null or c.summarizedThroughId < :through)")
+    int updateSummary(@Param("id") UUID id, @Param("summary") String summary, @Param("through") Long through);
 }
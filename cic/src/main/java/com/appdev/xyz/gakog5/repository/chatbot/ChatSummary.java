@@ -0,0 +1,18 @@
+package com.appdev.xyz.gakog5.repository.chatbot;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of a user's chat list: the chat, how many messages it has and the start of its
+ * latest message, without loading the messages themselves.
+ */
+public interface ChatSummary {
+    UUID getId();
+    String getTitle();
+    LocalDateTime getTimestamp();
+    Long getMessageCount();
+    // Both sides of the latest message, cut to a snippet; null for a chat without messages
+    String getLastUserMessage();
+    String getLastBotMessage();
+}
@@ -0,0 +1,19 @@
+package com.appdev.xyz.gakog5.repository.chatbot;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One message of a chat history as read by the bulk history queries: the columns a
+ * MessageResponse needs, without loading the message's chat and category entities.
+ */
+public interface MessageHistory {
+    UUID getChatId();
+    Long getId();
+    LocalDateTime getTimestamp();
+    String getUserMessage();
+    String getBotMessage();
+    Boolean getLike();
+    // Name of the category the message was answered from
+    String getCategory();
+}
@@ -1,14 +1,63 @@
 package com.appdev.xyz.gakog5.repository.chatbot;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.appdev.xyz.gakog5.entity.chatbot.Chat;
 import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.entity.user.User;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long>{
     List<Message> findByChat(Chat chat);
+
+    List<Message> findByChat_IdAndIdGreaterThanOrderByIdDesc(UUID chatId, Long afterId, Pageable page);
+
+    List<Message> findByChat_IdAndIdGreaterThanOrderByIdAsc(UUID chatId, Long afterId, Pageable page);
+
+    long countByChat_IdAndIdGreaterThan(UUID chatId, Long afterId);
+
+    long countByChat_Id(UUID chatId);
+
+    @Query("select m.chat.id as chatId, m.id as id, m.timestamp as timestamp, m.userMessage as userMessage, "
+        + "m.botMessage as botMessage, m.like as like, c.name as category "
+        + "from Message m left join m.category c where m.chat.id in :chatIds order by m.id")
+    List<MessageHistory> findHistoryByChatIds(@Param("chatIds") Collection<UUID> chatIds);
+
+    @Query("select m.chat.id as chatId, m.id as id, m.timestamp as timestamp, m.userMessage as userMessage, "
+        + "m.botMessage as botMessage, m.like as like, c.name as category "
+        + "from Message m left join m.category c where m.chat is not null order by m.id")
+    List<MessageHistory> findAllHistory();
+
+    // Pages of one chat, newest first by (timestamp, id), along idx_message_chat_timestamp
+    @Query("select m.chat.id as chatId, m.id as id, m.timestamp as timestamp, m.userMessage as userMessage, "
+        + "m.botMessage as botMessage, m.like as like, c.name as category "
+        + "from Message m left join m.category c where m.chat.id = :chatId "
+        + "order by m.timestamp desc, m.id desc")
+    List<MessageHistory> findHistoryPage(@Param("chatId") UUID chatId, Pageable page);
+
+    @Query("select m.chat.id as chatId, m.id as id, m.timestamp as timestamp, m.userMessage as userMessage, "
+        + "m.botMessage as botMessage, m.like as like, c.name as category "
+        + "from Message m left join m.category c where m.chat.id = :chatId "
+        + "and (m.timestamp < :timestamp or (m.timestamp = :timestamp and m.id < :id)) "
+        + "order by m.timestamp desc, m.id desc")
+    List<MessageHistory> findHistoryPageBefore(@Param("chatId") UUID chatId, @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id, Pageable page);
+
+    @Query("select m.chat.id as chatId, m.id as id, m.timestamp as timestamp, m.userMessage as userMessage, "
+        + "m.botMessage as botMessage, m.like as like, c.name as category "
+        + "from Message m left join m.category c where m.chat.user = :user and m.updatedAt > :since order by m.id")
+    List<MessageHistory> findChangedByUser(@Param("user") User user, @Param("since") LocalDateTime since, Pageable page);
+
+    // "Like" is a derived-query keyword, so this one is spelled out
+    @Query("select m from Message m join fetch m.category where m.like = true")
+    List<Message> findLikedWithCategory();
 }
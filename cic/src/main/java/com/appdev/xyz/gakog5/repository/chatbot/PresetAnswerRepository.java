@@ -0,0 +1,27 @@
+package com.appdev.xyz.gakog5.repository.chatbot;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.appdev.xyz.gakog5.entity.chatbot.PresetAnswer;
+
+@Repository
+public interface PresetAnswerRepository extends JpaRepository<PresetAnswer, Long>{
+    List<PresetAnswer> findByCategoryIdAndContentVersion(Long categoryId, String contentVersion);
+
+    @Modifying
+    @Transactional
+    @Query("delete from PresetAnswer p where p.categoryId = :categoryId and p.contentVersion <> :contentVersion")
+    int deleteOtherVersions(@Param("categoryId") Long categoryId, @Param("contentVersion") String contentVersion);
+
+    @Modifying
+    @Transactional
+    @Query("delete from PresetAnswer p where p.categoryId = :categoryId")
+    int deleteByCategory(@Param("categoryId") Long categoryId);
+}
@@ -0,0 +1,35 @@
+package com.appdev.xyz.gakog5.repository.chatbot;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.appdev.xyz.gakog5.entity.chatbot.TokenUsage;
+
+@Repository
+public interface TokenUsageRepository extends JpaRepository<TokenUsage, Long>{
+    List<TokenUsage> findByDayBetween(LocalDate from, LocalDate to);
+
+    @Query("select coalesce(sum(u.promptTokens + u.completionTokens), 0) from TokenUsage u where u.day = :day and u.userId = :userId")
+    long sumTokensByUser(@Param("day") LocalDate day, @Param("userId") Long userId);
+
+    @Query("select coalesce(sum(u.promptTokens + u.completionTokens), 0) from TokenUsage u where u.day = :day and u.categoryId = :categoryId")
+    long sumTokensByCategory(@Param("day") LocalDate day, @Param("categoryId") Long categoryId);
+
+    // Adds in the database rather than writing back a total read earlier, so concurrent flushes
+    // from several instances cannot overwrite each other; 0 when the row does not exist yet
+    @Modifying
+    @Query("update TokenUsage u set u.promptTokens = u.promptTokens + :promptTokens, "
+        + "u.completionTokens = u.completionTokens + :completionTokens, u.requests = u.requests + :requests "
+        + "where u.day = :day and u.model = :model "
+        + "and (u.userId = :userId or (:userId is null and u.userId is null)) "
+        + "and (u.categoryId = :categoryId or (:categoryId is null and u.categoryId is null))")
+    int addUsage(@Param("day") LocalDate day, @Param("userId") Long userId, @Param("categoryId") Long categoryId,
+        @Param("model") String model, @Param("promptTokens") long promptTokens,
+        @Param("completionTokens") long completionTokens, @Param("requests") long requests);
+}
@@ -0,0 +1,123 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded cache of LLM answers. Entries are keyed by the category, a fingerprint of its
+ * content and the normalized question, so an edited category can never serve stale answers;
+ * edits also drop the category's entries right away to free the space.
+ *
+ * Misses are single-flight: while one caller is asking the LLM, identical questions share its
+ * result instead of sending their own request.
+ */
+@Service
+@Slf4j
+public class AnswerCache {
+
+    private final Cache<Key, String> cache;
+    private final Map<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public AnswerCache(@Value("${nlp.answer-cache.max-size:10000}") long maxSize,
+            @Value("${nlp.answer-cache.ttl-minutes:360}") long ttlMinutes,
+            MeterRegistry meterRegistry){
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .recordStats()
+            .build();
+
+        FunctionCounter.builder("cic.answer-cache.hits", cache, c -> c.stats().hitCount())
+            .register(meterRegistry);
+        FunctionCounter.builder("cic.answer-cache.misses", cache, c -> c.stats().missCount())
+            .register(meterRegistry);
+        FunctionCounter.builder("cic.answer-cache.evictions", cache, c -> c.stats().evictionCount())
+            .register(meterRegistry);
+        Gauge.builder("cic.answer-cache.size", cache, Cache::estimatedSize)
+            .register(meterRegistry);
+        Gauge.builder("cic.answer-cache.in-flight", inFlight, Map::size)
+            .register(meterRegistry);
+        this.coalesced = Counter.builder("cic.answer-cache.coalesced")
+            .description("Questions answered by joining an identical in-flight request")
+            .register(meterRegistry);
+    }
+
+    public String get(Category category, String question){
+        return cache.getIfPresent(keyOf(category, question));
+    }
+
+    public void put(Category category, String question, String answer){
+        cache.put(keyOf(category, question), answer);
+    }
+
+    /**
+     * Cached answer, or the answer of an identical question already being loaded, or a new
+     * load started with the loader. Non-empty answers are cached once the load completes.
+     */
+    public CompletableFuture<String> getOrLoad(Category category, String question,
+            Supplier<CompletableFuture<String>> loader){
+        Key key = keyOf(category, question);
+        String cached = cache.getIfPresent(key);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if(existing != null){
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        // The previous flight may have finished between the cache check and putIfAbsent
+        cached = cache.getIfPresent(key);
+        CompletableFuture<String> load;
+        try{
+            load = cached != null ? CompletableFuture.completedFuture(cached) : loader.get();
+        }catch(RuntimeException e){
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((answer, e) -> {
+            if(answer != null && !answer.isEmpty()) cache.put(key, answer);
+            inFlight.remove(key, flight);
+            if(e != null) flight.completeExceptionally(e);
+            else flight.complete(answer);
+        });
+        return flight.copy();
+    }
+
+    public void invalidateCategory(Long categoryId){
+        cache.asMap().keySet().removeIf(key -> key.categoryId().equals(categoryId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        log.debug("Dropping cached answers for category {}", event.getCategoryId());
+        invalidateCategory(event.getCategoryId());
+    }
+
+    private Key keyOf(Category category, String question){
+        return new Key(category.getId(), category.getContentVersion(),
+            TextNormalizer.normalizeQuestion(question));
+    }
+
+    private record Key(Long categoryId, String contentVersion, String question) {}
+}
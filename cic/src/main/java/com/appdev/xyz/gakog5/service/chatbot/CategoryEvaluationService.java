@@ -0,0 +1,213 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.appdev.xyz.gakog5.dto.chatbot.EvaluationRequest;
+import com.appdev.xyz.gakog5.dto.chatbot.EvaluationResult;
+import com.appdev.xyz.gakog5.dto.chatbot.EvaluationSummary;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs a batch of questions (by default the category's presets) against a category, so an admin
+ * can check a whole category after an edit instead of asking one question at a time.
+ *
+ * Every question goes to the LLM the way a live question to the category would, without the
+ * cache or preset answers. At most nlp.evaluation.max-concurrency run at once, and each result
+ * is handed over as soon as it is in, with its latency and token usage.
+ */
+@Service
+public class CategoryEvaluationService {
+
+    private final CategoryService categoryService;
+    private final NLPService nlpService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final int maxConcurrency;
+    private final int maxQuestions;
+    private final Counter answered;
+    private final Counter failed;
+
+    public CategoryEvaluationService(CategoryService categoryService, NLPService nlpService,
+            AsyncTaskExecutor applicationTaskExecutor,
+            @Value("${nlp.evaluation.max-concurrency:4}") int maxConcurrency,
+            @Value("${nlp.evaluation.max-questions:200}") int maxQuestions,
+            MeterRegistry meterRegistry){
+        this.categoryService = categoryService;
+        this.nlpService = nlpService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQuestions = maxQuestions;
+        this.answered = Counter.builder("cic.evaluation.questions").tag("outcome", "answered")
+            .description("Questions run by admin batch evaluations")
+            .register(meterRegistry);
+        this.failed = Counter.builder("cic.evaluation.questions").tag("outcome", "failed")
+            .description("Questions run by admin batch evaluations")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Checks the request and starts the run. Throws IllegalArgumentException right away for an
+     * unknown or empty category or an unusable question list; the returned future completes
+     * with the summary after the last result has been handed to onResult.
+     *
+     * @param userId the admin running it, who the tokens are counted against
+     */
+    public CompletableFuture<EvaluationSummary> evaluate(EvaluationRequest request, Long userId,
+            Consumer<EvaluationResult> onResult){
+        if(request.getCategoryId() == null) throw new IllegalArgumentException("categoryId is required");
+        Category category = categoryService.findCategoryById(request.getCategoryId());
+        if(category.getContent() == null || category.getContent().isBlank()){
+            throw new IllegalArgumentException("The category has no content to evaluate");
+        }
+
+        List<String> questions = questions(request.getQuestions() != null && !request.getQuestions().isEmpty()
+            ? request.getQuestions()
+            : category.getPreset());
+        if(questions.isEmpty()) throw new IllegalArgumentException("There are no questions to evaluate");
+        if(questions.size() > maxQuestions){
+            throw new IllegalArgumentException("At most " + maxQuestions + " questions can be evaluated at once");
+        }
+        int concurrency = request.getConcurrency() != null
+            ? Math.max(1, Math.min(request.getConcurrency(), maxConcurrency))
+            : maxConcurrency;
+
+        return new Run(category, questions, userId, onResult).start(concurrency);
+    }
+
+    // Trimmed and without blanks or repeats, in the order given
+    private static List<String> questions(List<String> raw){
+        Set<String> questions = new LinkedHashSet<>();
+        if(raw != null){
+            for(String question : raw){
+                if(question != null && !question.isBlank()) questions.add(question.trim());
+            }
+        }
+        return new ArrayList<>(questions);
+    }
+
+    private final class Run {
+        private final Category category;
+        private final List<String> questions;
+        private final Long userId;
+        private final Consumer<EvaluationResult> onResult;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private final List<EvaluationResult> results = Collections.synchronizedList(new ArrayList<>());
+        private final CompletableFuture<EvaluationSummary> summary = new CompletableFuture<>();
+        private final long start = System.nanoTime();
+
+        Run(Category category, List<String> questions, Long userId, Consumer<EvaluationResult> onResult){
+            this.category = category;
+            this.questions = questions;
+            this.userId = userId;
+            this.onResult = onResult;
+        }
+
+        CompletableFuture<EvaluationSummary> start(int concurrency){
+            for(int i = 0; i < Math.min(concurrency, questions.size()); i++){
+                applicationTaskExecutor.execute(this::runNext);
+            }
+            return summary;
+        }
+
+        // Each worker takes the next question when its last one is done, so at most
+        // `concurrency` are in flight
+        private void runNext(){
+            int index = next.getAndIncrement();
+            if(index >= questions.size()) return;
+            String question = questions.get(index);
+            long questionStart = System.nanoTime();
+
+            CompletableFuture<ChatCompletion> completion;
+            try{
+                completion = nlpService.completeFromCategory(category, question, userId);
+            }catch(RuntimeException e){
+                completion = CompletableFuture.failedFuture(e);
+            }
+            // Back on the task executor: building the next prompt and writing the result are not
+            // work for the HTTP callback threads
+            completion.whenCompleteAsync((result, e) -> {
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - questionStart);
+                EvaluationResult.EvaluationResultBuilder row = EvaluationResult.builder()
+                    .index(index)
+                    .question(question)
+                    .latencyMs(latencyMs);
+                if(e != null || result == null || result.getContent() == null || result.getContent().isBlank()){
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    row.error(cause != null ? cause.getMessage() : "The model returned an empty answer");
+                    failed.increment();
+                }else{
+                    row.answer(result.getContent())
+                        .model(result.getModel())
+                        .promptTokens(result.getPromptTokens())
+                        .completionTokens(result.getCompletionTokens());
+                    answered.increment();
+                }
+                finish(row.build());
+            }, applicationTaskExecutor);
+        }
+
+        private void finish(EvaluationResult result){
+            results.add(result);
+            try{
+                onResult.accept(result);
+            }finally{
+                if(done.incrementAndGet() == questions.size()){
+                    summary.complete(summarize());
+                }else{
+                    runNext();
+                }
+            }
+        }
+
+        private EvaluationSummary summarize(){
+            List<Long> latencies = new ArrayList<>();
+            int failures = 0;
+            long promptTokens = 0;
+            long completionTokens = 0;
+            synchronized(results){
+                for(EvaluationResult result : results){
+                    if(result.getError() != null){
+                        failures++;
+                        continue;
+                    }
+                    latencies.add(result.getLatencyMs());
+                    promptTokens += result.getPromptTokens();
+                    completionTokens += result.getCompletionTokens();
+                }
+            }
+            Collections.sort(latencies);
+            return EvaluationSummary.builder()
+                .categoryId(category.getId())
+                .total(questions.size())
+                .failed(failures)
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .p50LatencyMs(percentile(latencies, 0.5))
+                .p95LatencyMs(percentile(latencies, 0.95))
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .build();
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double p){
+        if(sorted.isEmpty()) return 0;
+        return sorted.get((int) Math.ceil(sorted.size() * p) - 1);
+    }
+}
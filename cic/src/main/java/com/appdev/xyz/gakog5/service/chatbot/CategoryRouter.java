@@ -0,0 +1,231 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the category an unscoped question belongs to, without calling the LLM.
+ *
+ * Every category is a TF-IDF vector built from its name, presets and content (name and presets
+ * weigh more). A question is scored by cosine similarity against each category and against a
+ * "none of them" option fixed at nlp.router.min-similarity; a softmax over those scores gives
+ * the confidence. The question is routed only when a real category wins with at least
+ * nlp.router.min-confidence.
+ */
+@Service
+@Slf4j
+public class CategoryRouter {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int PRESET_WEIGHT = 2;
+
+    private final CategoryRepository categoryRepository;
+    private final double minSimilarity;
+    private final double minConfidence;
+    private final double temperature;
+    private final Counter routed;
+    private final Counter unrouted;
+    private final DistributionSummary confidence;
+
+    private volatile Model model = new Model(Map.of(), List.of());
+
+    /**
+     * Routing decision; {@code categoryId} is null when the question stays general, and
+     * {@code confidence} is the probability of whichever outcome was chosen.
+     */
+    public record Route(Long categoryId, String categoryName, double confidence) {
+        public boolean isRouted(){
+            return categoryId != null;
+        }
+    }
+
+    private record CategoryVector(Long id, String name, Map<String, Double> weights) {}
+
+    private record Model(Map<String, Double> idf, List<CategoryVector> categories) {}
+
+    public CategoryRouter(CategoryRepository categoryRepository,
+            @Value("${nlp.router.min-similarity:0.1}") double minSimilarity,
+            @Value("${nlp.router.min-confidence:0.5}") double minConfidence,
+            @Value("${nlp.router.temperature:0.05}") double temperature,
+            MeterRegistry meterRegistry){
+        this.categoryRepository = categoryRepository;
+        this.minSimilarity = minSimilarity;
+        this.minConfidence = minConfidence;
+        this.temperature = temperature;
+        this.routed = Counter.builder("cic.router.decisions").tag("outcome", "routed")
+            .description("Unscoped questions answered from a category picked by the router")
+            .register(meterRegistry);
+        this.unrouted = Counter.builder("cic.router.decisions").tag("outcome", "general")
+            .description("Unscoped questions answered from a category picked by the router")
+            .register(meterRegistry);
+        this.confidence = DistributionSummary.builder("cic.router.confidence")
+            .publishPercentiles(0.5, 0.95)
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void train(){
+        model = build(categoryRepository.findAll());
+        log.info("Category router trained on {} categories", model.categories().size());
+    }
+
+    // IDF spans all categories, so any change retrains the whole (small) model
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        train();
+    }
+
+    /**
+     * The category the question most likely belongs to, or a general decision when no
+     * category is likely enough.
+     */
+    public Route route(String question){
+        Scores scores = score(question);
+        if(scores == null){
+            // Nothing in the question is known to any category, so it is certainly general
+            unrouted.increment();
+            return new Route(null, null, 1.0);
+        }
+
+        int best = 0;
+        for(int i = 1; i < scores.similarities().length; i++){
+            if(scores.similarities()[i] > scores.similarities()[best]) best = i;
+        }
+        double probability = scores.probabilities()[best];
+        confidence.record(probability);
+        if(scores.similarities()[best] <= minSimilarity || probability < minConfidence){
+            unrouted.increment();
+            return new Route(null, null, scores.noneProbability());
+        }
+        routed.increment();
+        CategoryVector category = scores.model().categories().get(best);
+        return new Route(category.id(), category.name(), probability);
+    }
+
+    /**
+     * Up to limit categories the question could belong to, most likely first, each with its
+     * probability. Only categories above nlp.router.min-similarity are candidates, so the list
+     * is empty for a question no category knows about.
+     */
+    public List<Route> candidates(String question, int limit){
+        Scores scores = score(question);
+        if(scores == null) return List.of();
+        List<Route> candidates = new ArrayList<>();
+        for(int i = 0; i < scores.similarities().length; i++){
+            if(scores.similarities()[i] <= minSimilarity) continue;
+            CategoryVector category = scores.model().categories().get(i);
+            candidates.add(new Route(category.id(), category.name(), scores.probabilities()[i]));
+        }
+        candidates.sort(Comparator.comparingDouble(Route::confidence).reversed());
+        return candidates.size() > limit ? List.copyOf(candidates.subList(0, limit)) : candidates;
+    }
+
+    // Similarity of the question to every category, or null when no category knows its words
+    private Scores score(String question){
+        Model current = model;
+        Map<String, Double> query = vectorize(termCounts(question, 1, new HashMap<>()), current.idf());
+        if(current.categories().isEmpty() || query.isEmpty()) return null;
+
+        double[] similarities = new double[current.categories().size()];
+        double max = minSimilarity;
+        for(int i = 0; i < similarities.length; i++){
+            similarities[i] = cosine(query, current.categories().get(i).weights());
+            max = Math.max(max, similarities[i]);
+        }
+        // Softmax over the categories plus a "none of them" option at the similarity floor
+        double sum = Math.exp((minSimilarity - max) / temperature);
+        for(double similarity : similarities) sum += Math.exp((similarity - max) / temperature);
+        double[] probabilities = new double[similarities.length];
+        for(int i = 0; i < similarities.length; i++){
+            probabilities[i] = Math.exp((similarities[i] - max) / temperature) / sum;
+        }
+        return new Scores(current, similarities, probabilities, Math.exp((minSimilarity - max) / temperature) / sum);
+    }
+
+    private record Scores(Model model, double[] similarities, double[] probabilities, double noneProbability) {}
+
+    private static Model build(List<Category> categories){
+        List<Map<String, Integer>> counts = new ArrayList<>();
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for(Category category : categories){
+            Map<String, Integer> terms = new HashMap<>();
+            termCounts(category.getName(), NAME_WEIGHT, terms);
+            if(category.getPreset() != null){
+                for(String preset : category.getPreset()) termCounts(preset, PRESET_WEIGHT, terms);
+            }
+            termCounts(category.getContent(), 1, terms);
+            counts.add(terms);
+            terms.keySet().forEach(term -> documentFrequency.merge(term, 1, Integer::sum));
+        }
+
+        Map<String, Double> idf = new HashMap<>();
+        int n = categories.size();
+        documentFrequency.forEach((term, df) -> idf.put(term, Math.log((n + 1.0) / (df + 1.0)) + 1));
+
+        List<CategoryVector> vectors = new ArrayList<>();
+        for(int i = 0; i < n; i++){
+            Category category = categories.get(i);
+            vectors.add(new CategoryVector(category.getId(), category.getName(), vectorize(counts.get(i), idf)));
+        }
+        return new Model(idf, vectors);
+    }
+
+    private static Map<String, Integer> termCounts(String text, int weight, Map<String, Integer> counts){
+        if(text == null) return counts;
+        for(String term : TextNormalizer.tokenize(text)){
+            counts.merge(stem(term), weight, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Unit-length sublinear TF-IDF; terms no category uses are dropped
+    private static Map<String, Double> vectorize(Map<String, Integer> counts, Map<String, Double> idf){
+        Map<String, Double> weights = new HashMap<>();
+        double norm = 0;
+        for(Map.Entry<String, Integer> e : counts.entrySet()){
+            Double termIdf = idf.get(e.getKey());
+            if(termIdf == null) continue;
+            double weight = (1 + Math.log(e.getValue())) * termIdf;
+            weights.put(e.getKey(), weight);
+            norm += weight * weight;
+        }
+        double length = Math.sqrt(norm);
+        weights.replaceAll((term, weight) -> weight / length);
+        return weights;
+    }
+
+    private static double cosine(Map<String, Double> query, Map<String, Double> category){
+        double dot = 0;
+        for(Map.Entry<String, Double> e : query.entrySet()){
+            Double weight = category.get(e.getKey());
+            if(weight != null) dot += e.getValue() * weight;
+        }
+        return dot;
+    }
+
+    // Folds simple plurals so "fees" matches "fee"
+    private static String stem(String term){
+        if(term.length() > 4 && term.endsWith("ies")) return term.substring(0, term.length() - 3) + "y";
+        if(term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) return term.substring(0, term.length() - 1);
+        return term;
+    }
+}
@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,7 +12,9 @@ import com.appdev.xyz.gakog5.dto.chatbot.CategoryResponse;
 import com.appdev.xyz.gakog5.entity.chatbot.Category;
 import com.appdev.xyz.gakog5.entity.user.Admin;
 import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
 import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.service.llm.ModelRouter;
 
 import lombok.RequiredArgsConstructor;
 
@@ -20,6 +23,8 @@ import lombok.RequiredArgsConstructor;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ModelRouter modelRouter;
 
     @Transactional
     public CategoryResponse convertToCategoryResponse(Category category){
@@ -38,6 +43,8 @@ public class CategoryService {
             .createdAt(category.getCreatedAt())
             .content(category.getContent())
             .presets(category.getPreset())
+            .modelRoute(category.getModelRoute())
+            .maxTokens(category.getMaxTokens())
             .updatedAt(category.getUpdatedAt())
             .build();
     }
@@ -63,25 +70,46 @@ public class CategoryService {
             .name(name)
             .createdBy(admin)
             .build();
-        return categoryRepository.save(category);
+        category = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(category.getId(), CategoryChangedEvent.Type.CREATED));
+        return category;
     }
     
     @Transactional
     public Category deleteCategory(Long id){
         Category category = findCategoryById(id);
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id, CategoryChangedEvent.Type.DELETED));
         return category;
     }
 
     @Transactional 
     public Category updateCategory(String name, String content, List<String> presets, Long id, Admin admin){
+        return updateCategory(name, content, presets, null, null, id, admin);
+    }
+
+    @Transactional
+    public Category updateCategory(String name, String content, List<String> presets, String modelRoute,
+            Integer maxTokens, Long id, Admin admin){
         Category category = findCategoryById(id);
         if(name != null) category.setName(name);
         if(content != null) category.setContent(content);
         if(presets != null) category.setPreset(presets);
+        if(modelRoute != null){
+            if(!modelRoute.isEmpty() && !modelRouter.routeNames().contains(modelRoute)){
+                throw new IllegalArgumentException("Model route must be one of " + modelRouter.routeNames());
+            }
+            category.setModelRoute(modelRoute.isEmpty() ? null : modelRoute);
+        }
+        if(maxTokens != null){
+            if(maxTokens < 0) throw new IllegalArgumentException("Max tokens cannot be negative");
+            category.setMaxTokens(maxTokens == 0 ? null : maxTokens);
+        }
         category.setUpdatedAt(LocalDateTime.now());
         category.setUpdatedBy(admin);
-        return categoryRepository.save(category);
+        category = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id, CategoryChangedEvent.Type.UPDATED));
+        return category;
     }   
 
     public Category findCategoryById(Long id){
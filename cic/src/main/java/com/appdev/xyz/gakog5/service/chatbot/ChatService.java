@@ -1,20 +1,42 @@
 package com.appdev.xyz.gakog5.service.chatbot;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.appdev.xyz.gakog5.dto.chatbot.ChatRequest;
 import com.appdev.xyz.gakog5.dto.chatbot.ChatResponse;
+import com.appdev.xyz.gakog5.dto.chatbot.ChatSummaryResponse;
+import com.appdev.xyz.gakog5.dto.chatbot.CursorPage;
 import com.appdev.xyz.gakog5.dto.chatbot.MessageResponse;
+import com.appdev.xyz.gakog5.dto.chatbot.NLPRequest;
 import com.appdev.xyz.gakog5.dto.chatbot.NLPResponse;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
 import com.appdev.xyz.gakog5.entity.chatbot.Chat;
+import com.appdev.xyz.gakog5.entity.chatbot.ChatDeletion;
 import com.appdev.xyz.gakog5.entity.chatbot.Message;
 import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.event.ChatTurnSavedEvent;
+import com.appdev.xyz.gakog5.event.MessageChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatDeletionRepository;
 import com.appdev.xyz.gakog5.repository.chatbot.ChatRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatSummary;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageHistory;
 import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -23,27 +45,131 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ChatService {
 
+    // Chat ids per history query; keeps the IN list well inside what databases accept
+    private static final int HISTORY_BATCH = 1000;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final NLPService nlpService;
     private final ChatRepository chatRepository;
     private final MessageRepository messageRepository;
+    private final ChatDeletionRepository chatDeletionRepository;
     private final CategoryService categoryService;
+    private final ConversationMemory conversationMemory;
+    private final PresetAnswerService presetAnswerService;
+    private final QueryScheduler queryScheduler;
+    private final TokenUsageService tokenUsageService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Transactional
-    public NLPResponse processQuery(ChatRequest req, User user){
-        String question = req.getQuestion();
-        NLPResponse nlpResponse = nlpService.processQuestion(question, req.getCategoryId());
-        return nlpResponse;
+    /**
+     * Answer to the question without holding the calling thread while it waits for its turn or
+     * for the LLM. Quota, rate limit and full-queue rejections are thrown right away; a
+     * scheduler timeout fails the future with QueryRejectedException.
+     *
+     * Deliberately not transactional: the LLM call can take seconds and must not hold a pooled
+     * connection. Reads and saveQueryToChat run in their own short transactions.
+     */
+    public CompletableFuture<NLPResponse> processQueryAsync(ChatRequest req, User user){
+        boolean adminTest = isAdminTest(req, user);
+        NLPResponse preset = adminTest ? null : presetAnswer(req);
+        if(preset != null) return CompletableFuture.completedFuture(preset);
+        checkQuota(req, user);
+        NLPRequest nlpRequest = toNLPRequest(req, user, adminTest);
+        // Same hand-off as streamQuery: routing reads the database, which the callback threads must not
+        return queryScheduler.acquire(user, adminTest)
+            .thenComposeAsync(permit -> {
+                try{
+                    return nlpService.processQuestionAsync(nlpRequest, permit)
+                        .whenComplete((response, e) -> permit.close());
+                }catch(RuntimeException e){
+                    permit.close();
+                    throw e;
+                }
+            }, applicationTaskExecutor)
+            .thenApply(response -> withHistory(response, nlpRequest));
+    }
+
+    public CompletableFuture<NLPResponse> streamQuery(ChatRequest req, User user, Consumer<String> onToken){
+        boolean adminTest = isAdminTest(req, user);
+        NLPResponse preset = adminTest ? null : presetAnswer(req);
+        if(preset != null){
+            onToken.accept(preset.getAnswer());
+            return CompletableFuture.completedFuture(preset);
+        }
+        checkQuota(req, user);
+        NLPRequest nlpRequest = toNLPRequest(req, user, adminTest);
+        // Started on the task executor: the permit may be handed over by an HTTP callback thread
+        return queryScheduler.acquire(user, adminTest)
+            .thenComposeAsync(permit -> {
+                try{
+                    return nlpService.streamQuestion(nlpRequest, permit, onToken)
+                        .whenComplete((response, e) -> permit.close());
+                }catch(RuntimeException e){
+                    permit.close();
+                    throw e;
+                }
+            }, applicationTaskExecutor)
+            .thenApply(response -> withHistory(response, nlpRequest));
+    }
+
+    private static NLPResponse withHistory(NLPResponse response, NLPRequest request){
+        response.setWithHistory(!request.getHistory().isEmpty());
+        return response;
+    }
+
+    /**
+     * Whether this is an admin's test query from the terminal, which skips preset answers and the
+     * answer cache, waits in the priority lane and is not saved to a chat. The test flag alone is
+     * the client's word, so anyone else's is ignored.
+     */
+    public static boolean isAdminTest(ChatRequest req, User user){
+        return req.isTest() && user != null && user.getRole() == UserRole.ADMIN;
+    }
+
+    // Preset buttons send their question with the category; admin tests always hit the LLM
+    private NLPResponse presetAnswer(ChatRequest req){
+        if(req.getCategoryId() == null) return null;
+        String answer = presetAnswerService.find(req.getCategoryId(), req.getQuestion());
+        if(answer == null) return null;
+        return NLPResponse.builder()
+            .answer(answer)
+            .confidence(1.0)
+            .categoryId(req.getCategoryId())
+            .categoryName(presetAnswerService.categoryName(req.getCategoryId()))
+            .build();
+    }
+
+    // Preset answers are free, so the quota is only checked for questions that may reach the LLM.
+    // Admins are exempt there; the request's test flag is the client's word and exempts no one.
+    private void checkQuota(ChatRequest req, User user){
+        tokenUsageService.checkQuota(user, req.getCategoryId());
+    }
+
+    private NLPRequest toNLPRequest(ChatRequest req, User user, boolean adminTest){
+        return NLPRequest.builder()
+            .question(req.getQuestion())
+            .categoryId(req.getCategoryId())
+            .userId(user != null ? user.getId() : null)
+            .bypassCache(adminTest)
+            .instant(req.isInstant())
+            .fanOut(req.isFanOut())
+            .history(conversationMemory.history(req.getId(), user))
+            .build();
     }
 
 
     @Transactional
-    public Message saveQueryToChat(ChatRequest req, User user, String answer){
+    public Message saveQueryToChat(ChatRequest req, User user, String answer, boolean withHistory){
         String question = req.getQuestion();
         UUID chatId = req.getId();
+        Category category = req.getCategoryId() != null ? categoryService.findCategoryById(req.getCategoryId()) : null;
         Message message = Message.builder()
         .botMessage(answer)
         .userMessage(question)
-        .category(categoryService.findCategoryById(req.getCategoryId()))
+        .category(category)
+        .contentVersion(category != null ? category.getContentVersion() : null)
+        .withHistory(withHistory)
+        .edited(false)
         .build();
 
         Chat chat = null;
@@ -55,52 +181,208 @@ public class ChatService {
             chat = updateChat(chatId, message);
         }
         messageRepository.save(message);
+        eventPublisher.publishEvent(new ChatTurnSavedEvent(chat.getId()));
         return message;
     }
 
-    @Transactional 
+    /**
+     * The chats with their messages. Messages of all chats are read together, one query per
+     * HISTORY_BATCH chats, instead of one query per chat.
+     */
+    @Transactional(readOnly = true)
     public List<ChatResponse> convertAllToChatResponse(List<Chat> chats){
-        List<ChatResponse> response = new ArrayList<>();
+        List<UUID> ids = chats.stream().map(Chat::getId).toList();
+        List<MessageHistory> history = new ArrayList<>();
+        for(int from = 0; from < ids.size(); from += HISTORY_BATCH){
+            history.addAll(messageRepository.findHistoryByChatIds(ids.subList(from, Math.min(ids.size(), from + HISTORY_BATCH))));
+        }
+        return toChatResponses(chats, history);
+    }
+
+    @Transactional(readOnly = true)
+    public ChatResponse convertToChatResponse(Chat chat){
+        return convertAllToChatResponse(List.of(chat)).get(0);
+    }
+
+    /**
+     * Every chat with its messages in two queries, however many chats there are.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatResponse> getAllChatResponses(){
+        return toChatResponses(chatRepository.findAllWithUser(), messageRepository.findAllHistory());
+    }
 
-        for (Chat c : chats) {
-            response.add(convertToChatResponse(c));
+    // history is in message order, so each chat's messages keep theirs
+    private static List<ChatResponse> toChatResponses(List<Chat> chats, List<MessageHistory> history){
+        Map<UUID, List<MessageResponse>> messagesByChat = new HashMap<>();
+        for(MessageHistory m : history){
+            messagesByChat.computeIfAbsent(m.getChatId(), id -> new ArrayList<>()).add(toMessageResponse(m));
+        }
+
+        List<ChatResponse> response = new ArrayList<>(chats.size());
+        for(Chat chat : chats){
+            User user = chat.getUser();
+            response.add(ChatResponse.builder()
+                .id(chat.getId())
+                .userId(user != null ? user.getId() : null)
+                .title(chat.getTitle())
+                .messages(messagesByChat.getOrDefault(chat.getId(), new ArrayList<>()))
+                .timestamp(chat.getTimestamp())
+                .build());
         }
         return response;
     }
 
-    @Transactional
-    public ChatResponse convertToChatResponse(Chat chat){
-        List<Message> messages = messageRepository.findByChat(chat);
+    static MessageResponse toMessageResponse(MessageHistory m){
+        return MessageResponse.builder()
+            .id(m.getId())
+            .chatId(m.getChatId())
+            .botMessage(m.getBotMessage())
+            .userMessage(m.getUserMessage())
+            .timestamp(m.getTimestamp())
+            .like(m.getLike())
+            .category(m.getCategory())
+            .build();
+    }
 
-        List<MessageResponse> response = new ArrayList<>();
-        User user = chat.getUser();
-        Long userId = user != null ? user.getId() : null;
-
-        messages.forEach(m->{
-            response.add(
-                MessageResponse.builder()
-                    .id(m.getId())
-                    .botMessage(m.getBotMessage())
-                    .userMessage(m.getUserMessage())
-                    .timestamp(m.getTimestamp())
-                    .like(m.getLike())
-                    .category(m.getCategory() != null ? m.getCategory().getName() : null)
-                    .build()
-            );
-        });
-
-        return ChatResponse.builder()
+    /**
+     * A page of the user's chats, newest first, each with its message count and the start of
+     * its latest message but not the messages themselves.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ChatSummaryResponse> getChatSummaries(User user, String cursor, int size){
+        int limit = pageSize(size);
+        // One row more than the page tells whether there is a next one
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<ChatSummary> rows;
+        if(cursor == null || cursor.isBlank()){
+            rows = chatRepository.findSummariesByUser(user, page);
+        }else{
+            Cursor after = Cursor.decode(cursor);
+            rows = chatRepository.findSummariesByUserBefore(user, after.timestamp(), after.uuid(), page);
+        }
+
+        List<ChatSummaryResponse> items = new ArrayList<>(Math.min(rows.size(), limit));
+        for(ChatSummary row : rows.subList(0, Math.min(rows.size(), limit))){
+            items.add(toSummaryResponse(row));
+        }
+        ChatSummaryResponse lastItem = items.isEmpty() ? null : items.get(items.size() - 1);
+        String next = rows.size() > limit ? Cursor.encode(lastItem.getTimestamp(), lastItem.getId()) : null;
+        return new CursorPage<>(items, next);
+    }
+
+    /**
+     * A page of the user's chat, oldest first. Without a cursor it is the latest messages; the
+     * next cursor gets the ones before them.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<MessageResponse> getMessages(UUID chatId, User user, String cursor, int size){
+        Chat chat = findChatById(chatId);
+        if(chat.getUser() == null || user == null || !chat.getUser().getId().equals(user.getId())){
+            throw new IllegalArgumentException("Chat with this id does not exist/");
+        }
+
+        int limit = pageSize(size);
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<MessageHistory> rows;
+        if(cursor == null || cursor.isBlank()){
+            rows = messageRepository.findHistoryPage(chatId, page);
+        }else{
+            Cursor before = Cursor.decode(cursor);
+            rows = messageRepository.findHistoryPageBefore(chatId, before.timestamp(), before.number(), page);
+        }
+
+        // Read newest first so the page ends at the latest message; shown oldest first
+        List<MessageResponse> items = new ArrayList<>(Math.min(rows.size(), limit));
+        for(MessageHistory row : rows.subList(0, Math.min(rows.size(), limit))){
+            items.add(toMessageResponse(row));
+        }
+        String next = null;
+        if(rows.size() > limit){
+            MessageResponse oldest = items.get(items.size() - 1);
+            next = Cursor.encode(oldest.getTimestamp(), oldest.getId());
+        }
+        Collections.reverse(items);
+        return new CursorPage<>(items, next);
+    }
+
+    /**
+     * The chat a new message was saved to, as it now appears in the chat list; the message
+     * itself is returned separately, so the rest of the conversation is not read again.
+     */
+    @Transactional(readOnly = true)
+    public ChatSummaryResponse toChatSummary(Message latest){
+        Chat chat = latest.getChat();
+        return ChatSummaryResponse.builder()
             .id(chat.getId())
-            .userId(userId)
             .title(chat.getTitle())
-            .messages(response)
             .timestamp(chat.getTimestamp())
+            .lastMessage(snippet(latest.getUserMessage(), latest.getBotMessage()))
+            .messageCount(messageRepository.countByChat_Id(chat.getId()))
+            .build();
+    }
+
+    static ChatSummaryResponse toSummaryResponse(ChatSummary row){
+        return ChatSummaryResponse.builder()
+            .id(row.getId())
+            .title(row.getTitle())
+            .timestamp(row.getTimestamp())
+            .lastMessage(snippet(row.getLastUserMessage(), row.getLastBotMessage()))
+            .messageCount(row.getMessageCount() != null ? row.getMessageCount() : 0)
             .build();
     }
 
+    // The answer if there is one, else the question
+    private static String snippet(String userMessage, String botMessage){
+        String text = botMessage != null && !botMessage.isBlank() ? botMessage : userMessage;
+        return text != null && text.length() > ChatRepository.SNIPPET_LENGTH ? text.substring(0, ChatRepository.SNIPPET_LENGTH) : text;
+    }
+
+    private static int pageSize(int size){
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Position in a (timestamp, id) ordered list, handed to clients as an opaque string so its
+     * format can change without breaking them.
+     */
+    record Cursor(LocalDateTime timestamp, String id) {
+
+        static String encode(LocalDateTime timestamp, Object id){
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor){
+            try{
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                if(parts.length != 2) throw new IllegalArgumentException("Invalid cursor");
+                return new Cursor(LocalDateTime.parse(parts[0]), parts[1]);
+            }catch(RuntimeException e){
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        UUID uuid(){
+            try{
+                return UUID.fromString(id);
+            }catch(IllegalArgumentException e){
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        Long number(){
+            try{
+                return Long.valueOf(id);
+            }catch(NumberFormatException e){
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
     @Transactional
     public List<Chat> getAll(){
-        return chatRepository.findAll();
+        return chatRepository.findAllWithUser();
     }
 
 
@@ -132,6 +414,18 @@ public class ChatService {
         List<Message> messages = messageRepository.findByChat(chat);
         messageRepository.deleteAll(messages);
         chatRepository.delete(chat);
+        if(chat.getUser() != null){
+            chatDeletionRepository.save(ChatDeletion.builder()
+                .userId(chat.getUser().getId())
+                .chatId(chat.getId())
+                .build());
+        }
+        for(Message message : messages){
+            if(Boolean.TRUE.equals(message.getLike())){
+                eventPublisher.publishEvent(new MessageChangedEvent(message.getId(),
+                    message.getCategory() != null ? message.getCategory().getId() : null));
+            }
+        }
         return chat;
     }
 
@@ -0,0 +1,112 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.appdev.xyz.gakog5.dto.chatbot.ChatChanges;
+import com.appdev.xyz.gakog5.dto.chatbot.ChatSummaryResponse;
+import com.appdev.xyz.gakog5.dto.chatbot.MessageResponse;
+import com.appdev.xyz.gakog5.entity.chatbot.ChatDeletion;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatDeletionRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatSummary;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageHistory;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Changes to a user's chats since a watermark the client got from its previous sync, so an open
+ * chat page can stay current without fetching its chats and messages again.
+ *
+ * Each sync reads from a little before the watermark: a change saved just before the watermark
+ * but committed after it is then still seen, at the cost of sometimes sending a change twice.
+ * Deletions are kept as ChatDeletion rows for chat.sync.retention-days; a watermark older than
+ * that, or more than MAX_CHANGES changes, is answered with resync instead.
+ */
+@Service
+@Slf4j
+public class ChatSyncService {
+
+    private static final Duration OVERLAP = Duration.ofSeconds(5);
+    private static final int MAX_CHANGES = 500;
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+    private final ChatDeletionRepository chatDeletionRepository;
+    private final int retentionDays;
+
+    public ChatSyncService(ChatRepository chatRepository, MessageRepository messageRepository,
+            ChatDeletionRepository chatDeletionRepository,
+            @Value("${chat.sync.retention-days:30}") int retentionDays){
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.chatDeletionRepository = chatDeletionRepository;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * What changed in the user's chats after since. Without since there is nothing to compare
+     * to, and only the watermark to start syncing from is returned.
+     */
+    @Transactional(readOnly = true)
+    public ChatChanges changesSince(User user, String since){
+        LocalDateTime now = LocalDateTime.now();
+        ChatChanges.ChatChangesBuilder changes = ChatChanges.builder()
+            .watermark(now.toString())
+            .chats(List.of())
+            .messages(List.of())
+            .deletedChatIds(List.of())
+            .deletedMessageIds(List.of());
+        if(since == null || since.isBlank()) return changes.build();
+
+        LocalDateTime from;
+        try{
+            from = LocalDateTime.parse(since).minus(OVERLAP);
+        }catch(DateTimeParseException e){
+            throw new IllegalArgumentException("Invalid watermark");
+        }
+        if(from.isBefore(now.minusDays(retentionDays))) return changes.resync(true).build();
+
+        PageRequest page = PageRequest.of(0, MAX_CHANGES + 1);
+        List<ChatSummary> chats = chatRepository.findChangedSummaries(user, from, page);
+        List<MessageHistory> messages = messageRepository.findChangedByUser(user, from, page);
+        if(chats.size() > MAX_CHANGES || messages.size() > MAX_CHANGES) return changes.resync(true).build();
+
+        List<ChatSummaryResponse> chatResponses = new ArrayList<>(chats.size());
+        for(ChatSummary chat : chats) chatResponses.add(ChatService.toSummaryResponse(chat));
+        List<MessageResponse> messageResponses = new ArrayList<>(messages.size());
+        for(MessageHistory message : messages) messageResponses.add(ChatService.toMessageResponse(message));
+
+        List<UUID> deletedChats = new ArrayList<>();
+        List<Long> deletedMessages = new ArrayList<>();
+        for(ChatDeletion deletion : chatDeletionRepository.findByUserIdAndDeletedAtAfter(user.getId(), from)){
+            if(deletion.getMessageId() == null) deletedChats.add(deletion.getChatId());
+            else deletedMessages.add(deletion.getMessageId());
+        }
+
+        return changes
+            .chats(chatResponses)
+            .messages(messageResponses)
+            .deletedChatIds(deletedChats)
+            .deletedMessageIds(deletedMessages)
+            .build();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.sync.prune-interval-ms:3600000}", initialDelayString = "${chat.sync.prune-interval-ms:3600000}")
+    public void pruneDeletions(){
+        int pruned = chatDeletionRepository.deleteOlderThan(LocalDateTime.now().minusDays(retentionDays));
+        if(pruned > 0) log.debug("Pruned {} chat deletion records", pruned);
+    }
+}
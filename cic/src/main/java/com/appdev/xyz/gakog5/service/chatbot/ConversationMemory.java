@@ -0,0 +1,222 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+import com.appdev.xyz.gakog5.entity.chatbot.Chat;
+import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.event.ChatTurnSavedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+import com.appdev.xyz.gakog5.service.llm.ChatCompletionClient;
+import com.appdev.xyz.gakog5.service.llm.ModelRoute;
+import com.appdev.xyz.gakog5.service.llm.ModelRouter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Conversation context for follow-up questions, kept at a constant size however long the chat
+ * gets.
+ *
+ * The prompt carries the chat's running summary plus the most recent turns that fit
+ * nlp.context.max-tokens (at most nlp.context.window-messages of them). Once a chat has more
+ * unsummarized turns than the window holds, the oldest ones are folded into the summary by the
+ * LLM in the background, after the turn is saved, so answering never waits on it.
+ */
+@Service
+@Slf4j
+public class ConversationMemory {
+
+    // Rough English average; close enough for budgeting without a tokenizer
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+    private final ChatCompletionClient chatCompletionClient;
+    private final ModelRouter modelRouter;
+    private final TokenUsageService tokenUsageService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final int windowMessages;
+    private final int maxTokens;
+    private final int summaryMaxTokens;
+    private final Set<UUID> summarizing = ConcurrentHashMap.newKeySet();
+    private final DistributionSummary contextTokens;
+    private final Counter summarized;
+    private final Counter summaryFailed;
+
+    public ConversationMemory(ChatRepository chatRepository, MessageRepository messageRepository,
+            ChatCompletionClient chatCompletionClient, ModelRouter modelRouter, TokenUsageService tokenUsageService,
+            AsyncTaskExecutor applicationTaskExecutor,
+            @Value("${nlp.context.window-messages:6}") int windowMessages,
+            @Value("${nlp.context.max-tokens:1500}") int maxTokens,
+            @Value("${nlp.context.summary-max-tokens:300}") int summaryMaxTokens,
+            MeterRegistry meterRegistry){
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.chatCompletionClient = chatCompletionClient;
+        this.modelRouter = modelRouter;
+        this.tokenUsageService = tokenUsageService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.windowMessages = windowMessages;
+        this.maxTokens = maxTokens;
+        this.summaryMaxTokens = summaryMaxTokens;
+        this.contextTokens = DistributionSummary.builder("cic.context.tokens")
+            .description("Estimated tokens of conversation history added to a prompt")
+            .publishPercentiles(0.5, 0.95)
+            .register(meterRegistry);
+        this.summarized = Counter.builder("cic.context.summaries").tag("outcome", "updated")
+            .description("Background updates of chat summaries")
+            .register(meterRegistry);
+        this.summaryFailed = Counter.builder("cic.context.summaries").tag("outcome", "failed")
+            .description("Background updates of chat summaries")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Earlier conversation of the user's chat as prompt messages, oldest first: the summary (if
+     * any) as a system message, then the recent turns. Empty for a new chat or someone else's.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> history(UUID chatId, User user){
+        if(chatId == null) return List.of();
+        Chat chat = chatRepository.findById(chatId).orElse(null);
+        if(chat == null || chat.getUser() == null || user == null || !chat.getUser().getId().equals(user.getId())){
+            return List.of();
+        }
+
+        int budget = maxTokens;
+        ChatMessage summary = null;
+        if(chat.getSummary() != null && !chat.getSummary().isBlank()){
+            summary = ChatMessage.system("Summary of the earlier conversation: " + chat.getSummary());
+            budget -= estimateTokens(summary.getContent());
+        }
+
+        // Newest first, so the turns that matter most for a follow-up are the ones kept
+        List<ChatMessage> turns = new ArrayList<>();
+        for(Message message : messageRepository.findByChat_IdAndIdGreaterThanOrderByIdDesc(chatId,
+                summarizedThrough(chat), PageRequest.of(0, windowMessages))){
+            int tokens = estimateTokens(message.getUserMessage()) + estimateTokens(message.getBotMessage());
+            if(tokens > budget) break;
+            budget -= tokens;
+            turns.add(ChatMessage.assistant(nullToEmpty(message.getBotMessage())));
+            turns.add(ChatMessage.user(nullToEmpty(message.getUserMessage())));
+        }
+        if(summary != null) turns.add(summary);
+        Collections.reverse(turns);
+
+        contextTokens.record(maxTokens - budget);
+        return turns;
+    }
+
+    // Runs after the commit so the new message is counted, and off the request thread
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTurnSaved(ChatTurnSavedEvent event){
+        applicationTaskExecutor.execute(() -> catchUp(event.getChatId()));
+    }
+
+    private void catchUp(UUID chatId){
+        Chat chat = chatRepository.findById(chatId).orElse(null);
+        if(chat == null) return;
+        long unsummarized = messageRepository.countByChat_IdAndIdGreaterThan(chatId, summarizedThrough(chat));
+        if(unsummarized <= windowMessages || !summarizing.add(chatId)) return;
+
+        try{
+            // Fold everything beyond the window, in batches no bigger than the window itself
+            int overflow = (int) Math.min(unsummarized - windowMessages, windowMessages);
+            List<Message> oldest = messageRepository.findByChat_IdAndIdGreaterThanOrderByIdAsc(chatId,
+                summarizedThrough(chat), PageRequest.of(0, overflow));
+            if(oldest.isEmpty()){
+                // Deleted since they were counted
+                summarizing.remove(chatId);
+                return;
+            }
+            Long through = oldest.get(oldest.size() - 1).getId();
+
+            // Condensing text needs no reasoning, so it always takes the fast route
+            ModelRoute route = modelRouter.named(ModelRouter.FAST);
+            Long userId = chat.getUser() != null ? chat.getUser().getId() : null;
+            modelRouter.track(route, tokenUsageService.track(userId, null, route.model(),
+                    chatCompletionClient.complete(summaryRequest(route, chat.getSummary(), oldest))))
+                .thenApply(ChatCompletion::getContent)
+                // Completions finish on the HTTP callback threads, which must not block on the database
+                .thenAcceptAsync(summary -> {
+                    if(summary == null || summary.isBlank()) throw new IllegalStateException("Empty summary");
+                    chatRepository.updateSummary(chatId, summary.trim(), through);
+                    summarized.increment();
+                }, applicationTaskExecutor)
+                .whenComplete((ignored, e) -> {
+                    summarizing.remove(chatId);
+                    if(e != null){
+                        // The window still bounds the prompt; the next saved turn retries
+                        summaryFailed.increment();
+                        log.warn("Could not update summary of chat {}: {}", chatId, e.getMessage());
+                    }
+                });
+        }catch(RuntimeException e){
+            // Failed before the chain could release the chat, which would otherwise never be summarized again
+            summarizing.remove(chatId);
+            summaryFailed.increment();
+            log.warn("Could not update summary of chat {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    private ChatCompletionRequest summaryRequest(ModelRoute route, String previous, List<Message> messages){
+        StringBuilder transcript = new StringBuilder();
+        for(Message message : messages){
+            transcript.append("User: ").append(nullToEmpty(message.getUserMessage())).append('\n')
+                .append("Assistant: ").append(nullToEmpty(message.getBotMessage())).append("\n\n");
+        }
+        String prompt = String.format(
+            """
+            Update the running summary of a conversation between a student and a campus assistant.
+
+            Current summary:
+            %s
+
+            New messages:
+            %s
+            Write the updated summary in at most %d words. Keep names, numbers, dates and anything
+            the student may refer back to; drop greetings and formatting. Reply with the summary only.
+            """,
+            previous == null || previous.isBlank() ? "(none yet)" : previous,
+            transcript,
+            summaryMaxTokens * 3 / 4);
+
+        return ChatCompletionRequest.builder()
+            .model(route.model())
+            .messages(List.of(ChatMessage.user(prompt)))
+            .maxTokens(summaryMaxTokens)
+            .temperature(0.2)
+            .build();
+    }
+
+    static int estimateTokens(String text){
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static long summarizedThrough(Chat chat){
+        return chat.getSummarizedThroughId() != null ? chat.getSummarizedThroughId() : 0L;
+    }
+
+    private static String nullToEmpty(String text){
+        return text != null ? text : "";
+    }
+}
@@ -0,0 +1,261 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.event.MessageChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers students liked, served again when someone asks nearly the same question of the same
+ * category, without going to the LLM.
+ *
+ * Questions are fingerprinted with a 64-bit SimHash of their words. Candidates are found
+ * through four 16-bit bands of the fingerprint: two fingerprints at most three bits apart
+ * always share a band, so a lookup is a few map reads. A candidate is used only when its
+ * fingerprint is within nlp.liked-answers.max-distance bits and the two questions share enough
+ * of their words, which keeps "when does it open" from matching "when does it close".
+ *
+ * Only answers generated from the category's current content are kept; an edit to the content
+ * drops the category's entries, and unliking, editing or deleting a message drops its own.
+ * Answers to follow-up questions, which were written with the rest of their chat in the prompt,
+ * and messages their owner has edited are never served.
+ */
+@Service
+@Slf4j
+public class LikedAnswerIndex {
+
+    static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+
+    private final MessageRepository messageRepository;
+    private final CategoryRepository categoryRepository;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final boolean enabled;
+    private final int maxDistance;
+    private final double minOverlap;
+    private final Map<Long, Shard> shards = new ConcurrentHashMap<>();
+    private final Counter served;
+
+    private record Entry(Long messageId, long hash, Set<String> terms, String answer) {}
+
+    /**
+     * Liked answers of one category for one content version. Never changed once built;
+     * updates build a new shard, so lookups need no locking.
+     */
+    private record Shard(String contentVersion, Map<Long, Entry> byMessage, Map<Integer, List<Entry>> bands) {
+
+        static Shard of(String contentVersion, Map<Long, Entry> byMessage){
+            Map<Integer, List<Entry>> bands = new HashMap<>();
+            for(Entry entry : byMessage.values()){
+                for(int band = 0; band < BANDS; band++){
+                    bands.computeIfAbsent(bandKey(band, entry.hash()), k -> new ArrayList<>(1)).add(entry);
+                }
+            }
+            return new Shard(contentVersion, byMessage, bands);
+        }
+    }
+
+    public LikedAnswerIndex(MessageRepository messageRepository, CategoryRepository categoryRepository,
+            AsyncTaskExecutor applicationTaskExecutor,
+            @Value("${nlp.liked-answers.enabled:true}") boolean enabled,
+            @Value("${nlp.liked-answers.max-distance:3}") int maxDistance,
+            @Value("${nlp.liked-answers.min-overlap:0.75}") double minOverlap,
+            MeterRegistry meterRegistry){
+        if(maxDistance >= BANDS){
+            // Beyond this a near duplicate can differ in every band and would not be found
+            throw new IllegalArgumentException("nlp.liked-answers.max-distance must be below " + BANDS);
+        }
+        this.messageRepository = messageRepository;
+        this.categoryRepository = categoryRepository;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.minOverlap = minOverlap;
+        this.served = Counter.builder("cic.liked-answers.served")
+            .description("Questions answered with a liked answer to a near-identical question")
+            .register(meterRegistry);
+        Gauge.builder("cic.liked-answers.size", shards, s -> s.values().stream().mapToInt(shard -> shard.byMessage().size()).sum())
+            .description("Liked answers that can be served")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Liked answer to a question close enough to this one, from the category's current
+     * content, or null.
+     */
+    public String find(Category category, String question){
+        if(!enabled || category == null) return null;
+        Shard shard = shards.get(category.getId());
+        if(shard == null || !shard.contentVersion().equals(category.getContentVersion())) return null;
+
+        List<String> words = TextNormalizer.tokenize(question);
+        if(words.isEmpty()) return null;
+        long hash = simHash(words);
+        Set<String> terms = new HashSet<>(words);
+
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for(int band = 0; band < BANDS; band++){
+            List<Entry> candidates = shard.bands().get(bandKey(band, hash));
+            if(candidates == null) continue;
+            for(Entry entry : candidates){
+                int distance = Long.bitCount(hash ^ entry.hash());
+                if(distance <= maxDistance && distance < bestDistance && overlap(terms, entry.terms()) >= minOverlap){
+                    best = entry;
+                    bestDistance = distance;
+                }
+            }
+        }
+        if(best == null) return null;
+        served.increment();
+        return best.answer();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll(){
+        if(!enabled) return;
+        applicationTaskExecutor.execute(() -> {
+            Map<Long, List<Message>> byCategory = new HashMap<>();
+            for(Message message : messageRepository.findLikedWithCategory()){
+                byCategory.computeIfAbsent(message.getCategory().getId(), id -> new ArrayList<>()).add(message);
+            }
+            byCategory.forEach((categoryId, messages) -> update(categoryId, (category, entries) -> {
+                for(Message message : messages) put(entries, message, category);
+            }));
+            log.info("Loaded liked answers of {} categories", byCategory.size());
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event){
+        if(!enabled || event.getCategoryId() == null) return;
+        Message message = messageRepository.findById(event.getMessageId()).orElse(null);
+        update(event.getCategoryId(), (category, entries) -> {
+            entries.remove(event.getMessageId());
+            if(message != null) put(entries, message, category);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        Shard shard = shards.get(event.getCategoryId());
+        if(shard == null) return;
+        Category category = event.getType() == CategoryChangedEvent.Type.DELETED
+            ? null
+            : categoryRepository.findById(event.getCategoryId()).orElse(null);
+        // A rename or preset edit leaves the answers valid; new content does not
+        if(category == null || !shard.contentVersion().equals(category.getContentVersion())){
+            log.debug("Dropping liked answers of category {}", event.getCategoryId());
+            shards.remove(event.getCategoryId(), shard);
+        }
+    }
+
+    // Copy-on-write: mutations are rare next to lookups, and serialized here
+    private synchronized void update(Long categoryId, BiConsumer<Category, Map<Long, Entry>> change){
+        Category category = categoryRepository.findById(categoryId).orElse(null);
+        if(category == null){
+            shards.remove(categoryId);
+            return;
+        }
+        Shard current = shards.get(categoryId);
+        Map<Long, Entry> entries = current != null && current.contentVersion().equals(category.getContentVersion())
+            ? new HashMap<>(current.byMessage())
+            : new HashMap<>();
+        change.accept(category, entries);
+        if(entries.isEmpty()) shards.remove(categoryId);
+        else shards.put(categoryId, Shard.of(category.getContentVersion(), entries));
+    }
+
+    private static void put(Map<Long, Entry> entries, Message message, Category category){
+        if(!Boolean.TRUE.equals(message.getLike()) || !isCurrent(message, category)) return;
+        // Only answers the model gave to the question alone, as it gave them. Messages saved
+        // before these were recorded are left out, since they cannot be vouched for.
+        if(!Boolean.FALSE.equals(message.getEdited()) || !Boolean.FALSE.equals(message.getWithHistory())) return;
+        if(message.getBotMessage() == null || message.getBotMessage().isBlank()) return;
+        List<String> words = TextNormalizer.tokenize(message.getUserMessage());
+        if(words.isEmpty()) return;
+        entries.put(message.getId(), new Entry(message.getId(), simHash(words), new HashSet<>(words), message.getBotMessage()));
+    }
+
+    // Whether the answer was generated from the content the category has now
+    private static boolean isCurrent(Message message, Category category){
+        if(message.getCategory() == null || !message.getCategory().getId().equals(category.getId())) return false;
+        if(message.getContentVersion() != null) return message.getContentVersion().equals(category.getContentVersion());
+        // Saved before versions were kept: trust it only if the category has not been edited since
+        return category.getUpdatedAt() == null
+            || (message.getTimestamp() != null && message.getTimestamp().isAfter(category.getUpdatedAt()));
+    }
+
+    private static double overlap(Set<String> a, Set<String> b){
+        int shared = 0;
+        for(String term : a){
+            if(b.contains(term)) shared++;
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    /**
+     * 64-bit SimHash of the words; similar questions get fingerprints that differ in few bits.
+     * Word pairs are left out on purpose: questions are a handful of words once stopwords are
+     * gone, and pairs would make "enrollment requirements" and "requirements for enrollment"
+     * look unrelated.
+     */
+    static long simHash(List<String> words){
+        int[] weights = new int[64];
+        for(String word : words){
+            addFeature(weights, hash(word));
+        }
+        long fingerprint = 0;
+        for(int bit = 0; bit < 64; bit++){
+            if(weights[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+    private static void addFeature(int[] weights, long hash){
+        for(int bit = 0; bit < 64; bit++){
+            weights[bit] += ((hash >>> bit) & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    // FNV-1a with a final mix, so short words still spread over all 64 bits
+    private static long hash(String feature){
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < feature.length(); i++){
+            h ^= feature.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static int bandKey(int band, long hash){
+        return band << BAND_BITS | (int) ((hash >>> (band * BAND_BITS)) & 0xffff);
+    }
+}
@@ -1,9 +1,14 @@
 package com.appdev.xyz.gakog5.service.chatbot;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.appdev.xyz.gakog5.dto.chatbot.MessageResponse;
+import com.appdev.xyz.gakog5.entity.chatbot.ChatDeletion;
 import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.event.MessageChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatDeletionRepository;
 import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
 
 import jakarta.transaction.Transactional;
@@ -13,11 +18,14 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class MessageService {
     private final MessageRepository messageRepository;
+    private final ChatDeletionRepository chatDeletionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public MessageResponse convertToMessageResponse(Message message){
         return MessageResponse.builder()
                 .id(message.getId())
+                .chatId(message.getChat() != null ? message.getChat().getId() : null)
                 .userMessage(message.getUserMessage())
                 .botMessage(message.getBotMessage())
                 .timestamp(message.getTimestamp())
@@ -26,31 +34,57 @@ public class MessageService {
                 .build();
     }
     @Transactional
-    public Message handleLike(Long id, boolean like){
-        Message message = findMessageById(id);
+    public Message handleLike(Long id, boolean like, User user){
+        Message message = findOwnMessage(id, user);
         message.setLike(like);
-        return messageRepository.save(message);
+        return changed(messageRepository.save(message));
     }
 
     @Transactional
-    public Message deleteMessage(Long id){
-        Message message = findMessageById(id);
+    public Message deleteMessage(Long id, User user){
+        Message message = findOwnMessage(id, user);
         messageRepository.delete(message);
-        return message;
+        if(message.getChat() != null && message.getChat().getUser() != null){
+            chatDeletionRepository.save(ChatDeletion.builder()
+                .userId(message.getChat().getUser().getId())
+                .chatId(message.getChat().getId())
+                .messageId(message.getId())
+                .build());
+        }
+        return changed(message);
     }
 
     @Transactional
-    public Message updateBotMessage(Long id, String text){
-        Message message = findMessageById(id);
+    public Message updateBotMessage(Long id, String text, User user){
+        Message message = findOwnMessage(id, user);
         message.setBotMessage(text);
-        return messageRepository.save(message);
+        message.setEdited(true);
+        return changed(messageRepository.save(message));
     }
 
     @Transactional
-    public Message updateUserMessage(Long id, String text){
-     Message message = findMessageById(id);
+    public Message updateUserMessage(Long id, String text, User user){
+        Message message = findOwnMessage(id, user);
         message.setUserMessage(text);
-        return messageRepository.save(message);
+        message.setEdited(true);
+        return changed(messageRepository.save(message));
+    }
+
+    // Liked answers may be served to other students, so they must follow every change
+    private Message changed(Message message){
+        eventPublisher.publishEvent(new MessageChangedEvent(message.getId(),
+            message.getCategory() != null ? message.getCategory().getId() : null));
+        return message;
+    }
+
+    // Someone else's message is reported as missing rather than forbidden, so ids cannot be probed
+    private Message findOwnMessage(Long id, User user){
+        Message message = findMessageById(id);
+        User owner = message.getChat() != null ? message.getChat().getUser() : null;
+        if(owner == null || user == null || !owner.getId().equals(user.getId())){
+            throw new IllegalArgumentException("Message with that id does not exist.");
+        }
+        return message;
     }
 
     @Transactional
@@ -1,224 +1,585 @@
 package com.appdev.xyz.gakog5.service.chatbot;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import com.appdev.xyz.gakog5.dto.chatbot.NLPRequest;
 import com.appdev.xyz.gakog5.dto.chatbot.NLPResponse;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
 import com.appdev.xyz.gakog5.entity.chatbot.Category;
 import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.ContextRetriever;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.ExtractiveAnswerer;
+import com.appdev.xyz.gakog5.service.llm.ChatCompletionClient;
+import com.appdev.xyz.gakog5.service.llm.ModelRoute;
+import com.appdev.xyz.gakog5.service.llm.ModelRouter;
 
-import org.springframework.http.*;
-import org.springframework.beans.factory.annotation.Value;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class NLPService {
 
     private final CategoryRepository categoryRepository;
-    private final RestTemplate restTemplate;
-
-    private static final String GROQ_API_URL = "https://api.groq.com/openai/v1/chat/completions";
-    private static final String MODEL = "llama-3.1-8b-instant";
-
-    @Value("${groq.api.key}")
-    private String groqApiKey;
+    private final ChatCompletionClient chatCompletionClient;
+    private final AnswerCache answerCache;
+    private final ContextRetriever contextRetriever;
+    private final CategoryRouter categoryRouter;
+    private final ModelRouter modelRouter;
+    private final ExtractiveAnswerer extractiveAnswerer;
+    private final TokenUsageService tokenUsageService;
+    private final LikedAnswerIndex likedAnswerIndex;
+    private final boolean instantByDefault;
+    private final double instantMinCoverage;
+    private final boolean fanOutByDefault;
+    private final int fanOutMaxCategories;
+    private final Counter fanOutAnswered;
+    private final Counter fanOutUnanswered;
+    private final DistributionSummary fanOutWidth;
+    private final Timer timeToFirstToken;
+    private final Timer streamDuration;
+
+    // What the model is asked to reply when a fanned-out category does not have the answer
+    private static final String NO_ANSWER = "NO_ANSWER";
+    private static final String NOT_IN_CONTENT =
+        "politely say you don't have that specific information in this category.";
+
+    private static final String GENERAL_FALLBACK =
+        "Please select a category to get specific information, or ask me a more specific question.";
+
+    public NLPService(CategoryRepository categoryRepository, ChatCompletionClient chatCompletionClient,
+            AnswerCache answerCache, ContextRetriever contextRetriever, CategoryRouter categoryRouter,
+            ModelRouter modelRouter, ExtractiveAnswerer extractiveAnswerer, TokenUsageService tokenUsageService,
+            LikedAnswerIndex likedAnswerIndex,
+            @Value("${nlp.instant-answers.default:false}") boolean instantByDefault,
+            @Value("${nlp.instant-answers.min-coverage:0.6}") double instantMinCoverage,
+            @Value("${nlp.fan-out.default:false}") boolean fanOutByDefault,
+            @Value("${nlp.fan-out.max-categories:3}") int fanOutMaxCategories,
+            MeterRegistry meterRegistry) {
+        this.categoryRepository = categoryRepository;
+        this.chatCompletionClient = chatCompletionClient;
+        this.answerCache = answerCache;
+        this.contextRetriever = contextRetriever;
+        this.categoryRouter = categoryRouter;
+        this.modelRouter = modelRouter;
+        this.extractiveAnswerer = extractiveAnswerer;
+        this.tokenUsageService = tokenUsageService;
+        this.likedAnswerIndex = likedAnswerIndex;
+        this.instantByDefault = instantByDefault;
+        this.instantMinCoverage = instantMinCoverage;
+        this.fanOutByDefault = fanOutByDefault;
+        this.fanOutMaxCategories = fanOutMaxCategories;
+        this.fanOutAnswered = Counter.builder("cic.fan-out").tag("outcome", "answered")
+                .description("Unrouted questions sent to several candidate categories at once")
+                .register(meterRegistry);
+        this.fanOutUnanswered = Counter.builder("cic.fan-out").tag("outcome", "general")
+                .description("Unrouted questions sent to several candidate categories at once")
+                .register(meterRegistry);
+        this.fanOutWidth = DistributionSummary.builder("cic.fan-out.width")
+                .description("Categories a fanned-out question was actually sent to")
+                .register(meterRegistry);
+        this.timeToFirstToken = Timer.builder("cic.llm.stream.first-token")
+                .description("Time from sending a streamed completion to its first token")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.streamDuration = Timer.builder("cic.llm.stream.duration")
+                .description("Total time of a streamed completion")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
 
     /**
-     * Process user question with a specific category
-     * If categoryId is provided, answer from that category only
-     * If categoryId is null, return a general response
+     * Answer to the question: from the chosen category if categoryId is set, else from the
+     * routed category or a general response. Routing and prompt building happen on the calling
+     * thread, and the future completes on the HTTP callback thread once the LLM has answered.
+     * Failures of the LLM become fallback answers, so the future itself does not fail on them.
+     *
+     * @param permit the question's scheduler slot; a fan-out borrows extra slots through it
      */
-    public NLPResponse processQuestion(String userQuestion, Long categoryId) {
+    public CompletableFuture<NLPResponse> processQuestionAsync(NLPRequest request, QueryScheduler.Permit permit) {
+        String userQuestion = request.getQuestion();
+        Long categoryId = request.getCategoryId();
         log.info("Processing question: {} for category: {}", userQuestion, categoryId);
 
         if (categoryId == null) {
-            return generateGeneralResponse(userQuestion);
+            CategoryRouter.Route route = categoryRouter.route(routingText(request));
+            Category routed = route.isRouted() ? categoryRepository.findById(route.categoryId()).orElse(null) : null;
+            if (routed == null) {
+                return isFanOut(request)
+                    ? fanOut(request, route.confidence(), permit)
+                    : generateGeneralResponse(request, route.confidence());
+            }
+            String liked = likedAnswer(request, routed);
+            if (liked != null) {
+                return CompletableFuture.completedFuture(categoryResponse(liked, routed, route.confidence()));
+            }
+            ExtractiveAnswerer.Extract instant = instantAnswer(request, routed);
+            if (instant != null) {
+                return CompletableFuture.completedFuture(
+                    categoryResponse(instant.text(), routed, route.confidence() * instant.coverage()));
+            }
+            return generateAnswerFromCategory(request, routed)
+                .thenApply(answer -> categoryResponse(answer, routed, route.confidence()));
         }
 
         Optional<Category> categoryOpt = categoryRepository.findById(categoryId);
         
         if (categoryOpt.isEmpty()) {
             log.warn("Category not found: {}", categoryId);
-            return generateGeneralResponse(userQuestion);
+            return generateGeneralResponse(request, 0.0);
         }
 
         Category category = categoryOpt.get();
-        String answer = generateAnswerFromCategory(userQuestion, category);
+        String liked = likedAnswer(request, category);
+        if (liked != null) {
+            return CompletableFuture.completedFuture(categoryResponse(liked, category, 1.0));
+        }
+        ExtractiveAnswerer.Extract instant = instantAnswer(request, category);
+        if (instant != null) {
+            return CompletableFuture.completedFuture(categoryResponse(instant.text(), category, instant.coverage()));
+        }
+        return generateAnswerFromCategory(request, category)
+            .thenApply(answer -> categoryResponse(answer, category, 1.0));
+    }
 
-        return NLPResponse.builder()
-                .answer(answer)
-                .confidence(1.0)
-                .categoryId(category.getId())
-                .categoryName(category.getName())
-                .build();
+    /**
+     * Streaming variant of processQuestionAsync. Each answer fragment is handed to onToken
+     * as soon as the upstream produces it; the future completes with the full answer.
+     */
+    public CompletableFuture<NLPResponse> streamQuestion(NLPRequest request, QueryScheduler.Permit permit,
+            Consumer<String> onToken) {
+        String userQuestion = request.getQuestion();
+        Long categoryId = request.getCategoryId();
+        log.info("Streaming question: {} for category: {}", userQuestion, categoryId);
+
+        CategoryRouter.Route route = categoryId == null ? categoryRouter.route(routingText(request)) : null;
+        Long resolvedId = route != null ? route.categoryId() : categoryId;
+        Category category = resolvedId != null ? categoryRepository.findById(resolvedId).orElse(null) : null;
+        double confidence = route != null ? route.confidence() : 1.0;
+        if (category == null && categoryId == null && isFanOut(request)) {
+            // Which category answers is only known at the end, so the answer arrives whole
+            return fanOut(request, confidence, permit).thenApply(response -> {
+                onToken.accept(response.getAnswer());
+                return response;
+            });
+        }
+        if (category != null && (category.getContent() == null || category.getContent().trim().isEmpty())) {
+            String answer = String.format("The %s category doesn't have any content yet. Please add content to this category first.",
+                category.getName());
+            onToken.accept(answer);
+            return CompletableFuture.completedFuture(categoryResponse(answer, category, confidence));
+        }
+
+        String liked = category != null ? likedAnswer(request, category) : null;
+        if (liked != null) {
+            onToken.accept(liked);
+            return CompletableFuture.completedFuture(categoryResponse(liked, category, confidence));
+        }
+
+        ExtractiveAnswerer.Extract instant = category != null ? instantAnswer(request, category) : null;
+        if (instant != null) {
+            onToken.accept(instant.text());
+            return CompletableFuture.completedFuture(categoryResponse(instant.text(), category, confidence * instant.coverage()));
+        }
+
+        boolean cacheable = category != null && isCacheable(request);
+        String cached = cacheable ? answerCache.get(category, userQuestion) : null;
+        if (cached != null) {
+            onToken.accept(cached);
+            return CompletableFuture.completedFuture(categoryResponse(cached, category, confidence));
+        }
+
+        String prompt = category != null ? buildCategoryPrompt(userQuestion, category) : buildGeneralPrompt(userQuestion);
+        long start = System.nanoTime();
+        StringBuilder streamed = new StringBuilder();
+
+        ModelRoute modelRoute = routeFor(userQuestion, category, prompt, false);
+        CompletableFuture<ChatCompletion> upstream = chatCompletionClient.stream(request(modelRoute, request.getHistory(), prompt), token -> {
+                    if (streamed.length() == 0) {
+                        timeToFirstToken.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    streamed.append(token);
+                    onToken.accept(token);
+                });
+        return modelRouter.track(modelRoute, tokenUsageService.track(request.getUserId(), categoryId(category), modelRoute.model(), upstream))
+                .handle((completion, e) -> {
+                    streamDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (e != null) {
+                        log.error("Error streaming from Groq API: {}", e.getMessage());
+                    }
+                    // Keep whatever already reached the client if the stream broke midway
+                    String answer = completion != null ? completion.getContent() : streamed.toString().trim();
+                    if (completion != null && cacheable && answer != null && !answer.isEmpty()) {
+                        answerCache.put(category, userQuestion, answer);
+                    }
+                    if (answer == null || answer.isEmpty()) {
+                        answer = category != null ? extractRelevantContent(category, userQuestion) : GENERAL_FALLBACK;
+                        onToken.accept(answer);
+                    }
+                    return category != null ? categoryResponse(answer, category, confidence) : generalResponse(answer, confidence);
+                });
     }
 
     /**
      * Generate answer from specific category content using LLM
      */
-    private String generateAnswerFromCategory(String question, Category category) {
+    private CompletableFuture<String> generateAnswerFromCategory(NLPRequest request, Category category) {
+        String question = request.getQuestion();
+        CompletableFuture<String> response;
         try {
             // Check if category has content
             if (category.getContent() == null || category.getContent().trim().isEmpty()) {
-                return String.format("The %s category doesn't have any content yet. Please add content to this category first.", 
-                    category.getName());
+                return CompletableFuture.completedFuture(String.format(
+                    "The %s category doesn't have any content yet. Please add content to this category first.", 
+                    category.getName()));
             }
 
-            String prompt = String.format(
-                """
-                You are a helpful assistant for the "%s" category.
-                
-                Knowledge Base Content:
-                %s
-                
-                User Question: %s
-                
-                Answer the user's question based ONLY on the content provided above. 
-                Be conversational and helpful. If the content doesn't contain the answer, 
-                politely say you don't have that specific information in this category.
-                
-                Format your response with:
-                - **Bold text** for important information
-                - Use bullet points (-) when listing items
-                - Use numbered lists (1. 2. 3.) for step-by-step instructions
-                - Use line breaks for better readability
-                - Keep paragraphs concise and clear
-                """,
-                category.getName(),
-                category.getContent(),
-                question
-            );
-
-            String response = callGroqAPI(prompt);
-            
-            if (response != null && !response.trim().isEmpty()) {
-                return response;
+            // Identical questions asked at the same time share one upstream call
+            response = !isCacheable(request)
+                ? callGroqAPIAsync(question, category, request.getHistory(), buildCategoryPrompt(question, category), false,
+                    request.getUserId())
+                : answerCache.getOrLoad(category, question,
+                    () -> callGroqAPIAsync(question, category, List.of(), buildCategoryPrompt(question, category), false,
+                        request.getUserId()));
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        return response.handle((answer, e) -> {
+            if (e != null) {
+                log.error("Error generating answer from category: {}", e.getMessage());
+                return "I'm having trouble processing your question right now. Please try again.";
+            }
+            if (answer != null && !answer.trim().isEmpty()) {
+                return answer;
             }
-            
             // Fallback if API fails
-            return extractRelevantContent(category.getContent(), question);
-            
-        } catch (Exception e) {
-            log.error("Error generating answer from category: {}", e.getMessage());
-            return "I'm having trouble processing your question right now. Please try again.";
+            return extractRelevantContent(category, question);
+        });
+    }
+
+    /**
+     * Answer for a question the router could not place: the top nlp.fan-out.max-categories
+     * candidate categories are asked at once, each told to reply NO_ANSWER when its content
+     * does not cover the question, and the most likely category that does answer wins. A
+     * likelier category still pending is waited for; less likely ones are not, and are cancelled
+     * once the answer is decided. Each call after the first needs a scheduler slot borrowed
+     * through the permit, so a busy server asks fewer categories, down to just the likeliest.
+     * When none has the answer it gets the general response.
+     */
+    private CompletableFuture<NLPResponse> fanOut(NLPRequest request, double generalConfidence,
+            QueryScheduler.Permit permit) {
+        String question = request.getQuestion();
+        List<Category> categories = new ArrayList<>();
+        List<Double> confidences = new ArrayList<>();
+        for (CategoryRouter.Route candidate : categoryRouter.candidates(routingText(request), fanOutMaxCategories)) {
+            Category category = categoryRepository.findById(candidate.categoryId()).orElse(null);
+            if (category != null && category.getContent() != null && !category.getContent().trim().isEmpty()) {
+                categories.add(category);
+                confidences.add(candidate.confidence());
+            }
+        }
+        if (categories.isEmpty()) {
+            fanOutUnanswered.increment();
+            return generateGeneralResponse(request, generalConfidence);
+        }
+
+        // Answers that need no LLM come first, in the same order
+        for (int i = 0; i < categories.size(); i++) {
+            String liked = likedAnswer(request, categories.get(i));
+            if (liked != null) {
+                fanOutAnswered.increment();
+                return CompletableFuture.completedFuture(categoryResponse(liked, categories.get(i), confidences.get(i)));
+            }
+        }
+        ExtractiveAnswerer.Extract bestInstant = null;
+        int bestInstantIndex = -1;
+        for (int i = 0; i < categories.size(); i++) {
+            ExtractiveAnswerer.Extract instant = instantAnswer(request, categories.get(i));
+            if (instant != null && (bestInstant == null
+                    || instant.coverage() * confidences.get(i) > bestInstant.coverage() * confidences.get(bestInstantIndex))) {
+                bestInstant = instant;
+                bestInstantIndex = i;
+            }
+        }
+        if (bestInstant != null) {
+            fanOutAnswered.increment();
+            return CompletableFuture.completedFuture(categoryResponse(bestInstant.text(), categories.get(bestInstantIndex),
+                confidences.get(bestInstantIndex) * bestInstant.coverage()));
+        }
+
+        int width = 1 + permit.borrow(categories.size() - 1);
+        fanOutWidth.record(width);
+        List<CompletableFuture<ChatCompletion>> calls = new ArrayList<>();
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (Category category : categories.subList(0, width)) {
+            CompletableFuture<String> answer;
+            try {
+                // Kept apart from the answer so the call itself can be cancelled
+                String prompt = buildCategoryPrompt(question, category, "reply with exactly " + NO_ANSWER + " and nothing else.");
+                ModelRoute route = routeFor(question, category, prompt, false);
+                CompletableFuture<ChatCompletion> call = chatCompletionClient.complete(request(route, request.getHistory(), prompt));
+                calls.add(call);
+                answer = modelRouter.track(route, tokenUsageService.track(request.getUserId(), category.getId(), route.model(), call))
+                    .thenApply(ChatCompletion::getContent)
+                    .exceptionally(e -> {
+                        if (!call.isCancelled()) log.error("Error calling Groq API: {}", e.getMessage());
+                        return null;
+                    });
+            } catch (RuntimeException e) {
+                answer = CompletableFuture.completedFuture(null);
+            }
+            answers.add(answer);
         }
+
+        CompletableFuture<NLPResponse> result = new CompletableFuture<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        Runnable decide = () -> {
+            for (int i = 0; i < answers.size(); i++) {
+                CompletableFuture<String> answer = answers.get(i);
+                // A likelier category may still answer
+                if (!answer.isDone()) return;
+                String text = answer.getNow(null);
+                if (text != null && !text.isBlank() && !text.contains(NO_ANSWER)) {
+                    if (decided.compareAndSet(false, true)) {
+                        calls.forEach(call -> call.cancel(true));
+                        fanOutAnswered.increment();
+                        if (isCacheable(request)) answerCache.put(categories.get(i), question, text);
+                        result.complete(categoryResponse(text, categories.get(i), confidences.get(i)));
+                    }
+                    return;
+                }
+            }
+            if (decided.compareAndSet(false, true)) {
+                fanOutUnanswered.increment();
+                generateGeneralResponse(request, generalConfidence).whenComplete((response, e) -> {
+                    if (e != null) result.completeExceptionally(e);
+                    else result.complete(response);
+                });
+            }
+        };
+        answers.forEach(answer -> answer.whenComplete((text, e) -> decide.run()));
+        return result;
+    }
+
+    private boolean isFanOut(NLPRequest request) {
+        return request.isFanOut() || fanOutByDefault;
+    }
+
+    /**
+     * Uncached LLM answer to a question from the category content, or null when the LLM fails
+     */
+    public CompletableFuture<String> answerFromCategory(Category category, String question) {
+        return callGroqAPIAsync(question, category, List.of(), buildCategoryPrompt(question, category), true, null);
     }
 
     /**
      * Generate a general response when no category is specified
      */
-    private NLPResponse generateGeneralResponse(String question) {
+    private CompletableFuture<NLPResponse> generateGeneralResponse(NLPRequest request, double confidence) {
+        CompletableFuture<String> response;
         try {
-            String prompt = String.format(
-                """
-                A user asked: "%s"
-                
-                This is a general question without a specific category. 
-                Generate a brief, helpful response (2-3 sentences) that either:
-                1. Answers the question if it's a common general knowledge question
-                2. Suggests they select a category for more specific help
-                
-                Format your response with:
-                - **Bold text** for important information
-                - Use bullet points (-) when listing items
-                - Keep the response concise and friendly
-                """,
-                question
-            );
-
-            String response = callGroqAPI(prompt);
-            String answer = response != null ? response : 
-                "Please select a category to get specific information, or ask me a more specific question.";
-
-            return NLPResponse.builder()
-                    .answer(answer)
-                    .confidence(0.5)
-                    .categoryId(null)
-                    .categoryName("General")
-                    .build();
-            
+            response = callGroqAPIAsync(request.getQuestion(), null, request.getHistory(),
+                buildGeneralPrompt(request.getQuestion()), false, request.getUserId());
         } catch (Exception e) {
-            log.error("Error generating general response: {}", e.getMessage());
-            return NLPResponse.builder()
-                    .answer("Please select a category to get specific information.")
-                    .confidence(0.0)
-                    .categoryId(null)
-                    .categoryName("General")
-                    .build();
+            response = CompletableFuture.failedFuture(e);
         }
+
+        return response.handle((answer, e) -> {
+            if (e != null) {
+                log.error("Error generating general response: {}", e.getMessage());
+                return generalResponse("Please select a category to get specific information.", 0.0);
+            }
+            return generalResponse(answer != null ? answer : GENERAL_FALLBACK, confidence);
+        });
+    }
+
+    private String buildCategoryPrompt(String question, Category category) {
+        return buildCategoryPrompt(question, category, NOT_IN_CONTENT);
+    }
+
+    // whenMissing finishes "If the content doesn't contain the answer, ..."
+    private String buildCategoryPrompt(String question, Category category, String whenMissing) {
+        return String.format(
+            """
+            You are a helpful assistant for the "%s" category.
+            
+            Knowledge Base Content:
+            %s
+            
+            User Question: %s
+            
+            Answer the user's question based ONLY on the content provided above. 
+            Be conversational and helpful. If the content doesn't contain the answer, 
+            %s
+            
+            Format your response with:
+            - **Bold text** for important information
+            - Use bullet points (-) when listing items
+            - Use numbered lists (1. 2. 3.) for step-by-step instructions
+            - Use line breaks for better readability
+            - Keep paragraphs concise and clear
+            """,
+            category.getName(),
+            contextRetriever.selectContext(category, question),
+            question,
+            whenMissing
+        );
+    }
+
+    private String buildGeneralPrompt(String question) {
+        return String.format(
+            """
+            A user asked: "%s"
+            
+            This is a general question without a specific category. 
+            Generate a brief, helpful response (2-3 sentences) that either:
+            1. Answers the question if it's a common general knowledge question
+            2. Suggests they select a category for more specific help
+            
+            Format your response with:
+            - **Bold text** for important information
+            - Use bullet points (-) when listing items
+            - Keep the response concise and friendly
+            """,
+            question
+        );
     }
 
     /**
-     * Extract relevant portion of content as fallback
+     * Local answer quoting the category sentences that best match the question; used when the
+     * LLM is unavailable
      */
-    private String extractRelevantContent(String content, String question) {
-        if (content == null || content.isEmpty()) {
+    private String extractRelevantContent(Category category, String question) {
+        if (category.getContent() == null || category.getContent().isEmpty()) {
             return "I don't have enough information to answer that question.";
         }
 
-        // Return first 500 characters as a simple fallback
-        if (content.length() <= 500) {
-            return content;
+        ExtractiveAnswerer.Extract extract = extractiveAnswerer.answer(category, question);
+        if (extract == null) {
+            return String.format("I couldn't find anything about that in the **%s** information. "
+                + "Please try rephrasing your question.", category.getName());
         }
+        return extract.text();
+    }
 
-        return content.substring(0, 500) + "...";
+    /**
+     * Extractive answer for instant mode, or null when the request wants the LLM or the
+     * quoted sentences cover too little of the question
+     */
+    private ExtractiveAnswerer.Extract instantAnswer(NLPRequest request, Category category) {
+        if (!request.isInstant() && !instantByDefault) {
+            return null;
+        }
+        if (category.getContent() == null || category.getContent().trim().isEmpty()) {
+            return null;
+        }
+        ExtractiveAnswerer.Extract extract = extractiveAnswerer.answer(category, request.getQuestion());
+        return extract != null && extract.coverage() >= instantMinCoverage ? extract : null;
     }
 
     /**
-     * Call Groq API to generate responses
+     * Answer students liked for a near-identical question, under the same rules as the cache
      */
-    private String callGroqAPI(String prompt) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + groqApiKey);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", MODEL);
-
-            List<Map<String, String>> messages = new ArrayList<>();
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages.add(message);
-
-            requestBody.put("messages", messages);
-            requestBody.put("max_tokens", 1000);
-            requestBody.put("temperature", 0.7);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    GROQ_API_URL,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> body = response.getBody();
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) body.get("choices");
-
-                if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> firstChoice = choices.get(0);
-                    Map<String, String> messageObj = (Map<String, String>) firstChoice.get("message");
-
-                    if (messageObj != null && messageObj.containsKey("content")) {
-                        return messageObj.get("content").trim();
-                    }
-                }
+    private String likedAnswer(NLPRequest request, Category category) {
+        return isCacheable(request) ? likedAnswerIndex.find(category, request.getQuestion()) : null;
+    }
+
+    // Admin tests skip the cache, and follow-ups depend on the conversation, not just the question
+    private boolean isCacheable(NLPRequest request) {
+        return !request.isBypassCache() && request.getHistory().isEmpty();
+    }
+
+    // A follow-up like "what about the second one?" names no topic, so the previous question helps routing
+    private String routingText(NLPRequest request) {
+        List<ChatMessage> history = request.getHistory();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if ("user".equals(history.get(i).getRole())) {
+                return history.get(i).getContent() + " " + request.getQuestion();
             }
+        }
+        return request.getQuestion();
+    }
 
-            return null;
+    /**
+     * Call Groq API to generate responses
+     */
+    private CompletableFuture<String> callGroqAPIAsync(String question, Category category, List<ChatMessage> history,
+            String prompt, boolean preset, Long userId) {
+        return complete(question, category, history, prompt, preset, userId)
+                .thenApply(ChatCompletion::getContent)
+                .exceptionally(e -> {
+                    log.error("Error calling Groq API: {}", e.getMessage());
+                    return null;
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("Error calling Groq API: {}", e.getMessage());
-            return null;
+    /**
+     * LLM answer to a question from the category content with its token usage, skipping the
+     * cache, preset answers and instant mode so it shows what the model says right now
+     */
+    public CompletableFuture<ChatCompletion> completeFromCategory(Category category, String question, Long userId) {
+        return complete(question, category, List.of(), buildCategoryPrompt(question, category), false, userId);
+    }
+
+    private CompletableFuture<ChatCompletion> complete(String question, Category category, List<ChatMessage> history,
+            String prompt, boolean preset, Long userId) {
+        ModelRoute route = routeFor(question, category, prompt, preset);
+        CompletableFuture<ChatCompletion> completion = chatCompletionClient.complete(request(route, history, prompt));
+        return modelRouter.track(route, tokenUsageService.track(userId, categoryId(category), route.model(), completion));
+    }
+
+    // Earlier turns go before the prompt, which carries the knowledge base for this question
+    private ChatCompletionRequest request(ModelRoute route, List<ChatMessage> history, String prompt) {
+        List<ChatMessage> messages = new ArrayList<>(history);
+        messages.add(ChatMessage.user(prompt));
+        return ChatCompletionRequest.builder()
+                .model(route.model())
+                .messages(messages)
+                .maxTokens(route.maxTokens())
+                .temperature(route.temperature())
+                .build();
+    }
+
+    // The prompt is mostly the selected knowledge base text, so its length stands in for the context size
+    private ModelRoute routeFor(String question, Category category, String prompt, boolean preset) {
+        if (category == null) {
+            return modelRouter.route(question, 0, false, preset, null, null);
         }
+        return modelRouter.route(question, prompt.length(), true, preset, category.getModelRoute(), category.getMaxTokens());
+    }
+
+    private static Long categoryId(Category category) {
+        return category != null ? category.getId() : null;
+    }
+
+    private NLPResponse categoryResponse(String answer, Category category, double confidence) {
+        return NLPResponse.builder()
+                .answer(answer)
+                .confidence(confidence)
+                .categoryId(category.getId())
+                .categoryName(category.getName())
+                .build();
+    }
+
+    private NLPResponse generalResponse(String answer, double confidence) {
+        return NLPResponse.builder()
+                .answer(answer)
+                .confidence(confidence)
+                .categoryId(null)
+                .categoryName("General")
+                .build();
     }
 
     /**
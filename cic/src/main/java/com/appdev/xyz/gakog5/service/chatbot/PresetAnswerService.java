@@ -0,0 +1,228 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.dto.chatbot.PresetStatusResponse;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.chatbot.PresetAnswer;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.PresetAnswerRepository;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers to category presets, generated in the background whenever a category is saved so a
+ * preset click never waits on the LLM.
+ *
+ * Answers are stored per content version of the category; a save only generates the presets
+ * that have no answer for the current version yet, one at a time so an edit does not flood the
+ * LLM. Served answers come from an in-memory copy that is dropped the moment the category
+ * changes, so a stale answer is never shown.
+ */
+@Service
+@Slf4j
+public class PresetAnswerService {
+
+    private final CategoryRepository categoryRepository;
+    private final PresetAnswerRepository presetAnswerRepository;
+    private final NLPService nlpService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final Map<Long, Answers> answers = new ConcurrentHashMap<>();
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final Counter served;
+    private final Counter generated;
+    private final Counter failed;
+
+    // Ready answers of a category keyed by normalized question
+    private record Answers(String contentVersion, String categoryName, Map<String, String> byQuestion) {}
+
+    private static final class Job {
+        final Long categoryId;
+        final String contentVersion;
+        final int total;
+        final AtomicInteger ready;
+        final AtomicInteger failed = new AtomicInteger();
+        volatile boolean running = true;
+
+        Job(Long categoryId, String contentVersion, int total, int ready){
+            this.categoryId = categoryId;
+            this.contentVersion = contentVersion;
+            this.total = total;
+            this.ready = new AtomicInteger(ready);
+        }
+    }
+
+    public PresetAnswerService(CategoryRepository categoryRepository, PresetAnswerRepository presetAnswerRepository,
+            NLPService nlpService, AsyncTaskExecutor applicationTaskExecutor, MeterRegistry meterRegistry){
+        this.categoryRepository = categoryRepository;
+        this.presetAnswerRepository = presetAnswerRepository;
+        this.nlpService = nlpService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.served = Counter.builder("cic.preset-answers.served")
+            .description("Preset questions answered from a pre-generated answer")
+            .register(meterRegistry);
+        this.generated = Counter.builder("cic.preset-answers.generated").tag("outcome", "success")
+            .description("Preset answers generated in the background")
+            .register(meterRegistry);
+        this.failed = Counter.builder("cic.preset-answers.generated").tag("outcome", "failure")
+            .description("Preset answers generated in the background")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Pre-generated answer to the question if it is one of the category's presets and its
+     * answer is ready, otherwise null.
+     */
+    public String find(Long categoryId, String question){
+        Answers ready = answers.get(categoryId);
+        if(ready == null) return null;
+        String answer = ready.byQuestion().get(TextNormalizer.normalizeQuestion(question));
+        if(answer != null) served.increment();
+        return answer;
+    }
+
+    public String categoryName(Long categoryId){
+        Answers ready = answers.get(categoryId);
+        return ready != null ? ready.categoryName() : null;
+    }
+
+    public PresetStatusResponse status(Long categoryId){
+        Job job = jobs.get(categoryId);
+        if(job == null){
+            return PresetStatusResponse.builder().categoryId(categoryId).build();
+        }
+        return PresetStatusResponse.builder()
+            .categoryId(categoryId)
+            .contentVersion(job.contentVersion)
+            .total(job.total)
+            .ready(job.ready.get())
+            .failed(job.failed.get())
+            .running(job.running)
+            .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void generateAll(){
+        for(Category category : categoryRepository.findAll()){
+            Long id = category.getId();
+            applicationTaskExecutor.execute(() -> regenerate(id));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        Long id = event.getCategoryId();
+        // Stop serving right away; the answers come back once checked against the new version
+        answers.remove(id);
+        if(event.getType() == CategoryChangedEvent.Type.DELETED){
+            Job job = jobs.remove(id);
+            if(job != null) job.running = false;
+            applicationTaskExecutor.execute(() -> presetAnswerRepository.deleteByCategory(id));
+            return;
+        }
+        // Placeholder until the run starts, so admins polling right after a save see it as pending
+        Job previous = jobs.put(id, new Job(id, null, 0, 0));
+        if(previous != null) previous.running = false;
+        applicationTaskExecutor.execute(() -> regenerate(id));
+    }
+
+    // Serialized so an older run can never publish its answers after a newer one
+    private synchronized void regenerate(Long categoryId){
+        Category category = categoryRepository.findById(categoryId).orElse(null);
+        if(category == null){
+            Job pending = jobs.remove(categoryId);
+            if(pending != null) pending.running = false;
+            return;
+        }
+        String version = category.getContentVersion();
+        Set<String> presets = new LinkedHashSet<>();
+        if(category.getPreset() != null && category.getContent() != null && !category.getContent().isBlank()){
+            for(String preset : category.getPreset()){
+                if(preset != null && !preset.isBlank()) presets.add(preset.trim());
+            }
+        }
+
+        presetAnswerRepository.deleteOtherVersions(categoryId, version);
+        Map<String, String> stored = new LinkedHashMap<>();
+        for(PresetAnswer row : presetAnswerRepository.findByCategoryIdAndContentVersion(categoryId, version)){
+            stored.put(TextNormalizer.normalizeQuestion(row.getQuestion()), row.getAnswer());
+        }
+
+        Map<String, String> ready = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for(String preset : presets){
+            String key = TextNormalizer.normalizeQuestion(preset);
+            if(stored.containsKey(key)) ready.put(key, stored.get(key));
+            else missing.add(preset);
+        }
+
+        // A newer save replaces this job; the old one notices and stops
+        Job job = new Job(categoryId, version, presets.size(), ready.size());
+        Job previous = jobs.put(categoryId, job);
+        if(previous != null) previous.running = false;
+        answers.put(categoryId, new Answers(version, category.getName(), Map.copyOf(ready)));
+
+        if(!missing.isEmpty()){
+            log.info("Generating {} preset answers for category {}", missing.size(), category.getName());
+        }
+        generateNext(job, category, missing.iterator());
+    }
+
+    private void generateNext(Job job, Category category, Iterator<String> remaining){
+        if(!job.running) return;
+        if(!remaining.hasNext()){
+            job.running = false;
+            return;
+        }
+        String question = remaining.next();
+        nlpService.answerFromCategory(category, question)
+            .thenAcceptAsync(answer -> {
+                if(!job.running) return;
+                if(answer == null || answer.isBlank()){
+                    job.failed.incrementAndGet();
+                    failed.increment();
+                    return;
+                }
+                presetAnswerRepository.save(PresetAnswer.builder()
+                    .categoryId(job.categoryId)
+                    .contentVersion(job.contentVersion)
+                    .question(question)
+                    .answer(answer)
+                    .build());
+                answers.computeIfPresent(job.categoryId, (id, current) -> {
+                    if(!current.contentVersion().equals(job.contentVersion)) return current;
+                    Map<String, String> next = new LinkedHashMap<>(current.byQuestion());
+                    next.put(TextNormalizer.normalizeQuestion(question), answer);
+                    return new Answers(current.contentVersion(), current.categoryName(), Map.copyOf(next));
+                });
+                job.ready.incrementAndGet();
+                generated.increment();
+            }, applicationTaskExecutor)
+            .whenComplete((ignored, e) -> {
+                if(e != null){
+                    job.failed.incrementAndGet();
+                    failed.increment();
+                    log.warn("Could not generate preset answer for category {}: {}", job.categoryId, e.getMessage());
+                }
+                generateNext(job, category, remaining);
+            });
+    }
+}
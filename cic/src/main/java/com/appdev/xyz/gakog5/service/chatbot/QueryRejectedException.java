@@ -0,0 +1,20 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import lombok.Getter;
+
+/**
+ * Raised when a question is not let through to the LLM: 429 when the user's own budget is
+ * spent, 503 when the whole queue is full or the wait ran out. The client may retry after
+ * the given number of seconds.
+ */
+@Getter
+public class QueryRejectedException extends RuntimeException {
+    private final int statusCode;
+    private final long retryAfterSeconds;
+
+    public QueryRejectedException(int statusCode, long retryAfterSeconds, String message){
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
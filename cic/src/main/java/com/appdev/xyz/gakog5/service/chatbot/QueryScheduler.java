@@ -0,0 +1,266 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Admission in front of the LLM-bound part of answering a question.
+ *
+ * Each user has a token bucket (chat.rate.capacity questions, refilled at
+ * chat.rate.refill-per-minute); an empty bucket is rejected with 429 right away. At most
+ * chat.scheduler.max-concurrent questions are worked on at once. The rest wait in a weighted
+ * fair queue: every user's questions get virtual finish times spaced by 1/weight, so a user
+ * with many queued questions cannot starve one who just asked. Admin test queries from the
+ * terminal skip the bucket and wait in a separate lane that is always served first. A question
+ * that asks several categories at once may borrow extra slots for the additional calls, but
+ * only slots that are free right now and never ahead of a waiting question.
+ */
+@Service
+public class QueryScheduler {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMs;
+    private final double adminWeight;
+    private final Cache<Long, TokenBucket> buckets;
+
+    // Guarded by this
+    private final ArrayDeque<Waiter> priorityLane = new ArrayDeque<>();
+    private final PriorityQueue<Waiter> fairQueue = new PriorityQueue<>(
+        Comparator.comparingDouble((Waiter w) -> w.finishTag).thenComparingLong(w -> w.sequence));
+    private final Map<Long, Double> lastFinish = new HashMap<>();
+    private final Map<Long, Integer> queuedPerUser = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int active;
+
+    private final Timer priorityWait;
+    private final Timer fairWait;
+    private final Counter rateLimited;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    /**
+     * Slot held while a question is being answered; closing it lets the next one in.
+     */
+    public final class Permit implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+        // Guarded by the scheduler
+        private int borrowed;
+
+        /**
+         * Takes up to slots more slots for this question without waiting; they are handed back
+         * when the permit is closed. Returns how many were granted, which may be 0.
+         */
+        public int borrow(int slots){
+            synchronized(QueryScheduler.this){
+                if(slots <= 0 || released.get() || !priorityLane.isEmpty() || !fairQueue.isEmpty()) return 0;
+                int granted = Math.min(slots, maxConcurrent - active);
+                if(granted <= 0) return 0;
+                active += granted;
+                borrowed += granted;
+                return granted;
+            }
+        }
+
+        @Override
+        public void close(){
+            if(released.compareAndSet(false, true)) release(this);
+        }
+    }
+
+    private static final class Waiter {
+        final Long userId;
+        final boolean priority;
+        final double startTag;
+        final double finishTag;
+        final long sequence;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(Long userId, boolean priority, double startTag, double finishTag, long sequence){
+            this.userId = userId;
+            this.priority = priority;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+    }
+
+    public QueryScheduler(@Value("${chat.rate.capacity:10}") double capacity,
+            @Value("${chat.rate.refill-per-minute:20}") double refillPerMinute,
+            @Value("${chat.scheduler.max-concurrent:32}") int maxConcurrent,
+            @Value("${chat.scheduler.max-queue:1000}") int maxQueue,
+            @Value("${chat.scheduler.max-wait-ms:30000}") long maxWaitMs,
+            @Value("${chat.scheduler.admin-weight:2}") double adminWeight,
+            MeterRegistry meterRegistry){
+        this.capacity = capacity;
+        this.refillPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.adminWeight = adminWeight;
+        // An idle user's bucket is full again long before it expires, so dropping it loses nothing
+        this.buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofNanos((long) Math.max(capacity / refillPerNano, TimeUnit.MINUTES.toNanos(1))))
+            .build();
+
+        Gauge.builder("cic.scheduler.queued", this, s -> s.queued(true)).tag("lane", "priority")
+            .description("Questions waiting for a slot").register(meterRegistry);
+        Gauge.builder("cic.scheduler.queued", this, s -> s.queued(false)).tag("lane", "fair")
+            .description("Questions waiting for a slot").register(meterRegistry);
+        Gauge.builder("cic.scheduler.active", this, QueryScheduler::active)
+            .description("Questions being answered").register(meterRegistry);
+        this.priorityWait = Timer.builder("cic.scheduler.wait").tag("lane", "priority")
+            .publishPercentiles(0.5, 0.95, 0.99).register(meterRegistry);
+        this.fairWait = Timer.builder("cic.scheduler.wait").tag("lane", "fair")
+            .publishPercentiles(0.5, 0.95, 0.99).register(meterRegistry);
+        this.rateLimited = Counter.builder("cic.scheduler.rejected").tag("reason", "rate-limit").register(meterRegistry);
+        this.queueFull = Counter.builder("cic.scheduler.rejected").tag("reason", "queue-full").register(meterRegistry);
+        this.timedOut = Counter.builder("cic.scheduler.rejected").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    /**
+     * Slot for the user's question, completed once it is this question's turn. Throws
+     * QueryRejectedException right away when the user's budget is spent or the queue is full;
+     * the future fails with it when the wait exceeds chat.scheduler.max-wait-ms.
+     *
+     * @param priority admin test query; only honoured for admins
+     */
+    public CompletableFuture<Permit> acquire(User user, boolean priority){
+        Long userId = user != null ? user.getId() : null;
+        boolean admin = user != null && user.getRole() == UserRole.ADMIN;
+        boolean lane = priority && admin;
+
+        if(!lane){
+            long waitNanos = buckets.get(userId != null ? userId : 0L, id -> new TokenBucket()).tryConsume();
+            if(waitNanos > 0){
+                rateLimited.increment();
+                long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+                throw new QueryRejectedException(429, seconds,
+                    "You're asking questions too quickly. Please try again in " + seconds + " seconds.");
+            }
+        }
+
+        Waiter waiter;
+        synchronized(this){
+            if(active < maxConcurrent && priorityLane.isEmpty() && fairQueue.isEmpty()){
+                active++;
+                (lane ? priorityWait : fairWait).record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if(priorityLane.size() + fairQueue.size() >= maxQueue){
+                queueFull.increment();
+                throw new QueryRejectedException(503, 5, "The assistant is very busy right now. Please try again shortly.");
+            }
+            if(lane){
+                waiter = new Waiter(userId, true, 0, 0, sequence++);
+                priorityLane.add(waiter);
+            }else{
+                double start = Math.max(virtualTime, lastFinish.getOrDefault(userId, 0.0));
+                double finish = start + 1.0 / (admin ? adminWeight : 1.0);
+                lastFinish.put(userId, finish);
+                queuedPerUser.merge(userId, 1, Integer::sum);
+                waiter = new Waiter(userId, false, start, finish, sequence++);
+                fairQueue.add(waiter);
+            }
+        }
+
+        return waiter.future
+            .orTimeout(maxWaitMs, TimeUnit.MILLISECONDS)
+            .handle((permit, e) -> {
+                if(e == null) return permit;
+                synchronized(this){
+                    if(waiter.priority ? priorityLane.remove(waiter) : fairQueue.remove(waiter)) forget(waiter);
+                }
+                timedOut.increment();
+                throw new CompletionException(new QueryRejectedException(503, 5,
+                    "The assistant is very busy right now. Please try again shortly."));
+            });
+    }
+
+    private void release(Permit closed){
+        List<Waiter> granted = new ArrayList<>();
+        synchronized(this){
+            active -= 1 + closed.borrowed;
+            while(active < maxConcurrent){
+                Waiter next = priorityLane.poll();
+                if(next == null){
+                    next = fairQueue.poll();
+                    if(next == null) break;
+                    virtualTime = Math.max(virtualTime, next.startTag);
+                }
+                forget(next);
+                if(next.future.isDone()) continue;
+                active++;
+                granted.add(next);
+            }
+        }
+        // Completed outside the lock: whatever runs next must not hold up the scheduler
+        for(Waiter waiter : granted){
+            (waiter.priority ? priorityWait : fairWait).record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            Permit permit = new Permit();
+            if(!waiter.future.complete(permit)) permit.close();
+        }
+    }
+
+    // Guarded by this; drops per-user state once the user has nothing queued
+    private void forget(Waiter waiter){
+        if(waiter.priority) return;
+        Integer left = queuedPerUser.merge(waiter.userId, -1, Integer::sum);
+        if(left != null && left <= 0){
+            queuedPerUser.remove(waiter.userId);
+            lastFinish.remove(waiter.userId);
+        }
+    }
+
+    private synchronized int queued(boolean priority){
+        return priority ? priorityLane.size() : fairQueue.size();
+    }
+
+    private synchronized int active(){
+        return active;
+    }
+
+    private final class TokenBucket {
+        private double tokens = capacity;
+        private long refilledAt = System.nanoTime();
+
+        // 0 when a token was taken, otherwise how long until one is available
+        synchronized long tryConsume(){
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNano);
+            refilledAt = now;
+            if(tokens >= 1){
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / refillPerNano);
+        }
+    }
+}
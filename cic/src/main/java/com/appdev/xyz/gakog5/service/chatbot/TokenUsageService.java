@@ -0,0 +1,378 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.appdev.xyz.gakog5.dto.chatbot.UsageReportRow;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.chatbot.TokenUsage;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.TokenUsageRepository;
+import com.appdev.xyz.gakog5.repository.user.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Upstream token usage per day, user, category and model, with optional daily quotas.
+ *
+ * Completions only bump in-memory LongAdders, so recording costs nothing on the hot path. Every
+ * usage.flush-interval-ms the counters are drained and added to the token_usage rollup in one
+ * transaction: an increment per row, and an insert for rows that do not exist yet. Quotas
+ * (usage.quota.user-daily-tokens, usage.quota.category-daily-tokens; 0 disables) are checked
+ * before a question reaches the LLM against today's flushed and pending tokens, so they are
+ * soft: the question that crosses the line is still answered.
+ */
+@Service
+@Slf4j
+public class TokenUsageService {
+
+    public static final String BY_USER = "user";
+    public static final String BY_CATEGORY = "category";
+    public static final String BY_DAY = "day";
+
+    private static final long MAX_REPORT_DAYS = 366;
+
+    private final TokenUsageRepository tokenUsageRepository;
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, Price> prices;
+    private final long userDailyQuota;
+    private final long categoryDailyQuota;
+    private final Map<Key, Counts> pending = new ConcurrentHashMap<>();
+    private volatile Today today;
+    // Held only while the counters are drained, never across the database write
+    private final Object drainLock = new Object();
+    private final Counter rowsFlushed;
+    private final Counter userQuotaRejected;
+    private final Counter categoryQuotaRejected;
+
+    private record Key(LocalDate day, Long userId, Long categoryId, String model) {}
+
+    // USD per million tokens
+    private record Price(double prompt, double completion) {}
+
+    private static final class Counts {
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder requests = new LongAdder();
+    }
+
+    // Today's running totals for the quotas, filled in per user/category on first check
+    private record Today(LocalDate day, Map<Long, LongAdder> users, Map<Long, LongAdder> categories) {}
+
+    private static final class Row {
+        final String key;
+        String label;
+        long promptTokens;
+        long completionTokens;
+        long requests;
+        double cost;
+
+        Row(String key){
+            this.key = key;
+        }
+    }
+
+    public TokenUsageService(TokenUsageRepository tokenUsageRepository, UserRepository userRepository,
+            CategoryRepository categoryRepository, PlatformTransactionManager transactionManager,
+            @Value("${usage.prices:llama-3.1-8b-instant=0.05:0.08,llama-3.3-70b-versatile=0.59:0.79}") String prices,
+            @Value("${usage.quota.user-daily-tokens:0}") long userDailyQuota,
+            @Value("${usage.quota.category-daily-tokens:0}") long categoryDailyQuota,
+            MeterRegistry meterRegistry){
+        this.tokenUsageRepository = tokenUsageRepository;
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.prices = parsePrices(prices);
+        this.userDailyQuota = userDailyQuota;
+        this.categoryDailyQuota = categoryDailyQuota;
+        this.today = new Today(LocalDate.now(zone), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        this.rowsFlushed = Counter.builder("cic.usage.flushed")
+            .description("Usage rollup rows written by the periodic flush")
+            .register(meterRegistry);
+        this.userQuotaRejected = Counter.builder("cic.usage.quota.rejected").tag("quota", "user")
+            .description("Questions turned away because today's token quota is used up")
+            .register(meterRegistry);
+        this.categoryQuotaRejected = Counter.builder("cic.usage.quota.rejected").tag("quota", "category")
+            .description("Questions turned away because today's token quota is used up")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Records the completion's token usage once it finishes.
+     *
+     * @param userId who asked, or null for background work
+     * @param categoryId category answered from, or null for a general answer
+     * @param model model the completion was requested from; the one the upstream reports wins
+     */
+    public CompletableFuture<ChatCompletion> track(Long userId, Long categoryId, String model,
+            CompletableFuture<ChatCompletion> completion){
+        return completion.whenComplete((result, e) -> {
+            if(result != null) record(userId, categoryId, result.getModel() != null ? result.getModel() : model, result);
+        });
+    }
+
+    public void record(Long userId, Long categoryId, String model, ChatCompletion completion){
+        Today current = today();
+        Counts counts = pending.computeIfAbsent(new Key(current.day(), userId, categoryId, Objects.toString(model, "unknown")),
+            key -> new Counts());
+        counts.promptTokens.add(completion.getPromptTokens());
+        counts.completionTokens.add(completion.getCompletionTokens());
+        counts.requests.increment();
+
+        // Only totals a quota check has already loaded are kept up to date
+        long tokens = (long) completion.getPromptTokens() + completion.getCompletionTokens();
+        LongAdder userTotal = userId != null ? current.users().get(userId) : null;
+        if(userTotal != null) userTotal.add(tokens);
+        LongAdder categoryTotal = categoryId != null ? current.categories().get(categoryId) : null;
+        if(categoryTotal != null) categoryTotal.add(tokens);
+    }
+
+    /**
+     * Throws QueryRejectedException (429, retry after midnight) when the user or the category
+     * has used up today's tokens. Admins are never limited.
+     */
+    public void checkQuota(User user, Long categoryId){
+        if(userDailyQuota <= 0 && categoryDailyQuota <= 0) return;
+        if(user != null && user.getRole() == UserRole.ADMIN) return;
+
+        Today current = today();
+        if(userDailyQuota > 0 && user != null && user.getId() != null){
+            long used = current.users().computeIfAbsent(user.getId(), id -> loadTotal(current.day(), id, null)).sum();
+            if(used >= userDailyQuota){
+                throw rejection(userQuotaRejected, "You've reached today's limit for questions. Please come back tomorrow.");
+            }
+        }
+        if(categoryDailyQuota > 0 && categoryId != null){
+            long used = current.categories().computeIfAbsent(categoryId, id -> loadTotal(current.day(), null, id)).sum();
+            if(used >= categoryDailyQuota){
+                throw rejection(categoryQuotaRejected, "This topic has reached today's limit for questions. Please come back tomorrow.");
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flush-interval-ms:60000}", initialDelayString = "${usage.flush-interval-ms:60000}")
+    public void flush(){
+        Map<Key, long[]> batch = drain(today().day());
+        if(batch.isEmpty()) return;
+
+        try{
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+            rowsFlushed.increment(batch.size());
+        }catch(RuntimeException e){
+            // Back into the counters, so the next flush tries again and nothing is lost
+            batch.forEach((key, sums) -> {
+                Counts counts = pending.computeIfAbsent(key, k -> new Counts());
+                counts.promptTokens.add(sums[0]);
+                counts.completionTokens.add(sums[1]);
+                counts.requests.add(sums[2]);
+            });
+            log.warn("Could not flush token usage, will retry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown(){
+        flush();
+    }
+
+    /**
+     * Usage between two days (inclusive), summed per user, category or day, including what has
+     * not been flushed yet.
+     */
+    public List<UsageReportRow> report(String groupBy, LocalDate from, LocalDate to){
+        if(!BY_USER.equals(groupBy) && !BY_CATEGORY.equals(groupBy) && !BY_DAY.equals(groupBy)){
+            throw new IllegalArgumentException("groupBy must be one of user, category or day");
+        }
+        if(from.isAfter(to)) throw new IllegalArgumentException("from must not be after to");
+        if(ChronoUnit.DAYS.between(from, to) >= MAX_REPORT_DAYS){
+            throw new IllegalArgumentException("Reports cover at most " + MAX_REPORT_DAYS + " days");
+        }
+        flush();
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        for(TokenUsage usage : tokenUsageRepository.findByDayBetween(from, to)){
+            String key = switch(groupBy){
+                case BY_USER -> usage.getUserId() != null ? usage.getUserId().toString() : "system";
+                case BY_CATEGORY -> usage.getCategoryId() != null ? usage.getCategoryId().toString() : "general";
+                default -> usage.getDay().toString();
+            };
+            if(usage.getUserId() != null) userIds.add(usage.getUserId());
+            if(usage.getCategoryId() != null) categoryIds.add(usage.getCategoryId());
+
+            Row row = rows.computeIfAbsent(key, Row::new);
+            row.promptTokens += usage.getPromptTokens();
+            row.completionTokens += usage.getCompletionTokens();
+            row.requests += usage.getRequests();
+            row.cost += cost(usage.getModel(), usage.getPromptTokens(), usage.getCompletionTokens());
+        }
+        label(rows, groupBy, userIds, categoryIds);
+
+        List<UsageReportRow> report = new ArrayList<>();
+        for(Row row : rows.values()){
+            report.add(UsageReportRow.builder()
+                .key(row.key)
+                .label(row.label)
+                .promptTokens(row.promptTokens)
+                .completionTokens(row.completionTokens)
+                .requests(row.requests)
+                .cost(Math.round(row.cost * 10_000) / 10_000.0)
+                .build());
+        }
+        report.sort(BY_DAY.equals(groupBy)
+            ? Comparator.comparing(UsageReportRow::getKey)
+            : Comparator.comparingDouble(UsageReportRow::getCost).reversed()
+                .thenComparing(Comparator.comparingLong((UsageReportRow r) -> r.getPromptTokens() + r.getCompletionTokens()).reversed()));
+        return report;
+    }
+
+    // Takes the counts out of pending; two flushes never hand out the same tokens, but may write side by side
+    private Map<Key, long[]> drain(LocalDate current){
+        Map<Key, long[]> batch = new HashMap<>();
+        synchronized(drainLock){
+            for(Iterator<Map.Entry<Key, Counts>> it = pending.entrySet().iterator(); it.hasNext();){
+                Map.Entry<Key, Counts> entry = it.next();
+                Counts counts = entry.getValue();
+                // sumThenReset drains each cell atomically, so adds racing with the flush land in the next one
+                long[] sums = {counts.promptTokens.sumThenReset(), counts.completionTokens.sumThenReset(),
+                    counts.requests.sumThenReset()};
+                if(sums[0] != 0 || sums[1] != 0 || sums[2] != 0){
+                    batch.put(entry.getKey(), sums);
+                }else if(entry.getKey().day().isBefore(current)){
+                    // A past day is dropped only once a whole interval added nothing to it, so a
+                    // completion that finished around midnight still gets flushed
+                    it.remove();
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void write(Map<Key, long[]> batch){
+        List<TokenUsage> created = new ArrayList<>();
+        batch.forEach((key, sums) -> {
+            if(tokenUsageRepository.addUsage(key.day(), key.userId(), key.categoryId(), key.model(), sums[0], sums[1], sums[2]) == 0){
+                created.add(TokenUsage.builder().day(key.day()).userId(key.userId()).categoryId(key.categoryId())
+                    .model(key.model()).promptTokens(sums[0]).completionTokens(sums[1]).requests(sums[2]).build());
+            }
+        });
+        // Another instance inserting the same row first breaks the unique key and rolls the whole
+        // flush back; the counts go back to pending and the retry finds the row to add to
+        tokenUsageRepository.saveAll(created);
+    }
+
+    private void label(Map<String, Row> rows, String groupBy, Set<Long> userIds, Set<Long> categoryIds){
+        if(BY_USER.equals(groupBy)){
+            Map<String, String> names = new HashMap<>();
+            for(User user : userRepository.findAllById(userIds)){
+                String name = (Objects.toString(user.getFirstName(), "") + " " + Objects.toString(user.getLastName(), "")).trim();
+                names.put(user.getId().toString(), name.isEmpty() ? user.getEmail() : name);
+            }
+            rows.values().forEach(row -> row.label = "system".equals(row.key)
+                ? "Background (preset answers)"
+                : names.getOrDefault(row.key, "Deleted user"));
+        }else if(BY_CATEGORY.equals(groupBy)){
+            Map<String, String> names = new HashMap<>();
+            for(Category category : categoryRepository.findAllById(categoryIds)){
+                names.put(category.getId().toString(), category.getName());
+            }
+            rows.values().forEach(row -> row.label = "general".equals(row.key)
+                ? "General"
+                : names.getOrDefault(row.key, "Deleted category"));
+        }else{
+            rows.values().forEach(row -> row.label = row.key);
+        }
+    }
+
+    private double cost(String model, long promptTokens, long completionTokens){
+        Price price = prices.get(model);
+        if(price == null) return 0;
+        return (promptTokens * price.prompt() + completionTokens * price.completion()) / 1_000_000.0;
+    }
+
+    // Stored total for the day plus what is still waiting for the next flush
+    private LongAdder loadTotal(LocalDate day, Long userId, Long categoryId){
+        long total = userId != null
+            ? tokenUsageRepository.sumTokensByUser(day, userId)
+            : tokenUsageRepository.sumTokensByCategory(day, categoryId);
+        for(Map.Entry<Key, Counts> entry : pending.entrySet()){
+            Key key = entry.getKey();
+            if(!key.day().equals(day)) continue;
+            if(userId != null ? userId.equals(key.userId()) : categoryId.equals(key.categoryId())){
+                total += entry.getValue().promptTokens.sum() + entry.getValue().completionTokens.sum();
+            }
+        }
+        LongAdder adder = new LongAdder();
+        adder.add(total);
+        return adder;
+    }
+
+    private Today today(){
+        Today current = today;
+        LocalDate now = LocalDate.now(zone);
+        if(!current.day().equals(now)){
+            synchronized(this){
+                if(!today.day().equals(now)){
+                    today = new Today(now, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+                }
+                current = today;
+            }
+        }
+        return current;
+    }
+
+    private QueryRejectedException rejection(Counter counter, String message){
+        counter.increment();
+        LocalDateTime now = LocalDateTime.now(zone);
+        long seconds = Math.max(1, Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).getSeconds());
+        return new QueryRejectedException(429, seconds, message);
+    }
+
+    // "model=prompt:completion,..." in USD per million tokens
+    private static Map<String, Price> parsePrices(String spec){
+        Map<String, Price> prices = new HashMap<>();
+        if(spec == null || spec.isBlank()) return prices;
+        for(String entry : spec.split(",")){
+            if(entry.isBlank()) continue;
+            String[] modelAndPrices = entry.trim().split("=", 2);
+            String[] parts = modelAndPrices.length == 2 ? modelAndPrices[1].split(":") : new String[0];
+            if(parts.length != 2){
+                throw new IllegalArgumentException("usage.prices entries look like model=prompt:completion, got " + entry);
+            }
+            prices.put(modelAndPrices[0].trim(), new Price(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())));
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,121 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+/**
+ * Immutable BM25 inverted index over the chunks of one category. A category edit builds
+ * a fresh segment and swaps it in, so readers never see a half-built index.
+ */
+public final class Bm25Segment {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final String version;
+    private final List<String> chunks;
+    private final int[] lengths;
+    private final double averageLength;
+    // term -> [chunk, tf, chunk, tf, ...]
+    private final Map<String, int[]> postings;
+
+    private Bm25Segment(String version, List<String> chunks, int[] lengths, double averageLength,
+            Map<String, int[]> postings){
+        this.version = version;
+        this.chunks = chunks;
+        this.lengths = lengths;
+        this.averageLength = averageLength;
+        this.postings = postings;
+    }
+
+    public static Bm25Segment build(String version, List<String> chunks){
+        int[] lengths = new int[chunks.size()];
+        Map<String, int[]> building = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        long totalLength = 0;
+
+        for(int c = 0; c < chunks.size(); c++){
+            List<String> terms = TextNormalizer.tokenize(chunks.get(c));
+            lengths[c] = terms.size();
+            totalLength += terms.size();
+
+            Map<String, Integer> tf = new HashMap<>();
+            for(String term : terms) tf.merge(term, 1, Integer::sum);
+
+            for(Map.Entry<String, Integer> e : tf.entrySet()){
+                int size = sizes.getOrDefault(e.getKey(), 0);
+                int[] list = building.get(e.getKey());
+                if(list == null){
+                    list = new int[4];
+                }else if(size + 2 > list.length){
+                    list = Arrays.copyOf(list, list.length * 2);
+                }
+                list[size] = c;
+                list[size + 1] = e.getValue();
+                building.put(e.getKey(), list);
+                sizes.put(e.getKey(), size + 2);
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>(building.size() * 2);
+        building.forEach((term, list) -> postings.put(term, Arrays.copyOf(list, sizes.get(term))));
+        double average = chunks.isEmpty() ? 0 : (double) totalLength / chunks.size();
+        return new Bm25Segment(version, List.copyOf(chunks), lengths, average, postings);
+    }
+
+    public String getVersion(){
+        return version;
+    }
+
+    public List<String> getChunks(){
+        return chunks;
+    }
+
+    /**
+     * Inverse document frequency of a normalized term across this segment's chunks; 0 for
+     * terms the category never uses.
+     */
+    public double idf(String term){
+        int[] list = postings.get(term);
+        if(list == null) return 0;
+        int df = list.length / 2;
+        return Math.log(1 + (chunks.size() - df + 0.5) / (df + 0.5));
+    }
+
+    /**
+     * Best {@code k} chunks for the query, highest score first. Chunks sharing no term
+     * with the query are never returned.
+     */
+    public List<ScoredChunk> search(String query, int k){
+        if(chunks.isEmpty()) return List.of();
+
+        double[] scores = new double[chunks.size()];
+        int n = chunks.size();
+        for(String term : new LinkedHashSet<>(TextNormalizer.tokenize(query))){
+            int[] list = postings.get(term);
+            if(list == null) continue;
+
+            int df = list.length / 2;
+            double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            for(int i = 0; i < list.length; i += 2){
+                int chunk = list[i];
+                int tf = list[i + 1];
+                double norm = tf + K1 * (1 - B + B * lengths[chunk] / averageLength);
+                scores[chunk] += idf * tf * (K1 + 1) / norm;
+            }
+        }
+
+        List<ScoredChunk> hits = new ArrayList<>();
+        for(int c = 0; c < n; c++){
+            if(scores[c] > 0) hits.add(new ScoredChunk(c, chunks.get(c), scores[c]));
+        }
+        hits.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+    }
+}
@@ -0,0 +1,86 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory BM25 index of category content, one segment per category. Segments are built
+ * at startup, rebuilt for just the edited category when it changes, and rebuilt lazily if a
+ * request sees a content version the index has not caught up with yet. Segments also own the
+ * chunking, so every retriever agrees on chunk ordinals.
+ */
+@Service
+@Slf4j
+public class ChunkIndex {
+
+    private final CategoryRepository categoryRepository;
+    private final ContentChunker chunker;
+    private final Map<Long, Bm25Segment> segments = new ConcurrentHashMap<>();
+
+    public ChunkIndex(CategoryRepository categoryRepository,
+            @Value("${nlp.retrieval.chunk-chars:800}") int chunkChars){
+        this.categoryRepository = categoryRepository;
+        this.chunker = new ContentChunker(chunkChars);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexAll(){
+        long start = System.currentTimeMillis();
+        List<Category> categories = categoryRepository.findAll();
+        categories.forEach(this::index);
+        log.info("Indexed {} categories in {} ms", categories.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        if(event.getType() == CategoryChangedEvent.Type.DELETED){
+            segments.remove(event.getCategoryId());
+            return;
+        }
+        categoryRepository.findById(event.getCategoryId()).ifPresent(this::index);
+    }
+
+    public Bm25Segment segmentFor(Category category){
+        Bm25Segment segment = segments.get(category.getId());
+        if(segment == null || !segment.getVersion().equals(category.getContentVersion())){
+            segment = index(category);
+        }
+        return segment;
+    }
+
+    /**
+     * Version of the segment currently held for the category, or null if it has none. Unlike
+     * segmentFor, never rebuilds, so a caller holding an older copy of the category can tell it
+     * has been overtaken.
+     */
+    public String versionOf(Long categoryId){
+        Bm25Segment segment = segments.get(categoryId);
+        return segment != null ? segment.getVersion() : null;
+    }
+
+    /**
+     * BM25 matches for the question within the category, best first.
+     */
+    public List<ScoredChunk> search(Category category, String question, int k){
+        return segmentFor(category).search(question, k);
+    }
+
+    private Bm25Segment index(Category category){
+        Bm25Segment segment = Bm25Segment.build(category.getContentVersion(), chunker.chunk(category.getContent()));
+        segments.put(category.getId(), segment);
+        return segment;
+    }
+}
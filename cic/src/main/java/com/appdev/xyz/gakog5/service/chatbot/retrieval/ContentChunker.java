@@ -0,0 +1,65 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits category content into retrieval chunks of roughly {@code targetChars}, keeping
+ * paragraphs together where possible and falling back to sentence boundaries for long ones.
+ */
+public final class ContentChunker {
+
+    private final int targetChars;
+
+    public ContentChunker(int targetChars){
+        this.targetChars = targetChars;
+    }
+
+    public List<String> chunk(String content){
+        List<String> chunks = new ArrayList<>();
+        if(content == null || content.isBlank()) return chunks;
+
+        StringBuilder current = new StringBuilder();
+        for(String paragraph : content.split("\\n\\s*\\n")){
+            paragraph = paragraph.strip();
+            if(paragraph.isEmpty()) continue;
+
+            if(paragraph.length() > targetChars){
+                flush(current, chunks);
+                splitLongParagraph(paragraph, chunks);
+                continue;
+            }
+            if(current.length() > 0 && current.length() + paragraph.length() + 2 > targetChars){
+                flush(current, chunks);
+            }
+            if(current.length() > 0) current.append("\n\n");
+            current.append(paragraph);
+        }
+        flush(current, chunks);
+        return chunks;
+    }
+
+    private void splitLongParagraph(String paragraph, List<String> chunks){
+        StringBuilder current = new StringBuilder();
+        for(String sentence : paragraph.split("(?<=[.!?])\\s+")){
+            if(current.length() > 0 && current.length() + sentence.length() + 1 > targetChars){
+                flush(current, chunks);
+            }
+            // A single run-on "sentence" longer than the target is cut hard
+            while(sentence.length() > targetChars){
+                chunks.add(sentence.substring(0, targetChars));
+                sentence = sentence.substring(targetChars);
+            }
+            if(current.length() > 0) current.append(' ');
+            current.append(sentence);
+        }
+        flush(current, chunks);
+    }
+
+    private void flush(StringBuilder current, List<String> chunks){
+        if(current.length() > 0){
+            chunks.add(current.toString());
+            current.setLength(0);
+        }
+    }
+}
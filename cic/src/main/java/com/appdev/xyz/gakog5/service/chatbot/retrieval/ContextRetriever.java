@@ -0,0 +1,105 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Picks the category content that goes into a prompt, from keyword (BM25) matches,
+ * embedding matches, or both fused by reciprocal rank (nlp.retrieval.mode).
+ */
+@Service
+public class ContextRetriever {
+
+    private static final String CHUNK_SEPARATOR = "\n\n[...]\n\n";
+    private static final int RRF_K = 60;
+
+    private final ChunkIndex chunkIndex;
+    private final VectorIndex vectorIndex;
+    private final String mode;
+    private final int topK;
+    private final int fullContentMaxChars;
+    private final DistributionSummary contextChars;
+
+    public ContextRetriever(ChunkIndex chunkIndex, VectorIndex vectorIndex,
+            @Value("${nlp.retrieval.mode:hybrid}") String mode,
+            @Value("${nlp.retrieval.top-k:4}") int topK,
+            @Value("${nlp.retrieval.full-content-max-chars:6000}") int fullContentMaxChars,
+            MeterRegistry meterRegistry){
+        this.chunkIndex = chunkIndex;
+        this.vectorIndex = vectorIndex;
+        this.mode = mode;
+        this.topK = topK;
+        this.fullContentMaxChars = fullContentMaxChars;
+        this.contextChars = DistributionSummary.builder("cic.retrieval.context.chars")
+            .description("Characters of category content placed in a prompt")
+            .publishPercentiles(0.5, 0.95)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Category content to put in a prompt: all of it when it is small, otherwise the
+     * best-matching chunks for the question in their original order.
+     */
+    public String selectContext(Category category, String question){
+        String content = category.getContent();
+        if(content == null || content.length() <= fullContentMaxChars){
+            if(content != null) contextChars.record(content.length());
+            return content;
+        }
+
+        List<ScoredChunk> hits = new ArrayList<>(selectChunks(category, question));
+        hits.sort(Comparator.comparingInt(ScoredChunk::ordinal));
+        String context = hits.stream().map(ScoredChunk::text).collect(Collectors.joining(CHUNK_SEPARATOR));
+        contextChars.record(context.length());
+        return context;
+    }
+
+    /**
+     * Top chunks for the question, best first; the opening chunks when nothing matches.
+     */
+    public List<ScoredChunk> selectChunks(Category category, String question){
+        List<ScoredChunk> hits = switch(mode){
+            case "bm25" -> chunkIndex.search(category, question, topK);
+            case "vector" -> vectorIndex.search(category, question, topK);
+            default -> fuse(chunkIndex.search(category, question, topK * 2),
+                vectorIndex.search(category, question, topK * 2));
+        };
+        if(hits.isEmpty()){
+            List<String> chunks = chunkIndex.segmentFor(category).getChunks();
+            hits = new ArrayList<>();
+            for(int i = 0; i < Math.min(topK, chunks.size()); i++){
+                hits.add(new ScoredChunk(i, chunks.get(i), 0));
+            }
+        }
+        return hits;
+    }
+
+    private List<ScoredChunk> fuse(List<ScoredChunk> keyword, List<ScoredChunk> semantic){
+        Map<Integer, ScoredChunk> byOrdinal = new HashMap<>();
+        Map<Integer, Double> scores = new HashMap<>();
+        for(List<ScoredChunk> ranking : List.of(keyword, semantic)){
+            for(int rank = 0; rank < ranking.size(); rank++){
+                ScoredChunk chunk = ranking.get(rank);
+                byOrdinal.putIfAbsent(chunk.ordinal(), chunk);
+                scores.merge(chunk.ordinal(), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+            .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+            .limit(topK)
+            .map(e -> new ScoredChunk(e.getKey(), byOrdinal.get(e.getKey()).text(), e.getValue()))
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+}
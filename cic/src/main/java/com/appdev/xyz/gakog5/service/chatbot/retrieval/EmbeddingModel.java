@@ -0,0 +1,16 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+/**
+ * Turns text into a fixed-size, L2-normalized vector so that dot product is cosine similarity.
+ */
+public interface EmbeddingModel {
+
+    /**
+     * Identifies the model and its settings; stored vectors from another id are discarded.
+     */
+    String id();
+
+    int dimensions();
+
+    float[] embed(String text);
+}
@@ -0,0 +1,136 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+/**
+ * Answers a question from category content without the LLM by quoting the sentences that
+ * best cover it. The BM25 segment narrows the content to a few chunks; within those, sentences
+ * are picked greedily by the IDF weight of question terms they add, so the answer covers the
+ * question instead of repeating one fact, and then shown in their original order.
+ */
+@Service
+public class ExtractiveAnswerer {
+
+    private static final int CANDIDATE_CHUNKS = 3;
+
+    private final ChunkIndex chunkIndex;
+    private final int maxSentences;
+    private final int maxChars;
+
+    /**
+     * @param coverage share of the question's (IDF-weighted) terms the quoted sentences contain
+     */
+    public record Extract(String text, double coverage) {}
+
+    private record Sentence(int chunk, int position, String text, Set<String> terms) {}
+
+    public ExtractiveAnswerer(ChunkIndex chunkIndex,
+            @Value("${nlp.extractive.max-sentences:3}") int maxSentences,
+            @Value("${nlp.extractive.max-chars:700}") int maxChars){
+        this.chunkIndex = chunkIndex;
+        this.maxSentences = maxSentences;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * The quoted answer, or null when no sentence of the category shares a term with the question.
+     */
+    public Extract answer(Category category, String question){
+        Bm25Segment segment = chunkIndex.segmentFor(category);
+        Set<String> queryTerms = new LinkedHashSet<>(TextNormalizer.tokenize(question));
+        double totalWeight = 0;
+        for(String term : queryTerms) totalWeight += segment.idf(term);
+        if(totalWeight == 0) return null;
+
+        List<Sentence> candidates = new ArrayList<>();
+        for(ScoredChunk hit : segment.search(question, CANDIDATE_CHUNKS)){
+            splitSentences(hit.ordinal(), hit.text(), queryTerms, candidates);
+        }
+
+        List<Sentence> picked = new ArrayList<>();
+        Set<String> covered = new LinkedHashSet<>();
+        int chars = 0;
+        while(picked.size() < maxSentences && !candidates.isEmpty()){
+            Sentence best = null;
+            double bestGain = 0;
+            for(Sentence sentence : candidates){
+                double gain = 0;
+                for(String term : sentence.terms()){
+                    // Terms already covered still count a little, so on-topic detail beats filler
+                    gain += covered.contains(term) ? 0.2 * segment.idf(term) : segment.idf(term);
+                }
+                if(gain > bestGain){
+                    bestGain = gain;
+                    best = sentence;
+                }
+            }
+            if(best == null || (!picked.isEmpty() && chars + best.text().length() > maxChars)) break;
+            candidates.remove(best);
+            picked.add(best);
+            covered.addAll(best.terms());
+            chars += best.text().length();
+        }
+        if(picked.isEmpty()) return null;
+
+        picked.sort((a, b) -> a.chunk() != b.chunk() ? Integer.compare(a.chunk(), b.chunk())
+            : Integer.compare(a.position(), b.position()));
+        double coveredWeight = 0;
+        for(String term : covered) coveredWeight += segment.idf(term);
+        return new Extract(format(category, picked), coveredWeight / totalWeight);
+    }
+
+    // Scans for sentence ends by hand; only sentences sharing a term with the question are kept
+    private static void splitSentences(int chunk, String text, Set<String> queryTerms, List<Sentence> out){
+        int start = 0;
+        int position = 0;
+        int length = text.length();
+        for(int i = 0; i <= length; i++){
+            boolean end = i == length
+                || text.charAt(i) == '\n'
+                || ((text.charAt(i) == '.' || text.charAt(i) == '!' || text.charAt(i) == '?')
+                    && (i + 1 == length || Character.isWhitespace(text.charAt(i + 1))));
+            if(!end) continue;
+
+            int stop = i < length && text.charAt(i) != '\n' ? i + 1 : i;
+            String sentence = text.substring(start, stop).strip();
+            start = i + 1;
+            if(sentence.length() < 3) continue;
+
+            Set<String> terms = new LinkedHashSet<>();
+            for(String term : TextNormalizer.tokenize(sentence)){
+                if(queryTerms.contains(term)) terms.add(term);
+            }
+            if(!terms.isEmpty()) out.add(new Sentence(chunk, position, sentence, terms));
+            position++;
+        }
+    }
+
+    private static String format(Category category, List<Sentence> sentences){
+        StringBuilder answer = new StringBuilder("From the **").append(category.getName()).append("** information:\n\n");
+        if(sentences.size() == 1){
+            return answer.append(stripBullet(sentences.get(0).text())).toString();
+        }
+        for(Sentence sentence : sentences){
+            answer.append("- ").append(stripBullet(sentence.text())).append('\n');
+        }
+        return answer.toString().stripTrailing();
+    }
+
+    private static String stripBullet(String sentence){
+        int i = 0;
+        while(i < sentence.length() && (sentence.charAt(i) == '-' || sentence.charAt(i) == '*'
+                || sentence.charAt(i) == '•' || Character.isWhitespace(sentence.charAt(i)))){
+            i++;
+        }
+        return sentence.substring(i);
+    }
+}
@@ -0,0 +1,77 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.List;
+
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+/**
+ * CPU-only embedding built by feature hashing words, word pairs and character trigrams into
+ * a fixed number of dimensions. Trigrams let "enrol", "enrolled" and "enrollment" land close
+ * together, which plain keyword matching misses. Needs no model files and is deterministic,
+ * so stored vectors stay valid across restarts.
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+
+    private final int dimensions;
+
+    public HashingEmbeddingModel(int dimensions){
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String id() {
+        return "hashing-v1-" + dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        List<String> terms = TextNormalizer.tokenize(text);
+
+        for(int i = 0; i < terms.size(); i++){
+            String term = terms.get(i);
+            add(vector, hash(term, 0), WORD_WEIGHT);
+            if(i > 0) add(vector, hash(terms.get(i - 1) + ' ' + term, 1), BIGRAM_WEIGHT);
+
+            String padded = '#' + term + '#';
+            for(int j = 0; j + 3 <= padded.length(); j++){
+                add(vector, hash(padded.substring(j, j + 3), 2), TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for(float v : vector) norm += v * v;
+        if(norm > 0){
+            float inv = (float) (1 / Math.sqrt(norm));
+            for(int i = 0; i < vector.length; i++) vector[i] *= inv;
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, int hash, float weight){
+        // One hash picks both the slot and the sign, so collisions cancel out on average
+        int index = Math.floorMod(hash, dimensions);
+        vector[index] += (hash & 0x40000000) == 0 ? weight : -weight;
+    }
+
+    private static int hash(String feature, int seed){
+        int h = 0x811c9dc5 ^ seed;
+        for(int i = 0; i < feature.length(); i++){
+            h ^= feature.charAt(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 15;
+        h *= 0x2c1b3c6d;
+        h ^= h >>> 12;
+        return h;
+    }
+}
@@ -0,0 +1,254 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest-neighbour search by
+ * dot product over normalized vectors held in a {@link MappedVectorStore}.
+ * Not thread-safe; callers guard writes against concurrent searches.
+ */
+public class HnswGraph {
+
+    private final MappedVectorStore store;
+    private final int m;
+    private final int mMax0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final List<Node> nodes = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int deleted;
+
+    public HnswGraph(MappedVectorStore store, int m, int efConstruction){
+        this.store = store;
+        this.m = m;
+        this.mMax0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public record Hit(int node, float similarity) {}
+
+    private static final class Node {
+        final int slot;
+        final int[][] links;
+        final int[] linkCounts;
+        boolean deleted;
+
+        Node(int slot, int level, int m, int mMax0){
+            this.slot = slot;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for(int l = 0; l <= level; l++) links[l] = new int[(l == 0 ? mMax0 : m) + 1];
+        }
+
+        int level(){
+            return links.length - 1;
+        }
+    }
+
+    public int slotOf(int node){
+        return nodes.get(node).slot;
+    }
+
+    public int size(){
+        return nodes.size();
+    }
+
+    public int deletedCount(){
+        return deleted;
+    }
+
+    public int insert(int slot){
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int id = nodes.size();
+        Node node = new Node(slot, level, m, mMax0);
+        nodes.add(node);
+
+        if(entryPoint < 0){
+            entryPoint = id;
+            maxLevel = level;
+            return id;
+        }
+
+        float[] vector = store.read(slot);
+        int current = entryPoint;
+        for(int l = maxLevel; l > level; l--){
+            current = greedy(vector, current, l);
+        }
+        for(int l = Math.min(level, maxLevel); l >= 0; l--){
+            List<Hit> candidates = searchLayer(vector, current, efConstruction, l);
+            int max = l == 0 ? mMax0 : m;
+            for(int i = 0; i < Math.min(m, candidates.size()); i++){
+                int neighbour = candidates.get(i).node();
+                link(id, neighbour, l, max);
+                link(neighbour, id, l, max);
+            }
+            current = candidates.get(0).node();
+        }
+        if(level > maxLevel){
+            maxLevel = level;
+            entryPoint = id;
+        }
+        return id;
+    }
+
+    /**
+     * Tombstones a node: it keeps routing searches but is never returned.
+     */
+    public void delete(int node){
+        Node n = nodes.get(node);
+        if(!n.deleted){
+            n.deleted = true;
+            deleted++;
+        }
+    }
+
+    /**
+     * The {@code k} most similar live nodes accepted by {@code filter}, most similar first.
+     */
+    public List<Hit> search(float[] query, int k, int ef, IntPredicate filter){
+        if(entryPoint < 0) return List.of();
+
+        int current = entryPoint;
+        for(int l = maxLevel; l > 0; l--){
+            current = greedy(query, current, l);
+        }
+
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(Comparator.comparingDouble(h -> -h.similarity()));
+        PriorityQueue<Hit> nearest = new PriorityQueue<>(Comparator.comparingDouble(Hit::similarity));
+        PriorityQueue<Hit> accepted = new PriorityQueue<>(Comparator.comparingDouble(Hit::similarity));
+        BitSet visited = new BitSet(nodes.size());
+
+        Hit start = new Hit(current, store.dot(query, nodes.get(current).slot));
+        visited.set(current);
+        candidates.add(start);
+        nearest.add(start);
+        offer(accepted, start, k, filter);
+
+        while(!candidates.isEmpty()){
+            Hit closest = candidates.poll();
+            // Keep exploring while the filter has not found enough matches yet
+            if(nearest.size() >= ef && accepted.size() >= k && closest.similarity() < nearest.peek().similarity()) break;
+
+            Node node = nodes.get(closest.node());
+            for(int i = 0; i < node.linkCounts[0]; i++){
+                int next = node.links[0][i];
+                if(visited.get(next)) continue;
+                visited.set(next);
+
+                Hit hit = new Hit(next, store.dot(query, nodes.get(next).slot));
+                if(nearest.size() < ef || hit.similarity() > nearest.peek().similarity()){
+                    candidates.add(hit);
+                    nearest.add(hit);
+                    if(nearest.size() > ef) nearest.poll();
+                }
+                offer(accepted, hit, k, filter);
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(accepted);
+        result.sort(Comparator.comparingDouble(h -> -h.similarity()));
+        return result;
+    }
+
+    private void offer(PriorityQueue<Hit> accepted, Hit hit, int k, IntPredicate filter){
+        if(nodes.get(hit.node()).deleted || !filter.test(hit.node())) return;
+        if(accepted.size() < k){
+            accepted.add(hit);
+        }else if(hit.similarity() > accepted.peek().similarity()){
+            accepted.poll();
+            accepted.add(hit);
+        }
+    }
+
+    private int greedy(float[] query, int start, int level){
+        int current = start;
+        float best = store.dot(query, nodes.get(current).slot);
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            Node node = nodes.get(current);
+            for(int i = 0; i < node.linkCounts[level]; i++){
+                int next = node.links[level][i];
+                float similarity = store.dot(query, nodes.get(next).slot);
+                if(similarity > best){
+                    best = similarity;
+                    current = next;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Hit> searchLayer(float[] query, int entry, int ef, int level){
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(Comparator.comparingDouble(h -> -h.similarity()));
+        PriorityQueue<Hit> nearest = new PriorityQueue<>(Comparator.comparingDouble(Hit::similarity));
+        BitSet visited = new BitSet(nodes.size());
+
+        Hit start = new Hit(entry, store.dot(query, nodes.get(entry).slot));
+        visited.set(entry);
+        candidates.add(start);
+        nearest.add(start);
+
+        while(!candidates.isEmpty()){
+            Hit closest = candidates.poll();
+            if(nearest.size() >= ef && closest.similarity() < nearest.peek().similarity()) break;
+
+            Node node = nodes.get(closest.node());
+            for(int i = 0; i < node.linkCounts[level]; i++){
+                int next = node.links[level][i];
+                if(visited.get(next)) continue;
+                visited.set(next);
+
+                float similarity = store.dot(query, nodes.get(next).slot);
+                if(nearest.size() < ef || similarity > nearest.peek().similarity()){
+                    Hit hit = new Hit(next, similarity);
+                    candidates.add(hit);
+                    nearest.add(hit);
+                    if(nearest.size() > ef) nearest.poll();
+                }
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(h -> -h.similarity()));
+        return result;
+    }
+
+    private void link(int from, int to, int level, int max){
+        Node node = nodes.get(from);
+        int[] links = node.links[level];
+        int count = node.linkCounts[level];
+        for(int i = 0; i < count; i++){
+            if(links[i] == to) return;
+        }
+        links[count++] = to;
+
+        if(count > max){
+            // Over capacity: keep the neighbours closest to this node
+            float[] vector = store.read(node.slot);
+            Integer[] order = new Integer[count];
+            float[] similarity = new float[count];
+            for(int i = 0; i < count; i++){
+                order[i] = i;
+                similarity[i] = store.dot(vector, nodes.get(links[i]).slot);
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(similarity[b], similarity[a]));
+            int[] kept = new int[links.length];
+            for(int i = 0; i < max; i++) kept[i] = links[order[i]];
+            node.links[level] = kept;
+            count = max;
+        }
+        node.linkCounts[level] = count;
+    }
+}
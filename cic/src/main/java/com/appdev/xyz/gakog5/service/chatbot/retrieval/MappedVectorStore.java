@@ -0,0 +1,187 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only file of embedding vectors keyed by a 64-bit hash of the text they embed,
+ * mapped into memory so vectors are read straight from the page cache and survive restarts.
+ *
+ * Layout: a 64-byte header (magic, model id hash, dimensions, record count) followed by
+ * fixed-size records of [key:long][dimensions x float].
+ */
+@Slf4j
+public class MappedVectorStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x43494356; // "CICV"
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path path;
+    private final int dimensions;
+    private final long modelHash;
+    private final int recordBytes;
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    public MappedVectorStore(Path path, String modelId, int dimensions) throws IOException {
+        this.path = path;
+        this.dimensions = dimensions;
+        this.modelHash = hash(modelId);
+        this.recordBytes = Long.BYTES + dimensions * Float.BYTES;
+        open();
+    }
+
+    private void open() throws IOException {
+        if(path.getParent() != null) Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if(channel.size() >= HEADER_BYTES){
+            map((int) ((channel.size() - HEADER_BYTES) / recordBytes));
+            if(buffer.getInt(0) == MAGIC && buffer.getLong(4) == modelHash && buffer.getInt(12) == dimensions){
+                count = Math.min(buffer.getInt(COUNT_OFFSET), capacity);
+                for(int slot = 0; slot < count; slot++){
+                    slots.put(buffer.getLong(offset(slot)), slot);
+                }
+                log.info("Loaded {} stored embeddings from {}", count, path);
+                return;
+            }
+            log.info("Embedding store {} was written by another model, starting over", path);
+            channel.truncate(0);
+        }
+
+        map(INITIAL_CAPACITY);
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(4, modelHash);
+        buffer.putInt(12, dimensions);
+        buffer.putInt(COUNT_OFFSET, 0);
+        count = 0;
+    }
+
+    private void map(int records) throws IOException {
+        capacity = records;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) records * recordBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public synchronized Integer find(long key){
+        return slots.get(key);
+    }
+
+    public synchronized int append(long key, float[] vector) throws IOException {
+        Integer existing = slots.get(key);
+        if(existing != null) return existing;
+
+        if(count == capacity){
+            map(capacity * 2);
+        }
+        MappedByteBuffer buf = buffer;
+        int base = offset(count);
+        buf.putLong(base, key);
+        for(int i = 0; i < dimensions; i++){
+            buf.putFloat(base + Long.BYTES + i * Float.BYTES, vector[i]);
+        }
+        int slot = count++;
+        buf.putInt(COUNT_OFFSET, count);
+        slots.put(key, slot);
+        return slot;
+    }
+
+    public long keyAt(int slot){
+        return buffer.getLong(offset(slot));
+    }
+
+    public float[] read(int slot){
+        MappedByteBuffer buf = buffer;
+        float[] vector = new float[dimensions];
+        int base = offset(slot) + Long.BYTES;
+        for(int i = 0; i < dimensions; i++){
+            vector[i] = buf.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    public float dot(float[] query, int slot){
+        MappedByteBuffer buf = buffer;
+        int base = offset(slot) + Long.BYTES;
+        float sum = 0;
+        for(int i = 0; i < dimensions; i++){
+            sum += query[i] * buf.getFloat(base + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    public synchronized int size(){
+        return count;
+    }
+
+    /**
+     * Rewrites the file with only the given keys, dropping vectors of content that no longer exists.
+     * Returns the new slot of every kept key.
+     */
+    public synchronized Map<Long, Integer> compact(Set<Long> liveKeys) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Long, Integer> moved = new HashMap<>();
+        try(MappedVectorStore target = new MappedVectorStore(tmp, modelHash, dimensions)){
+            for(Map.Entry<Long, Integer> e : slots.entrySet()){
+                if(liveKeys.contains(e.getKey())){
+                    moved.put(e.getKey(), target.append(e.getKey(), read(e.getValue())));
+                }
+            }
+            target.buffer.force();
+        }
+        close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        slots.clear();
+        open();
+        return moved;
+    }
+
+    private MappedVectorStore(Path path, long modelHash, int dimensions) throws IOException {
+        this.path = path;
+        this.dimensions = dimensions;
+        this.modelHash = modelHash;
+        this.recordBytes = Long.BYTES + dimensions * Float.BYTES;
+        Files.deleteIfExists(path);
+        open();
+    }
+
+    private int offset(int slot){
+        return HEADER_BYTES + slot * recordBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(buffer != null) buffer.force();
+        if(channel != null) channel.close();
+    }
+
+    /**
+     * 64-bit FNV-1a of a string, used as the key of a chunk's vector.
+     */
+    public static long hash(String text){
+        long h = 0xcbf29ce484222325L;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for(byte b : bytes){
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,7 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+/**
+ * A chunk of category content with its position in the category and its retrieval score.
+ */
+public record ScoredChunk(int ordinal, String text, double score) {
+}
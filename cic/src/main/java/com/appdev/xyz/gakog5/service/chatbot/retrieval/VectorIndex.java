@@ -0,0 +1,248 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.event.CategoryChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Approximate nearest-neighbour index over category chunks. Embeddings live in a memory-mapped
+ * file keyed by chunk text, so a restart (or an edit that leaves most chunks untouched) only
+ * embeds chunks it has never seen. The HNSW graph on top is rebuilt in memory at startup.
+ */
+@Service
+@Slf4j
+public class VectorIndex {
+
+    private final ChunkIndex chunkIndex;
+    private final CategoryRepository categoryRepository;
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final Path path;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int exactScanLimit;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, CategoryNodes> categories = new HashMap<>();
+    private final List<Long> nodeCategory = new ArrayList<>();
+    private final List<Integer> nodeOrdinal = new ArrayList<>();
+    private MappedVectorStore store;
+    private HnswGraph graph;
+
+    private record CategoryNodes(String version, int[] nodes) {}
+
+    public VectorIndex(ChunkIndex chunkIndex, CategoryRepository categoryRepository, EmbeddingModel embeddingModel,
+            @Value("${nlp.vector-index.enabled:true}") boolean enabled,
+            @Value("${nlp.vector-index.path:data/vector-index.bin}") String path,
+            @Value("${nlp.vector-index.m:16}") int m,
+            @Value("${nlp.vector-index.ef-construction:100}") int efConstruction,
+            @Value("${nlp.vector-index.ef-search:64}") int efSearch,
+            @Value("${nlp.vector-index.exact-scan-limit:2000}") int exactScanLimit){
+        this.chunkIndex = chunkIndex;
+        this.categoryRepository = categoryRepository;
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.path = Path.of(path);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.exactScanLimit = exactScanLimit;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if(!enabled) return;
+        store = new MappedVectorStore(path, embeddingModel.id(), embeddingModel.dimensions());
+        graph = new HnswGraph(store, m, efConstruction);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if(store != null) store.close();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexAll() throws IOException {
+        if(!enabled) return;
+        long start = System.currentTimeMillis();
+        int before = store.size();
+        List<Category> all = categoryRepository.findAll();
+        all.forEach(this::index);
+        log.info("Vector index ready: {} categories, {} new embeddings, {} ms",
+            all.size(), store.size() - before, System.currentTimeMillis() - start);
+        compactIfWasteful();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event){
+        if(!enabled) return;
+        if(event.getType() == CategoryChangedEvent.Type.DELETED){
+            lock.writeLock().lock();
+            try{
+                removeNodes(event.getCategoryId());
+            }finally{
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        categoryRepository.findById(event.getCategoryId()).ifPresent(this::index);
+    }
+
+    /**
+     * The {@code k} chunks of the category closest in meaning to the question, best first.
+     */
+    public List<ScoredChunk> search(Category category, String question, int k){
+        if(!enabled || category.getContent() == null || category.getContent().isBlank()) return List.of();
+        List<String> chunks = index(category);
+        float[] query = embeddingModel.embed(question);
+
+        List<HnswGraph.Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try{
+            CategoryNodes entry = categories.get(category.getId());
+            if(entry == null) return List.of();
+
+            if(entry.nodes().length <= exactScanLimit){
+                for(int node : entry.nodes()){
+                    hits.add(new HnswGraph.Hit(node, store.dot(query, graph.slotOf(node))));
+                }
+                hits.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+                if(hits.size() > k) hits = new ArrayList<>(hits.subList(0, k));
+            }else{
+                Long categoryId = category.getId();
+                hits = graph.search(query, k, Math.max(efSearch, k), node -> categoryId.equals(nodeCategory.get(node)));
+            }
+
+            List<ScoredChunk> result = new ArrayList<>();
+            for(HnswGraph.Hit hit : hits){
+                int ordinal = nodeOrdinal.get(hit.node());
+                if(ordinal < chunks.size()) result.add(new ScoredChunk(ordinal, chunks.get(ordinal), hit.similarity()));
+            }
+            return result;
+        }finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> index(Category category){
+        Bm25Segment segment = chunkIndex.segmentFor(category);
+        lock.readLock().lock();
+        try{
+            CategoryNodes entry = categories.get(category.getId());
+            if(entry != null && entry.version().equals(segment.getVersion())) return segment.getChunks();
+        }finally{
+            lock.readLock().unlock();
+        }
+
+        // Embed outside the lock; unchanged chunks are found in the store and cost nothing
+        List<String> chunks = segment.getChunks();
+        int[] slots = new int[chunks.size()];
+        try{
+            for(int i = 0; i < chunks.size(); i++){
+                long key = MappedVectorStore.hash(chunks.get(i));
+                Integer slot = store.find(key);
+                slots[i] = slot != null ? slot : store.append(key, embeddingModel.embed(chunks.get(i)));
+            }
+        }catch(IOException e){
+            log.error("Could not store embeddings for category {}: {}", category.getId(), e.getMessage());
+            return chunks;
+        }
+
+        lock.writeLock().lock();
+        try{
+            CategoryNodes entry = categories.get(category.getId());
+            if(entry != null && entry.version().equals(segment.getVersion())) return chunks;
+            // Edited or deleted while we were embedding; whoever saw the change indexes it
+            if(!segment.getVersion().equals(chunkIndex.versionOf(category.getId()))) return chunks;
+            removeNodes(category.getId());
+
+            int[] nodes = new int[slots.length];
+            for(int i = 0; i < slots.length; i++){
+                nodes[i] = graph.insert(slots[i]);
+                nodeCategory.add(category.getId());
+                nodeOrdinal.add(i);
+            }
+            categories.put(category.getId(), new CategoryNodes(segment.getVersion(), nodes));
+            if(graph.deletedCount() > graph.size() / 2) rebuildGraph(slot -> slot);
+        }finally{
+            lock.writeLock().unlock();
+        }
+        return chunks;
+    }
+
+    // Callers hold the write lock
+    private void removeNodes(Long categoryId){
+        CategoryNodes removed = categories.remove(categoryId);
+        if(removed == null) return;
+        for(int node : removed.nodes()) graph.delete(node);
+    }
+
+    // Callers hold the write lock. Re-inserts every live node, mapping its store slot through slotMapping.
+    private void rebuildGraph(IntUnaryOperator slotMapping){
+        HnswGraph rebuilt = new HnswGraph(store, m, efConstruction);
+        List<Long> categoriesOf = new ArrayList<>();
+        List<Integer> ordinals = new ArrayList<>();
+        Map<Long, CategoryNodes> renumbered = new HashMap<>();
+        for(Map.Entry<Long, CategoryNodes> e : categories.entrySet()){
+            int[] old = e.getValue().nodes();
+            int[] nodes = new int[old.length];
+            for(int i = 0; i < old.length; i++){
+                nodes[i] = rebuilt.insert(slotMapping.applyAsInt(graph.slotOf(old[i])));
+                categoriesOf.add(e.getKey());
+                ordinals.add(nodeOrdinal.get(old[i]));
+            }
+            renumbered.put(e.getKey(), new CategoryNodes(e.getValue().version(), nodes));
+        }
+        graph = rebuilt;
+        categories.clear();
+        categories.putAll(renumbered);
+        nodeCategory.clear();
+        nodeCategory.addAll(categoriesOf);
+        nodeOrdinal.clear();
+        nodeOrdinal.addAll(ordinals);
+    }
+
+    private void compactIfWasteful() throws IOException {
+        lock.writeLock().lock();
+        try{
+            int liveNodes = 0;
+            for(CategoryNodes entry : categories.values()) liveNodes += entry.nodes().length;
+            if(store.size() <= Math.max(1024, liveNodes * 2)) return;
+
+            Map<Integer, Long> keyBySlot = new HashMap<>();
+            for(CategoryNodes entry : categories.values()){
+                for(int node : entry.nodes()){
+                    int slot = graph.slotOf(node);
+                    keyBySlot.put(slot, store.keyAt(slot));
+                }
+            }
+            int before = store.size();
+            Map<Long, Integer> moved = store.compact(new HashSet<>(keyBySlot.values()));
+            rebuildGraph(slot -> moved.get(keyBySlot.get(slot)));
+            log.info("Compacted embedding store from {} to {} vectors", before, store.size());
+        }finally{
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+
+/**
+ * Client for an OpenAI-compatible chat-completion endpoint.
+ * Implementations must not block the calling thread; the returned future
+ * completes exceptionally on transport errors, non-2xx responses and deadlines.
+ */
+public interface ChatCompletionClient {
+
+    CompletableFuture<ChatCompletion> complete(ChatCompletionRequest request);
+
+    /**
+     * Streams the completion, handing each content delta to {@code onDelta} as it arrives.
+     * The returned future completes with the whole answer once the stream ends.
+     */
+    CompletableFuture<ChatCompletion> stream(ChatCompletionRequest request, Consumer<String> onDelta);
+}
@@ -0,0 +1,202 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Wire format of the OpenAI-compatible chat completion API.
+ *
+ * Requests are typed records written by an ObjectWriter resolved once. Responses and stream
+ * chunks are read with the streaming parser, which keeps only the model, the first choice's
+ * content and the usage and skips everything else without building it, so a response costs no
+ * intermediate maps.
+ */
+public final class ChatCompletionCodec {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Body(String model, List<Message> messages,
+            @JsonProperty("max_tokens") int maxTokens, double temperature,
+            Boolean stream, @JsonProperty("stream_options") StreamOptions streamOptions) {}
+
+    record Message(String role, String content) {}
+
+    record StreamOptions(@JsonProperty("include_usage") boolean includeUsage) {}
+
+    /**
+     * What a stream chunk carries; usage counts are -1 when the chunk has none.
+     */
+    public record Chunk(String model, String delta, int promptTokens, int completionTokens) {}
+
+    private static final StreamOptions WITH_USAGE = new StreamOptions(true);
+
+    private final ObjectWriter writer;
+    private final JsonFactory factory;
+
+    public ChatCompletionCodec(ObjectMapper objectMapper){
+        this.writer = objectMapper.writerFor(Body.class);
+        this.factory = objectMapper.getFactory();
+    }
+
+    public byte[] write(ChatCompletionRequest request, boolean stream) throws JsonProcessingException {
+        List<Message> messages = new ArrayList<>(request.getMessages().size());
+        for(ChatMessage m : request.getMessages()){
+            messages.add(new Message(m.getRole(), m.getContent()));
+        }
+        return writer.writeValueAsBytes(new Body(request.getModel(), messages, request.getMaxTokens(),
+            request.getTemperature(), stream ? Boolean.TRUE : null, stream ? WITH_USAGE : null));
+    }
+
+    /**
+     * Reads a complete (non-streamed) response body.
+     *
+     * @throws ChatCompletionException when the body has no choices
+     */
+    public ChatCompletion read(byte[] body, int statusCode) throws IOException {
+        String model = null;
+        String content = null;
+        boolean hasChoice = false;
+        int[] usage = {0, 0};
+
+        try(JsonParser parser = factory.createParser(body)){
+            expectObject(parser);
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch(field){
+                    case "model" -> model = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "usage" -> readUsage(parser, usage);
+                    case "choices" -> {
+                        if(value != JsonToken.START_ARRAY){
+                            parser.skipChildren();
+                            break;
+                        }
+                        if(parser.nextToken() == JsonToken.START_OBJECT){
+                            hasChoice = true;
+                            content = readFirstChoice(parser, "message");
+                            parser.nextToken();
+                        }
+                        // Remaining choices, if any, are never shown
+                        while(parser.currentToken() != JsonToken.END_ARRAY && parser.currentToken() != null){
+                            parser.skipChildren();
+                            parser.nextToken();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if(!hasChoice) throw new ChatCompletionException(statusCode, "Completion has no choices");
+        return ChatCompletion.builder()
+            .content(content != null ? content.trim() : null)
+            .model(model)
+            .promptTokens(usage[0])
+            .completionTokens(usage[1])
+            .build();
+    }
+
+    /**
+     * Reads the JSON of one server-sent event of a streamed completion.
+     */
+    public Chunk readChunk(String data) throws IOException {
+        String model = null;
+        String delta = null;
+        int[] usage = {-1, -1};
+
+        try(JsonParser parser = factory.createParser(data)){
+            expectObject(parser);
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch(field){
+                    case "model" -> model = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    // OpenAI sends usage in a final chunk, Groq nests it under x_groq
+                    case "usage" -> readUsage(parser, usage);
+                    case "x_groq" -> {
+                        if(value != JsonToken.START_OBJECT){
+                            parser.skipChildren();
+                            break;
+                        }
+                        while(parser.nextToken() == JsonToken.FIELD_NAME){
+                            boolean isUsage = "usage".equals(parser.currentName());
+                            parser.nextToken();
+                            if(isUsage) readUsage(parser, usage);
+                            else parser.skipChildren();
+                        }
+                    }
+                    case "choices" -> {
+                        if(value != JsonToken.START_ARRAY){
+                            parser.skipChildren();
+                            break;
+                        }
+                        if(parser.nextToken() == JsonToken.START_OBJECT){
+                            delta = readFirstChoice(parser, "delta");
+                            parser.nextToken();
+                        }
+                        while(parser.currentToken() != JsonToken.END_ARRAY && parser.currentToken() != null){
+                            parser.skipChildren();
+                            parser.nextToken();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new Chunk(model, delta, usage[0], usage[1]);
+    }
+
+    // At the choice's START_OBJECT; returns choice.<messageField>.content and leaves the parser at the choice's END_OBJECT
+    private static String readFirstChoice(JsonParser parser, String messageField) throws IOException {
+        String content = null;
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            boolean isMessage = messageField.equals(parser.currentName());
+            JsonToken value = parser.nextToken();
+            if(!isMessage || value != JsonToken.START_OBJECT){
+                parser.skipChildren();
+                continue;
+            }
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                boolean isContent = "content".equals(parser.currentName());
+                JsonToken contentValue = parser.nextToken();
+                if(isContent && contentValue == JsonToken.VALUE_STRING) content = parser.getText();
+                else parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    // At the usage value; fills {prompt, completion} from it, keeping what is there for missing fields
+    private static void readUsage(JsonParser parser, int[] usage) throws IOException {
+        if(parser.currentToken() != JsonToken.START_OBJECT){
+            parser.skipChildren();
+            return;
+        }
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if(value == JsonToken.VALUE_NUMBER_INT && "prompt_tokens".equals(field)) usage[0] = parser.getIntValue();
+            else if(value == JsonToken.VALUE_NUMBER_INT && "completion_tokens".equals(field)) usage[1] = parser.getIntValue();
+            else parser.skipChildren();
+        }
+    }
+
+    private static void expectObject(JsonParser parser) throws IOException {
+        if(parser.nextToken() != JsonToken.START_OBJECT){
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+    }
+}
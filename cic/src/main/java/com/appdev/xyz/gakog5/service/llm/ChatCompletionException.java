@@ -0,0 +1,22 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import lombok.Getter;
+
+/**
+ * Raised when the upstream completion endpoint answers with an error status
+ * or a body we cannot use.
+ */
+@Getter
+public class ChatCompletionException extends RuntimeException {
+    private final int statusCode;
+
+    public ChatCompletionException(int statusCode, String message){
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public ChatCompletionException(String message, Throwable cause){
+        super(message, cause);
+        this.statusCode = 0;
+    }
+}
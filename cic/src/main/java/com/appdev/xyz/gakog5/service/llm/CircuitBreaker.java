@@ -0,0 +1,140 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker. It opens when too many of the last {@code windowSize} calls
+ * failed or were slow, rejects calls while open, and after {@code openDuration} lets a few
+ * trial calls through: if they all succeed it closes again, otherwise it re-opens.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int recorded;
+    private int next;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    // Bumped on every switch to half-open, so a trial outliving its round is not counted in the next
+    private long round;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    /**
+     * A permitted call, handed back when it ends. Only trials let through while half-open decide
+     * whether the breaker closes; calls admitted while closed never count as trials.
+     */
+    public record Permit(boolean trial, long round) {}
+
+    private static final Permit CLOSED_CALL = new Permit(false, 0);
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration slowCall,
+            double slowCallRateThreshold, Duration openDuration, int halfOpenCalls){
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCall.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.failures = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * A permit if a call may go upstream now, or null. Every permit must be reported back with
+     * {@link #onSuccess(Permit, long)}, {@link #onFailure(Permit)} or {@link #onIgnored(Permit)}.
+     */
+    public synchronized Permit tryAcquirePermission(){
+        if(state == State.OPEN && System.nanoTime() - openedAt >= openNanos){
+            state = State.HALF_OPEN;
+            round++;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if(state == State.HALF_OPEN){
+            if(trialsStarted >= halfOpenCalls) return null;
+            trialsStarted++;
+            return new Permit(true, round);
+        }
+        return state == State.CLOSED ? CLOSED_CALL : null;
+    }
+
+    public synchronized void onSuccess(Permit permit, long durationNanos){
+        if(permit.trial()){
+            if(!isCurrentTrial(permit)) return;
+            if(durationNanos >= slowCallNanos){
+                open();
+            }else if(++trialsSucceeded >= halfOpenCalls){
+                close();
+            }
+            return;
+        }
+        record(false, durationNanos >= slowCallNanos);
+    }
+
+    public synchronized void onFailure(Permit permit){
+        if(permit.trial()){
+            if(isCurrentTrial(permit)) open();
+            return;
+        }
+        record(true, false);
+    }
+
+    /**
+     * A permitted call that ended without telling anything about the upstream, such as one
+     * cancelled by the caller. A half-open trial slot is handed back for another call.
+     */
+    public synchronized void onIgnored(Permit permit){
+        if(isCurrentTrial(permit) && trialsStarted > trialsSucceeded) trialsStarted--;
+    }
+
+    public State getState(){
+        return state;
+    }
+
+    // Calls admitted before the breaker opened finish whenever they finish; they are not trials
+    private boolean isCurrentTrial(Permit permit){
+        return permit.trial() && state == State.HALF_OPEN && permit.round() == round;
+    }
+
+    private void record(boolean failed, boolean slow){
+        if(state != State.CLOSED) return;
+        failures[next] = failed;
+        slowCalls[next] = slow;
+        next = (next + 1) % windowSize;
+        recorded = Math.min(recorded + 1, windowSize);
+        if(recorded < minimumCalls) return;
+
+        int failedCalls = 0, slowCallCount = 0;
+        for(int i = 0; i < recorded; i++){
+            if(failures[i]) failedCalls++;
+            if(slowCalls[i]) slowCallCount++;
+        }
+        if(failedCalls >= failureRateThreshold * recorded || slowCallCount >= slowCallRateThreshold * recorded){
+            open();
+        }
+    }
+
+    private void open(){
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close(){
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+    }
+}
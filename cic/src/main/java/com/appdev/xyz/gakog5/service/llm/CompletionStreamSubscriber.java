@@ -0,0 +1,94 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads an OpenAI-style {@code text/event-stream} line by line, forwarding content
+ * deltas as they arrive and assembling the final completion.
+ */
+@Slf4j
+class CompletionStreamSubscriber implements Flow.Subscriber<String> {
+
+    private static final String DATA = "data:";
+    private static final String DONE = "[DONE]";
+
+    private final ChatCompletionCodec codec;
+    private final Consumer<String> onDelta;
+    private final CompletableFuture<ChatCompletion> result = new CompletableFuture<>();
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder raw = new StringBuilder();
+    private volatile Flow.Subscription subscription;
+    private String model;
+    private int promptTokens;
+    private int completionTokens;
+
+    CompletionStreamSubscriber(ChatCompletionCodec codec, Consumer<String> onDelta){
+        this.codec = codec;
+        this.onDelta = onDelta;
+    }
+
+    CompletableFuture<ChatCompletion> result(){
+        return result;
+    }
+
+    // Stops reading a body that is already streaming; the HttpClient then closes the stream
+    void cancel(){
+        Flow.Subscription current = subscription;
+        if(current != null) current.cancel();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if(!line.startsWith(DATA)){
+            // Error bodies are plain JSON; keep them for the log
+            if(raw.length() < 2048) raw.append(line);
+            return;
+        }
+        String data = line.substring(DATA.length()).trim();
+        if(data.isEmpty() || DONE.equals(data)) return;
+
+        try{
+            ChatCompletionCodec.Chunk chunk = codec.readChunk(data);
+            if(chunk.model() != null) model = chunk.model();
+
+            if(chunk.delta() != null && !chunk.delta().isEmpty()){
+                content.append(chunk.delta());
+                onDelta.accept(chunk.delta());
+            }
+            if(chunk.promptTokens() >= 0) promptTokens = chunk.promptTokens();
+            if(chunk.completionTokens() >= 0) completionTokens = chunk.completionTokens();
+        }catch(Exception e){
+            log.warn("Skipping malformed stream chunk: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if(raw.length() > 0 && content.length() == 0){
+            log.warn("Completion stream ended without content: {}", raw);
+        }
+        result.complete(ChatCompletion.builder()
+            .content(content.toString().trim())
+            .model(model)
+            .promptTokens(promptTokens)
+            .completionTokens(completionTokens)
+            .build());
+    }
+}
@@ -0,0 +1,67 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appdev.xyz.gakog5.util.TextNormalizer;
+
+/**
+ * Default routing: short lookups over a small context go to the fast model, questions that ask
+ * for a comparison or an explanation, or are long, go to the large one, and the rest to the
+ * standard one. Background preset answers always get the large model since no one waits on
+ * them.
+ *
+ * While the large model is slower than nlp.routing.slow-ms, complex questions fall back to the
+ * standard route, except every nlp.routing.slow-probe-every-th one. Those probes keep the large
+ * model's latency measured, so the fallback ends once it recovers.
+ */
+@Component
+public class ComplexityRoutingPolicy implements ModelRoutingPolicy {
+
+    // Only words that ask for reasoning over several facts; "list", "steps" or "requirements"
+    // usually ask for one passage of the content, which the smaller models look up just as well
+    private static final Set<String> REASONING_CUES = Set.of(
+        "compare", "comparison", "difference", "differences", "versus", "vs", "explain",
+        "pros", "cons", "advantages", "disadvantages", "better", "worse", "summarize");
+
+    private final int simpleMaxTerms;
+    private final int complexMinTerms;
+    private final int smallContextChars;
+    private final long slowMillis;
+    private final int slowProbeEvery;
+    private final AtomicLong demoted = new AtomicLong();
+
+    public ComplexityRoutingPolicy(@Value("${nlp.routing.simple-max-terms:6}") int simpleMaxTerms,
+            @Value("${nlp.routing.complex-min-terms:12}") int complexMinTerms,
+            @Value("${nlp.routing.small-context-chars:3000}") int smallContextChars,
+            @Value("${nlp.routing.slow-ms:8000}") long slowMillis,
+            @Value("${nlp.routing.slow-probe-every:10}") int slowProbeEvery){
+        this.simpleMaxTerms = simpleMaxTerms;
+        this.complexMinTerms = complexMinTerms;
+        this.smallContextChars = smallContextChars;
+        this.slowMillis = slowMillis;
+        this.slowProbeEvery = Math.max(1, slowProbeEvery);
+    }
+
+    @Override
+    public String choose(Signals signals){
+        if(signals.preset()) return ModelRouter.LARGE;
+        if(!signals.categoryScoped()) return ModelRouter.FAST;
+
+        List<String> terms = TextNormalizer.tokenize(signals.question());
+        boolean reasoning = terms.stream().anyMatch(REASONING_CUES::contains);
+        if(reasoning || terms.size() >= complexMinTerms){
+            Double largeLatency = signals.latencyMillis().get(ModelRouter.LARGE);
+            if(largeLatency == null || largeLatency <= slowMillis) return ModelRouter.LARGE;
+            return demoted.incrementAndGet() % slowProbeEvery == 0 ? ModelRouter.LARGE : ModelRouter.STANDARD;
+        }
+        if(terms.size() <= simpleMaxTerms && signals.contextChars() <= smallContextChars){
+            return ModelRouter.FAST;
+        }
+        return ModelRouter.STANDARD;
+    }
+}
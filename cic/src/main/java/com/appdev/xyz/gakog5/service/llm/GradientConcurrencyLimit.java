@@ -0,0 +1,74 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to upstream latency. The limit is scaled by the ratio of the
+ * long-term latency to the latest sample: when calls start taking longer than usual the upstream
+ * is queueing, so the limit shrinks; while latency holds steady it grows by a small headroom.
+ * Timeouts and rate-limit answers cut the limit multiplicatively.
+ */
+public class GradientConcurrencyLimit {
+
+    private static final double LONG_RTT_WEIGHT = 0.05;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRttNanos;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double smoothing){
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Takes a slot if fewer than the current limit are in flight.
+     */
+    public boolean tryAcquire(){
+        while(true){
+            int current = inFlight.get();
+            if(current >= (int) limit) return false;
+            if(inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * Returns a slot taken by {@link #tryAcquire()}.
+     *
+     * @param rttNanos time the call took, or 0 when it failed before producing a sample
+     * @param dropped  the upstream timed out or shed the call
+     */
+    public void release(long rttNanos, boolean dropped){
+        int wasInFlight = inFlight.getAndDecrement();
+        synchronized(this){
+            if(dropped){
+                limit = Math.max(minLimit, limit * BACKOFF);
+                return;
+            }
+            if(rttNanos <= 0) return;
+
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos * (1 - LONG_RTT_WEIGHT) + rttNanos * LONG_RTT_WEIGHT;
+            // With most of the limit unused the sample says nothing about headroom; don't inflate
+            if(wasInFlight < limit / 2) return;
+
+            double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + target * smoothing));
+        }
+    }
+
+    public int getLimit(){
+        return (int) limit;
+    }
+
+    public int getInFlight(){
+        return inFlight.get();
+    }
+}
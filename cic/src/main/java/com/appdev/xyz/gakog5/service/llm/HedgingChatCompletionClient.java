@@ -0,0 +1,341 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends each completion to an ordered list of OpenAI-compatible endpoints: the first one is
+ * tried, the next ones are brought in when it fails or is slow.
+ *
+ * An attempt that errors fails over to the next endpoint right away. One still running after the
+ * recent p95 latency of its endpoint and model gets a hedge, the same request sent to the next
+ * endpoint (or the same one again when there is only one); the first answer wins and the other
+ * attempt is cancelled. Full completions are measured to their end and streams to their first
+ * token, each in their own window, since one takes many times longer than the other.
+ *
+ * Hedges are paid from a budget that grows by llm.hedge.budget-ratio per request, so only the
+ * slow tail is ever sent twice. A stream only fails over or hedges before it has shown a token,
+ * and the first attempt to produce one is the one the caller sees.
+ */
+@Slf4j
+public class HedgingChatCompletionClient implements ChatCompletionClient {
+
+    // The p95 means little with fewer samples; until then the initial delay is used
+    private static final int MIN_SAMPLES = 20;
+    private static final int WINDOW = 200;
+
+    /**
+     * @param client the endpoint's client, normally behind its own bulkhead
+     * @param model model to ask this endpoint for, or null to send the request's own
+     */
+    public record Endpoint(String name, ChatCompletionClient client, String model) {}
+
+    private record WindowKey(int endpoint, boolean stream, String model) {}
+
+    private final List<Endpoint> endpoints;
+    private final Map<WindowKey, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService timer;
+    private final boolean hedging;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final double budgetRatio;
+    private final double maxBudget;
+    private double budget; // guarded by this
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesDenied;
+    private final Counter failovers;
+
+    public HedgingChatCompletionClient(List<Endpoint> endpoints, ScheduledExecutorService timer, boolean hedging,
+            Duration minDelay, Duration initialDelay, double budgetRatio, MeterRegistry meterRegistry){
+        if(endpoints.isEmpty()) throw new IllegalArgumentException("At least one completion endpoint is required");
+        this.endpoints = List.copyOf(endpoints);
+        this.timer = timer;
+        this.hedging = hedging;
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.budgetRatio = budgetRatio;
+        // Lets a short burst of slow calls all be hedged without the long-run share going up
+        this.maxBudget = Math.max(1, budgetRatio * 100);
+        this.meterRegistry = meterRegistry;
+        this.hedgesSent = Counter.builder("cic.llm.hedge").tag("outcome", "sent")
+            .description("Completions sent a second time because the first attempt was slow")
+            .register(meterRegistry);
+        this.hedgesWon = Counter.builder("cic.llm.hedge").tag("outcome", "won")
+            .description("Completions sent a second time because the first attempt was slow")
+            .register(meterRegistry);
+        this.hedgesDenied = Counter.builder("cic.llm.hedge").tag("outcome", "over-budget")
+            .description("Completions sent a second time because the first attempt was slow")
+            .register(meterRegistry);
+        this.failovers = Counter.builder("cic.llm.failover")
+            .description("Completions retried on the next endpoint after an error")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> complete(ChatCompletionRequest request) {
+        return new Call(request, null).start();
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> stream(ChatCompletionRequest request, Consumer<String> onDelta) {
+        return new Call(request, onDelta).start();
+    }
+
+    private synchronized void earnBudget(){
+        budget = Math.min(maxBudget, budget + budgetRatio);
+    }
+
+    private synchronized boolean spendBudget(){
+        if(budget < 1) return false;
+        budget -= 1;
+        return true;
+    }
+
+    private LatencyWindow window(int endpoint, boolean stream, String model){
+        return latencies.computeIfAbsent(new WindowKey(endpoint, stream, model != null ? model : "default"), key -> {
+            LatencyWindow window = new LatencyWindow();
+            Gauge.builder("cic.llm.hedge.delay", window, w -> TimeUnit.NANOSECONDS.toMillis(hedgeDelay(w)))
+                .tag("endpoint", endpoints.get(key.endpoint()).name())
+                .tag("kind", key.stream() ? "stream" : "complete")
+                .tag("model", key.model())
+                .description("Milliseconds an attempt on the endpoint and model runs before it is hedged")
+                .register(meterRegistry);
+            return window;
+        });
+    }
+
+    private long hedgeDelay(LatencyWindow window){
+        long p95 = window.p95();
+        return p95 < 0 ? initialDelayNanos : Math.max(minDelayNanos, p95);
+    }
+
+    private static Throwable unwrap(Throwable e){
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    // Bad requests and auth errors would fail the same way on any endpoint
+    private static boolean isRetryable(Throwable cause){
+        if(cause instanceof ChatCompletionException c && c.getStatusCode() >= 400 && c.getStatusCode() < 500){
+            return c.getStatusCode() == 408 || c.getStatusCode() == 429;
+        }
+        return true;
+    }
+
+    private record Attempt(int endpoint, LatencyWindow window, long start, AtomicLong firstToken,
+            CompletableFuture<ChatCompletion> future) {}
+
+    /**
+     * One completion across its attempts.
+     */
+    private final class Call {
+        private final ChatCompletionRequest request;
+        private final Consumer<String> onDelta;
+        private final CompletableFuture<ChatCompletion> result = new CompletableFuture<>();
+        // Attempt whose deltas reach the caller, -1 until one has produced a token
+        private final AtomicInteger streaming = new AtomicInteger(-1);
+
+        // Guarded by this
+        private final List<Attempt> attempts = new ArrayList<>();
+        private int running;
+        private int hedgeAttempt = -1;
+        private ScheduledFuture<?> hedgeTimer;
+
+        Call(ChatCompletionRequest request, Consumer<String> onDelta){
+            this.request = request;
+            this.onDelta = onDelta;
+        }
+
+        CompletableFuture<ChatCompletion> start(){
+            earnBudget();
+            result.whenComplete((completion, e) -> {
+                ScheduledFuture<?> pending;
+                synchronized(this){
+                    pending = hedgeTimer;
+                }
+                if(pending != null) pending.cancel(false);
+                // Covers the caller cancelling as well as a finished call leaving a loser behind
+                cancelOthers(result.isCancelled() ? -1 : streaming.get());
+            });
+            launch(false);
+            LatencyWindow first;
+            synchronized(this){
+                first = attempts.isEmpty() || attempts.get(0) == null ? null : attempts.get(0).window();
+            }
+            if(hedging && !result.isDone() && first != null){
+                // Timed on what the first attempt was actually sent to
+                ScheduledFuture<?> scheduled = timer.schedule(() -> launch(true), hedgeDelay(first), TimeUnit.NANOSECONDS);
+                synchronized(this){
+                    hedgeTimer = scheduled;
+                }
+            }
+            return result;
+        }
+
+        private void launch(boolean hedge){
+            int index;
+            int endpointIndex;
+            synchronized(this){
+                if(result.isDone()) return;
+                index = attempts.size();
+                if(hedge){
+                    // One hedge per call, only while nothing has been shown and something is still running
+                    if(hedgeAttempt >= 0 || streaming.get() >= 0 || running == 0
+                            || index >= Math.max(endpoints.size(), 2)){
+                        return;
+                    }
+                    if(!spendBudget()){
+                        hedgesDenied.increment();
+                        return;
+                    }
+                    hedgeAttempt = index;
+                    hedgesSent.increment();
+                }
+                endpointIndex = index % endpoints.size();
+                attempts.add(null);
+                running++;
+            }
+
+            Endpoint endpoint = endpoints.get(endpointIndex);
+            ChatCompletionRequest sent = endpoint.model() != null
+                ? request.toBuilder().model(endpoint.model()).build()
+                : request;
+            long start = System.nanoTime();
+            AtomicLong firstToken = new AtomicLong();
+            CompletableFuture<ChatCompletion> future;
+            try{
+                future = onDelta == null
+                    ? endpoint.client().complete(sent)
+                    : endpoint.client().stream(sent, delta -> onDelta(index, start, firstToken, delta));
+            }catch(RuntimeException e){
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            Attempt attempt = new Attempt(endpointIndex, window(endpointIndex, onDelta != null, sent.getModel()),
+                start, firstToken, future);
+            synchronized(this){
+                attempts.set(index, attempt);
+            }
+            // A call decided while this attempt was being sent has no use for it
+            if(result.isDone() && streaming.get() != index && !future.isDone()){
+                future.cancel(true);
+            }
+            future.whenComplete((completion, e) -> finished(index, attempt, completion, e));
+        }
+
+        private void onDelta(int index, long start, AtomicLong firstToken, String delta){
+            int owner = streaming.get();
+            if(owner < 0 && streaming.compareAndSet(-1, index)){
+                owner = index;
+                firstToken.compareAndSet(0, System.nanoTime() - start);
+                cancelOthers(index);
+            }
+            if(owner == index) onDelta.accept(delta);
+        }
+
+        private void finished(int index, Attempt attempt, ChatCompletion completion, Throwable e){
+            boolean failover = false;
+            Throwable failure = null;
+            synchronized(this){
+                running--;
+                if(e == null){
+                    int owner = streaming.get();
+                    if(owner >= 0 && owner != index) return;
+                }else{
+                    Throwable cause = unwrap(e);
+                    if(result.isDone() || cause instanceof CancellationException) return;
+                    if(streaming.get() == index || !isRetryable(cause)){
+                        // Tokens were shown already and another endpoint would start the answer
+                        // over, or the request itself is at fault and would fail anywhere
+                        failure = cause;
+                    }else if(attempts.size() < endpoints.size()){
+                        failover = true;
+                    }else if(running == 0){
+                        failure = cause;
+                    }
+                    log.debug("Completion attempt on {} failed: {}", endpoints.get(attempt.endpoint()).name(), cause.getMessage());
+                }
+            }
+
+            if(failover){
+                failovers.increment();
+                launch(false);
+                return;
+            }
+            if(failure != null){
+                result.completeExceptionally(failure);
+                return;
+            }
+            if(e != null) return;
+
+            long firstToken = attempt.firstToken().get();
+            attempt.window().record(firstToken > 0 ? firstToken : System.nanoTime() - attempt.start());
+            boolean won = result.complete(completion);
+            synchronized(this){
+                if(won && index == hedgeAttempt) hedgesWon.increment();
+            }
+        }
+
+        private void cancelOthers(int keep){
+            List<Attempt> losers = new ArrayList<>();
+            synchronized(this){
+                for(int i = 0; i < attempts.size(); i++){
+                    Attempt attempt = attempts.get(i);
+                    if(i != keep && attempt != null && !attempt.future().isDone()) losers.add(attempt);
+                }
+            }
+            long now = System.nanoTime();
+            for(Attempt loser : losers){
+                if(loser.future().cancel(true)){
+                    // Took at least this long; leaving it out would make the endpoint look faster than it is
+                    loser.window().record(now - loser.start());
+                }
+            }
+        }
+    }
+
+    /**
+     * The latest latency samples of one endpoint, call kind and model.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private int next;
+
+        synchronized void record(long nanos){
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        }
+
+        // -1 until there are enough samples
+        synchronized long p95(){
+            if(count < MIN_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+}
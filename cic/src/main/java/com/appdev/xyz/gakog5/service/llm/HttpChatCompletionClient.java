@@ -0,0 +1,116 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link ChatCompletionClient} on top of the JDK {@link HttpClient}.
+ * The HttpClient keeps a pool of keep-alive connections (multiplexed streams when
+ * the endpoint speaks HTTP/2), so one instance should be shared by the whole app.
+ */
+@Slf4j
+public class HttpChatCompletionClient implements ChatCompletionClient {
+
+    private final HttpClient httpClient;
+    private final ChatCompletionCodec codec;
+    private final URI endpoint;
+    private final String apiKey;
+    private final Duration readTimeout;
+    private final Duration totalTimeout;
+
+    public HttpChatCompletionClient(HttpClient httpClient, ObjectMapper objectMapper, String endpoint,
+            String apiKey, Duration readTimeout, Duration totalTimeout){
+        this.httpClient = httpClient;
+        this.codec = new ChatCompletionCodec(objectMapper);
+        this.endpoint = URI.create(endpoint);
+        this.apiKey = apiKey;
+        this.readTimeout = readTimeout;
+        this.totalTimeout = totalTimeout;
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> complete(ChatCompletionRequest request) {
+        HttpRequest httpRequest;
+        try{
+            httpRequest = buildRequest(request, false);
+        }catch(JsonProcessingException e){
+            return CompletableFuture.failedFuture(new ChatCompletionException("Could not serialize request", e));
+        }
+
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+        return abortOnCancel(() -> exchange.cancel(true), exchange
+            .thenApply(this::readCompletion)
+            .orTimeout(totalTimeout.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> stream(ChatCompletionRequest request, Consumer<String> onDelta) {
+        HttpRequest httpRequest;
+        try{
+            httpRequest = buildRequest(request, true);
+        }catch(JsonProcessingException e){
+            return CompletableFuture.failedFuture(new ChatCompletionException("Could not serialize request", e));
+        }
+
+        CompletionStreamSubscriber subscriber = new CompletionStreamSubscriber(codec, onDelta);
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient.sendAsync(httpRequest,
+            HttpResponse.BodyHandlers.fromLineSubscriber(subscriber));
+        return abortOnCancel(() -> {
+            exchange.cancel(true);
+            subscriber.cancel();
+        }, exchange
+            .thenCompose(response -> {
+                if(response.statusCode() / 100 != 2){
+                    throw new ChatCompletionException(response.statusCode(),
+                        "Completion endpoint returned " + response.statusCode());
+                }
+                return subscriber.result();
+            })
+            .orTimeout(totalTimeout.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    // A cancelled completion should not keep the request open upstream; cancelling the exchange
+    // future makes the HttpClient abort it
+    private static <T> CompletableFuture<T> abortOnCancel(Runnable abort, CompletableFuture<T> result){
+        result.whenComplete((value, e) -> {
+            if(result.isCancelled()) abort.run();
+        });
+        return result;
+    }
+
+    private HttpRequest buildRequest(ChatCompletionRequest request, boolean stream) throws JsonProcessingException {
+        return HttpRequest.newBuilder(endpoint)
+            .timeout(readTimeout) // deadline for the response headers
+            .header("Content-Type", "application/json")
+            .header("Accept", stream ? "text/event-stream" : "application/json")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(codec.write(request, stream)))
+            .build();
+    }
+
+    private ChatCompletion readCompletion(HttpResponse<byte[]> response) {
+        if(response.statusCode() / 100 != 2){
+            throw new ChatCompletionException(response.statusCode(),
+                "Completion endpoint returned " + response.statusCode());
+        }
+        try{
+            return codec.read(response.body(), response.statusCode());
+        }catch(IOException e){
+            throw new ChatCompletionException("Could not parse completion", e);
+        }
+    }
+}
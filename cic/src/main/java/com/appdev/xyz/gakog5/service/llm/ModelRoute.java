@@ -0,0 +1,12 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+/**
+ * Model and generation settings a completion is sent with, under the name used in config,
+ * category overrides and metrics.
+ */
+public record ModelRoute(String name, String model, int maxTokens, double temperature) {
+
+    public ModelRoute withMaxTokens(int maxTokens){
+        return new ModelRoute(name, model, maxTokens, temperature);
+    }
+}
@@ -0,0 +1,137 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The configured model routes (nlp.routing.{fast,standard,large}.*) and the choice between
+ * them. The {@link ModelRoutingPolicy} picks a route from the request; a category can pin a
+ * route and cap max tokens, which wins over the policy. Every tracked completion feeds the
+ * per-route metrics and the recent latency the policy sees.
+ */
+@Service
+public class ModelRouter {
+
+    public static final String FAST = "fast";
+    public static final String STANDARD = "standard";
+    public static final String LARGE = "large";
+
+    // Weight of the newest sample in the per-route latency average
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final ModelRoutingPolicy policy;
+    private final Map<String, ModelRoute> routes = new LinkedHashMap<>();
+    private final Map<String, RouteMeters> meters = new HashMap<>();
+
+    private static final class RouteMeters {
+        final Counter requests;
+        final Counter failures;
+        final Timer latency;
+        final DistributionSummary promptTokens;
+        final DistributionSummary completionTokens;
+        volatile double latencyMillis = -1;
+
+        RouteMeters(String route, MeterRegistry registry){
+            requests = Counter.builder("cic.llm.route.requests").tag("route", route)
+                .description("Completions sent on each model route").register(registry);
+            failures = Counter.builder("cic.llm.route.failures").tag("route", route).register(registry);
+            latency = Timer.builder("cic.llm.route.latency").tag("route", route)
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+            promptTokens = DistributionSummary.builder("cic.llm.route.tokens").tag("route", route).tag("type", "prompt")
+                .register(registry);
+            completionTokens = DistributionSummary.builder("cic.llm.route.tokens").tag("route", route).tag("type", "completion")
+                .register(registry);
+        }
+    }
+
+    public ModelRouter(ModelRoutingPolicy policy,
+            @Value("${nlp.routing.fast.model:llama-3.1-8b-instant}") String fastModel,
+            @Value("${nlp.routing.fast.max-tokens:400}") int fastMaxTokens,
+            @Value("${nlp.routing.fast.temperature:0.5}") double fastTemperature,
+            @Value("${nlp.routing.standard.model:llama-3.1-8b-instant}") String standardModel,
+            @Value("${nlp.routing.standard.max-tokens:1000}") int standardMaxTokens,
+            @Value("${nlp.routing.standard.temperature:0.7}") double standardTemperature,
+            @Value("${nlp.routing.large.model:llama-3.3-70b-versatile}") String largeModel,
+            @Value("${nlp.routing.large.max-tokens:1200}") int largeMaxTokens,
+            @Value("${nlp.routing.large.temperature:0.6}") double largeTemperature,
+            MeterRegistry meterRegistry){
+        this.policy = policy;
+        routes.put(FAST, new ModelRoute(FAST, fastModel, fastMaxTokens, fastTemperature));
+        routes.put(STANDARD, new ModelRoute(STANDARD, standardModel, standardMaxTokens, standardTemperature));
+        routes.put(LARGE, new ModelRoute(LARGE, largeModel, largeMaxTokens, largeTemperature));
+        routes.keySet().forEach(name -> meters.put(name, new RouteMeters(name, meterRegistry)));
+    }
+
+    /**
+     * Route for a request.
+     *
+     * @param routeOverride route pinned on the category, or null to let the policy decide
+     * @param maxTokensOverride max tokens set on the category, or null for the route's own
+     */
+    public ModelRoute route(String question, int contextChars, boolean categoryScoped, boolean preset,
+            String routeOverride, Integer maxTokensOverride){
+        String name = routeOverride != null && routes.containsKey(routeOverride)
+            ? routeOverride
+            : policy.choose(new ModelRoutingPolicy.Signals(question, contextChars, categoryScoped, preset, latencies()));
+        ModelRoute route = named(name);
+        return maxTokensOverride != null && maxTokensOverride > 0 ? route.withMaxTokens(maxTokensOverride) : route;
+    }
+
+    public ModelRoute named(String name){
+        ModelRoute route = routes.get(name);
+        if(route == null) throw new IllegalArgumentException("Unknown model route: " + name);
+        return route;
+    }
+
+    public Set<String> routeNames(){
+        return routes.keySet();
+    }
+
+    /**
+     * Records the completion's latency and token usage under its route once it finishes.
+     */
+    public CompletableFuture<ChatCompletion> track(ModelRoute route, CompletableFuture<ChatCompletion> completion){
+        RouteMeters routeMeters = meters.get(route.name());
+        long start = System.nanoTime();
+        routeMeters.requests.increment();
+        return completion.whenComplete((result, e) -> {
+            if(e != null){
+                // A call dropped by its caller, like a fan-out loser, says nothing about the route
+                if(!completion.isCancelled()) routeMeters.failures.increment();
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            routeMeters.latency.record(nanos, TimeUnit.NANOSECONDS);
+            double millis = nanos / 1e6;
+            routeMeters.latencyMillis = routeMeters.latencyMillis < 0
+                ? millis
+                : routeMeters.latencyMillis * (1 - LATENCY_WEIGHT) + millis * LATENCY_WEIGHT;
+            if(result != null){
+                routeMeters.promptTokens.record(result.getPromptTokens());
+                routeMeters.completionTokens.record(result.getCompletionTokens());
+            }
+        });
+    }
+
+    private Map<String, Double> latencies(){
+        Map<String, Double> latencies = new HashMap<>();
+        meters.forEach((name, routeMeters) -> {
+            if(routeMeters.latencyMillis >= 0) latencies.put(name, routeMeters.latencyMillis);
+        });
+        return latencies;
+    }
+}
@@ -0,0 +1,26 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.Map;
+
+/**
+ * Picks the route for a completion from cheap local signals. Declare a {@code @Primary} bean
+ * to replace the default {@link ComplexityRoutingPolicy}.
+ */
+public interface ModelRoutingPolicy {
+
+    /**
+     * @param question the user's question
+     * @param contextChars size of the knowledge base text in the prompt, 0 for general questions
+     * @param categoryScoped whether the answer comes from a category
+     * @param preset whether this is a background preset answer nobody is waiting on
+     * @param latencyMillis recent upstream latency per route name; routes not used yet are absent
+     */
+    record Signals(String question, int contextChars, boolean categoryScoped, boolean preset,
+            Map<String, Double> latencyMillis) {}
+
+    /**
+     * Name of one of the configured routes ({@link ModelRouter#FAST}, {@link ModelRouter#STANDARD},
+     * {@link ModelRouter#LARGE}).
+     */
+    String choose(Signals signals);
+}
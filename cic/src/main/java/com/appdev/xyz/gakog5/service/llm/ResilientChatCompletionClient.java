@@ -0,0 +1,157 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulkhead in front of another {@link ChatCompletionClient}: an adaptive concurrency limit and a
+ * circuit breaker. Calls over the limit, or made while the breaker is open, fail immediately with
+ * a 503 {@link ChatCompletionException} so callers fall back without waiting on a sick upstream.
+ * Cancelling a returned future cancels the upstream call and counts against neither.
+ */
+@Slf4j
+public class ResilientChatCompletionClient implements ChatCompletionClient {
+
+    private final ChatCompletionClient delegate;
+    private final GradientConcurrencyLimit limit;
+    private final CircuitBreaker breaker;
+    private final Counter limitRejections;
+    private final Counter breakerRejections;
+
+    public ResilientChatCompletionClient(ChatCompletionClient delegate, GradientConcurrencyLimit limit,
+            CircuitBreaker breaker, MeterRegistry meterRegistry){
+        this(delegate, limit, breaker, "primary", meterRegistry);
+    }
+
+    /**
+     * @param endpoint tag on the meters, telling apart the bulkheads of several endpoints
+     */
+    public ResilientChatCompletionClient(ChatCompletionClient delegate, GradientConcurrencyLimit limit,
+            CircuitBreaker breaker, String endpoint, MeterRegistry meterRegistry){
+        this.delegate = delegate;
+        this.limit = limit;
+        this.breaker = breaker;
+        this.limitRejections = Counter.builder("cic.llm.rejected").tag("reason", "limit").tag("endpoint", endpoint)
+            .description("Completions refused before reaching the upstream")
+            .register(meterRegistry);
+        this.breakerRejections = Counter.builder("cic.llm.rejected").tag("reason", "circuit-open").tag("endpoint", endpoint)
+            .description("Completions refused before reaching the upstream")
+            .register(meterRegistry);
+        Gauge.builder("cic.llm.limit", limit, GradientConcurrencyLimit::getLimit)
+            .tag("endpoint", endpoint)
+            .description("Current adaptive concurrency limit")
+            .register(meterRegistry);
+        Gauge.builder("cic.llm.in-flight", limit, GradientConcurrencyLimit::getInFlight)
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        Gauge.builder("cic.llm.circuit.state", breaker, b -> b.getState().ordinal())
+            .tag("endpoint", endpoint)
+            .description("0 closed, 1 open, 2 half-open")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> complete(ChatCompletionRequest request) {
+        CircuitBreaker.Permit permit;
+        try{
+            permit = admit();
+        }catch(ChatCompletionException e){
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        return guard(delegate.complete(request), permit, start, () -> System.nanoTime() - start);
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletion> stream(ChatCompletionRequest request, Consumer<String> onDelta) {
+        CircuitBreaker.Permit permit;
+        try{
+            permit = admit();
+        }catch(ChatCompletionException e){
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // A stream's length depends on the answer, so the latency sample is its first token
+        long start = System.nanoTime();
+        AtomicLong firstToken = new AtomicLong();
+        CompletableFuture<ChatCompletion> future = delegate.stream(request, delta -> {
+            firstToken.compareAndSet(0, System.nanoTime() - start);
+            onDelta.accept(delta);
+        });
+        return guard(future, permit, start, () -> firstToken.get() > 0 ? firstToken.get() : System.nanoTime() - start);
+    }
+
+    private CircuitBreaker.Permit admit(){
+        if(!limit.tryAcquire()){
+            limitRejections.increment();
+            throw new ChatCompletionException(503, "Too many completions in flight");
+        }
+        CircuitBreaker.Permit permit = breaker.tryAcquirePermission();
+        if(permit == null){
+            limit.release(0, false);
+            breakerRejections.increment();
+            throw new ChatCompletionException(503, "Completion endpoint is unavailable (circuit open)");
+        }
+        return permit;
+    }
+
+    private CompletableFuture<ChatCompletion> guard(CompletableFuture<ChatCompletion> future, CircuitBreaker.Permit permit,
+            long start, LongSupplier rtt){
+        CompletableFuture<ChatCompletion> guarded = future.whenComplete((completion, e) -> {
+            if(e == null){
+                limit.release(rtt.getAsLong(), false);
+                breaker.onSuccess(permit, System.nanoTime() - start);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if(cause instanceof CancellationException){
+                limit.release(0, false);
+                breaker.onIgnored(permit);
+                return;
+            }
+            limit.release(0, isOverload(cause));
+            CircuitBreaker.State before = breaker.getState();
+            if(isUpstreamFault(cause)){
+                breaker.onFailure(permit);
+            }else{
+                breaker.onSuccess(permit, System.nanoTime() - start);
+            }
+            if(before != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN){
+                log.warn("Completion circuit opened after: {}", cause.getMessage());
+            }
+        });
+        // whenComplete does not pass a cancel upstream by itself
+        guarded.whenComplete((completion, e) -> {
+            if(guarded.isCancelled()) future.cancel(true);
+        });
+        return guarded;
+    }
+
+    private static boolean isOverload(Throwable cause){
+        if(cause instanceof TimeoutException) return true;
+        if(cause instanceof ChatCompletionException c) return c.getStatusCode() == 429 || c.getStatusCode() == 503;
+        return false;
+    }
+
+    // Client errors (bad request, auth) are our fault, not the upstream's
+    private static boolean isUpstreamFault(Throwable cause){
+        if(cause instanceof ChatCompletionException c && c.getStatusCode() >= 400 && c.getStatusCode() < 500){
+            return c.getStatusCode() == 408 || c.getStatusCode() == 429;
+        }
+        return true;
+    }
+}
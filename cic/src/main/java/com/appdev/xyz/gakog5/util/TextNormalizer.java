@@ -0,0 +1,83 @@
+package com.appdev.xyz.gakog5.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public final class TextNormalizer {
+
+    private static final Set<String> STOPWORDS = Set.of(
+        "a", "an", "the", "and", "or", "but", "if", "of", "to", "in", "on", "at", "by", "for",
+        "with", "about", "from", "into", "as", "is", "are", "was", "were", "be", "been", "am",
+        "do", "does", "did", "can", "could", "will", "would", "should", "may", "might", "must",
+        "i", "me", "my", "we", "our", "you", "your", "it", "its", "this", "that", "these",
+        "those", "there", "here", "what", "which", "who", "whom", "how", "when", "where", "why",
+        "please", "tell", "know", "so", "than", "then", "too", "very", "just", "any", "some");
+
+    private TextNormalizer(){}
+
+    /**
+     * Normalized search terms of a text with stopwords and single characters dropped.
+     */
+    public static List<String> tokenize(String text){
+        String normalized = normalizeQuestion(text);
+        List<String> terms = new ArrayList<>();
+        int start = 0;
+        for(int i = 0; i <= normalized.length(); i++){
+            if(i == normalized.length() || normalized.charAt(i) == ' '){
+                if(i - start > 1){
+                    String term = normalized.substring(start, i);
+                    if(!STOPWORDS.contains(term)) terms.add(term);
+                }
+                start = i + 1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lower-cased, accent-free, punctuation-free form of a question with single spaces,
+     * so "What are the fees?" and "what  are the FEES" compare equal.
+     */
+    public static String normalizeQuestion(String question){
+        if(question == null) return "";
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKD)
+            .replaceAll("\\p{M}+", "")
+            .toLowerCase(Locale.ROOT);
+
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = true;
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(Character.isLetterOrDigit(c)){
+                sb.append(c);
+                space = false;
+            }else if(!space){
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if(end > 0 && sb.charAt(end - 1) == ' ') sb.setLength(end - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Short, stable fingerprint of a piece of content, used to tell category versions apart.
+     */
+    public static String contentVersion(String content){
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ class PresetManager {
     constructor() {
         this.presets = [];
         this.currentCategoryId = null;
+        this.statusTimer = null;
         this.elements = {
             addButton: document.getElementById('btnAddPreset'),
             inputContainer: document.getElementById('presetInputContainer'),
@@ -10,7 +11,8 @@ class PresetManager {
             cancelButton: document.getElementById('btnCancelPreset'),
             presetList: document.getElementById('presetList'),
             presetCounter: document.getElementById('presetCounter'),
-            presetEmptyState: document.getElementById('presetEmptyState')
+            presetEmptyState: document.getElementById('presetEmptyState'),
+            presetStatus: document.getElementById('presetStatus')
         };
         this.setupEventListeners();
     }
@@ -42,6 +44,46 @@ class PresetManager {
         const category = window.categoryManager.getCategoryById(categoryId);
         this.presets = category && category.presets ? category.presets : [];
         this.render();
+        this.trackAnswerGeneration(categoryId);
+    }
+
+    // Polls the server while answers for the saved presets are generated in the background
+    async trackAnswerGeneration(categoryId) {
+        clearTimeout(this.statusTimer);
+        if (!this.elements.presetStatus || !categoryId) return;
+
+        try {
+            const response = await fetch(`/api/category/preset-status?id=${encodeURIComponent(categoryId)}`, {
+                method: 'GET',
+                headers: window.ApiCaller.auth.getAuthHeaders()
+            });
+            if (!response.ok || categoryId !== this.currentCategoryId) return;
+            const status = (await response.json()).data;
+            this.renderStatus(status);
+            if (status && status.running) {
+                this.statusTimer = setTimeout(() => this.trackAnswerGeneration(categoryId), 1500);
+            }
+        } catch (error) {
+            console.error('Error fetching preset status:', error);
+        }
+    }
+
+    renderStatus(status) {
+        const element = this.elements.presetStatus;
+        if (!status || !status.total) {
+            element.style.display = 'none';
+            return;
+        }
+        element.style.display = 'block';
+        element.classList.toggle('running', status.running);
+        element.classList.toggle('failed', !status.running && status.failed > 0);
+        if (status.running) {
+            element.textContent = `Preparing answers: ${status.ready} of ${status.total} ready`;
+        } else if (status.failed > 0) {
+            element.textContent = `${status.ready} of ${status.total} answers ready, ${status.failed} failed and will be answered live`;
+        } else {
+            element.textContent = `All ${status.total} answers ready`;
+        }
     }
 
     showAddPreset() {
@@ -136,6 +136,9 @@ class TerminalManager {
       case 'current-category':
         this.showCurrentCategory();
         break;
+      case 'evaluate':
+        this.evaluate(parts.args, /\s--file\b/.test(command));
+        break;
       default:
         this.writeError(`Command not found: ${commandName}`);
         this.writeLine('Type "help" for available commands', 'info');
@@ -243,6 +246,15 @@ class TerminalManager {
     this.writeLine('    (Requires a category to be selected)');
     this.writeLine('');
     
+    this.writeLine('EVALUATION:', 'info');
+    this.writeLine('  evaluate [--concurrency N]', 'normal');
+    this.writeLine('    Ask the current category all of its presets and show each answer,');
+    this.writeLine('    its latency and token usage, then a summary');
+    this.writeLine('');
+    this.writeLine('  evaluate --file [--concurrency N]', 'normal');
+    this.writeLine('    Same, with questions from a text file, one per line');
+    this.writeLine('');
+    
     this.writeLine('GENERAL:', 'info');
     this.writeLine('  clear', 'normal');
     this.writeLine('    Clear terminal output');
@@ -347,6 +359,102 @@ class TerminalManager {
     this.writeSuccess(`✓ Selected category: ${category.name}`);
   }
 
+  async evaluate(args, fromFile) {
+    const current = window.categoryManager.getCurrentCategory();
+    if (!current) {
+      this.writeError('No category selected. Please select a category first.');
+      this.writeLine('Use: select-category --name "Category Name"', 'info');
+      return;
+    }
+
+    let questions = [];
+    if (fromFile) {
+      const text = await this.pickTextFile();
+      if (text === null) {
+        this.writeLine('Evaluation cancelled', 'info');
+        return;
+      }
+      questions = text.split(/\r?\n/).map(q => q.trim()).filter(q => q);
+      if (questions.length === 0) {
+        this.writeError('The file has no questions');
+        return;
+      }
+    }
+
+    const concurrency = args.concurrency ? parseInt(args.concurrency, 10) : null;
+    if (args.concurrency && !(concurrency > 0)) {
+      this.writeError('--concurrency must be a positive number');
+      return;
+    }
+
+    const total = questions.length || (current.presets || []).length;
+    this.writeLine(`Evaluating ${current.name} with ${fromFile ? questions.length + ' questions from file' : 'its presets'}...`, 'info');
+    this.scrollToBottom();
+
+    let done = 0;
+    const response = await window.ApiCaller.streamRequest('/api/category/evaluate', {
+      categoryId: current.id,
+      questions,
+      concurrency
+    }, (name, data) => {
+      const payload = JSON.parse(data);
+      if (name === 'result') {
+        done++;
+        this.writeEvaluationResult(payload, done, total);
+      } else if (name === 'done') {
+        this.writeEvaluationSummary(payload.data);
+      } else if (name === 'error') {
+        this.writeError(`Evaluation failed: ${payload.message}`);
+      }
+      this.scrollToBottom();
+    });
+
+    if (!response.success) {
+      this.writeError(response.status === 400
+        ? 'Evaluation rejected: the category has no content or no questions to run'
+        : `Evaluation failed: ${response.error || 'status ' + response.status}`);
+    }
+    this.scrollToBottom();
+  }
+
+  writeEvaluationResult(result, done, total) {
+    const progress = total ? `[${done}/${total}]` : `[${done}]`;
+    if (result.error) {
+      this.writeError(`${progress} #${result.index + 1} ${result.question} (${result.latencyMs} ms)`);
+      this.writeLine(`    ${result.error}`);
+      return;
+    }
+    const answer = result.answer.length > 160 ? result.answer.slice(0, 160) + '…' : result.answer;
+    this.writeSuccess(`${progress} #${result.index + 1} ${result.question}`);
+    this.writeLine(`    ${result.latencyMs} ms · ${result.promptTokens}+${result.completionTokens} tokens · ${result.model}`, 'info');
+    this.writeLine(`    ${answer}`);
+  }
+
+  writeEvaluationSummary(summary) {
+    this.writeLine('');
+    this.writeSuccess(`Evaluation finished: ${summary.total - summary.failed}/${summary.total} answered in ${(summary.elapsedMs / 1000).toFixed(1)} s`);
+    this.writeLine(`  Latency p50 ${summary.p50LatencyMs} ms, p95 ${summary.p95LatencyMs} ms`, 'info');
+    this.writeLine(`  Tokens: ${summary.promptTokens} prompt, ${summary.completionTokens} completion`, 'info');
+    if (summary.failed > 0) {
+      this.writeError(`  ${summary.failed} question(s) failed`);
+    }
+  }
+
+  // Resolves with the chosen file's text, or null when nothing is picked
+  pickTextFile() {
+    return new Promise(resolve => {
+      const picker = document.createElement('input');
+      picker.type = 'file';
+      picker.accept = '.txt,text/plain';
+      picker.addEventListener('change', async () => {
+        const file = picker.files[0];
+        resolve(file ? await file.text() : null);
+      });
+      picker.addEventListener('cancel', () => resolve(null));
+      picker.click();
+    });
+  }
+
   showCurrentCategory() {
     const current = window.categoryManager.getCurrentCategory();
     
@@ -157,6 +157,7 @@ class EditorPage {
 
     try {
       await window.categoryManager.editCategory(categoryId, null, answer);
+      window.presetManager?.trackAnswerGeneration(window.presetManager.currentCategoryId);
       window.MessageBox.showSuccess('Content updated successfully!', () => {
         window.MessageBox.hide();
       });
@@ -181,6 +182,7 @@ class EditorPage {
       
       // Update category with presets
       await window.categoryManager.editCategory(categoryId, null, null, presets);
+      window.presetManager.trackAnswerGeneration(window.presetManager.currentCategoryId);
       
       window.MessageBox.showSuccess('Presets updated successfully!', () => {
         window.MessageBox.hide();
@@ -39,6 +39,40 @@ document.addEventListener('DOMContentLoaded', async() => {
         return null;
     }
 
+    // Statuses meaning the stream endpoint is missing or refuses event streams, so the question never ran
+    const STREAM_UNSUPPORTED = [404, 405, 406, 415];
+
+    // Streams the answer into a live bubble; resolves with the chat's list entry and the saved message once done.
+    // Resolves with {unsupported: true} only when the question was not asked, so asking again cannot double it.
+    const streamResponse = async (id, question, onToken)=>{
+        const currCat = window.categoryHandler.currentCategory;
+        let result = null;
+        let error = null;
+        const response = await window.ApiCaller.streamRequest('/api/chat/process-query/stream',
+            {id: id, categoryId: currCat?.id, question: question},
+            (event, data) => {
+                if(event === 'token') onToken(data);
+                else if(event === 'done'){
+                    const body = JSON.parse(data);
+                    result = {chat: body.data, message: body.data2};
+                }else if(event === 'error'){
+                    try{
+                        error = JSON.parse(data).message;
+                    }catch(e){
+                        error = data;
+                    }
+                }
+            });
+        if(response.status === 429 || response.status === 503){
+            return {rejected: true, status: response.status, retryAfter: response.retryAfter};
+        }
+        if(response.status === undefined || STREAM_UNSUPPORTED.includes(response.status)){
+            return {unsupported: true};
+        }
+        if(result) return result;
+        return {failed: true, error: error || 'The answer was interrupted. Please try again.'};
+    }
+
     const sleep = (ms)=>{
         return new Promise(resolve => setTimeout(resolve, ms));
     }
@@ -68,7 +102,46 @@ document.addEventListener('DOMContentLoaded', async() => {
             let id = new URLSearchParams(window.location.search).get("id");
             if(id === 'null') id = null;
 
-            const response = await getResponse(id, text);
+            let streamedText = '';
+            let liveMessage = null;
+            let response = await streamResponse(id, text, token => {
+                if(!liveMessage){
+                    typingIndicator.remove();
+                    liveMessage = messageFactory.createBotMessage({botMessage: ''});
+                    elements.chatMessages.appendChild(liveMessage);
+                }
+                streamedText += token;
+                liveMessage.querySelector('.bot-text').innerHTML = messageFactory.formatBotResponse(streamedText);
+                utils.scrollToBottom();
+            });
+            if(response?.rejected){
+                typingIndicator.remove();
+                const wait = response.retryAfter ? ` Please try again in ${response.retryAfter} seconds.` : ' Please try again shortly.';
+                const notice = response.status === 429
+                    ? "You're asking questions too quickly." + wait
+                    : 'The assistant is very busy right now.' + wait;
+                elements.chatMessages.appendChild(messageFactory.createBotMessage({botMessage: notice}));
+                utils.scrollToBottom();
+                elements.chatInput.value = text;
+                elements.sendButton.disabled = false;
+                elements.chatInput.disabled = false;
+                elements.chatInput.focus();
+                return;
+            }
+            // Older deployments or proxies that refuse event streams; a stream that started is never asked again
+            if(response?.unsupported){
+                response = await getResponse(id, text)
+                    || {failed: true, error: 'Could not answer the question. Please try again.'};
+            }
+            if(response.failed){
+                typingIndicator.remove();
+                elements.chatMessages.appendChild(messageFactory.createBotMessage({botMessage: response.error}));
+                utils.scrollToBottom();
+                elements.sendButton.disabled = false;
+                elements.chatInput.disabled = false;
+                elements.chatInput.focus();
+                return;
+            }
             const chat = response.chat;
             const message = response.message;
 
@@ -78,6 +151,8 @@ document.addEventListener('DOMContentLoaded', async() => {
                 window.ChatManager.pushChat(chat);
             }
             typingIndicator.remove();
+            liveMessage?.remove();
+            window.ChatManager.noteMessage(message);
             const botMessage = messageFactory.createBotMessage(message);
             elements.chatMessages.appendChild(botMessage);
             utils.scrollToBottom();
@@ -1,4 +1,6 @@
 class ChatManager {
+    static SYNC_INTERVAL_MS = 30000;
+
     constructor() {
         this.newChatBtn = document.getElementById('newChatBtn');
         this.chatList = document.getElementById("chatHistoryList");
@@ -6,6 +8,16 @@ class ChatManager {
         this.messageFactory = new MessageFactory();
         this.currentId = new URLSearchParams(window.location.search).get("id");
         this.chats = null;
+        // Keyset cursors of the next chat page and of the older messages of the open chat
+        this.chatsCursor = null;
+        this.messagesCursor = null;
+        this.loadingChats = false;
+        this.loadingMessages = false;
+        // Delta sync: watermark of the last sync, and what the open chat shows, by message id
+        this.watermark = null;
+        this.syncing = false;
+        this.renderedMessages = new Map();
+        this.lastMessageId = 0;
     
         this.init();
     }
@@ -18,9 +30,17 @@ class ChatManager {
                 const url = new URL(window.location.href);
                 url.searchParams.delete('highlight');
                 history.replaceState(null, '', url.toString());
-                break;
+                return true;
             }
         }
+        return false;
+    }
+
+    // Loads older pages until the message is on screen or the chat has no more
+    async revealMessage(searchText) {
+        while (!this.scrollToMessage(searchText) && this.messagesCursor) {
+            await this.loadOlderMessages();
+        }
     }
 
 
@@ -29,36 +49,192 @@ class ChatManager {
         const params = new URLSearchParams(window.location.search);
         const highlight = params.get('highlight');
 
-        this.chats = await this.loadChats();
+        // Taken before loading, so nothing changed while the pages load is missed
+        this.watermark = (await this.fetchChanges(null))?.watermark;
+
+        const page = await this.loadChats();
+        this.chats = page.items;
+        this.chatsCursor = page.nextCursor;
         this.renderChats(this.chats);
 
-        const currentChat = this.chats.find(c => String(c.id) === this.currentId);
-        this.renderMessages(currentChat);
+        // More chats as the list is scrolled to its end, older messages as the chat is scrolled to its top
+        this.chatList.addEventListener('scroll', () => {
+            const list = this.chatList;
+            if (list.scrollTop + list.clientHeight >= list.scrollHeight - 40) this.loadMoreChats();
+        });
+        this.chatMessagesContainer.addEventListener('scroll', () => {
+            if (this.chatMessagesContainer.scrollTop < 40) this.loadOlderMessages();
+        });
+
+        await this.loadCurrentMessages();
+
+        if (highlight) this.revealMessage(highlight);
+
+        // Picks up questions asked, and chats or messages changed, in other tabs and devices
+        setInterval(() => {
+            if (document.visibilityState === 'visible') this.sync();
+        }, ChatManager.SYNC_INTERVAL_MS);
+        document.addEventListener('visibilitychange', () => {
+            if (document.visibilityState === 'visible') this.sync();
+        });
+    }
+
+    async fetchChanges(since) {
+        try {
+            const query = since ? `?since=${encodeURIComponent(since)}` : '';
+            const response = await window.ApiCaller.getRequest(`/api/chat/changes${query}`, true, null);
+            if (response.success) return response.data;
+            console.error('Failed to sync chats:', response.message);
+        } catch (error) {
+            console.error('Error syncing chats:', error);
+        }
+        return null;
+    }
+
+    async sync() {
+        if (!this.watermark || this.syncing) return;
+        this.syncing = true;
+        try {
+            const changes = await this.fetchChanges(this.watermark);
+            if (!changes) return;
+            this.watermark = changes.watermark;
+            if (changes.resync) {
+                const page = await this.loadChats();
+                this.chats = page.items;
+                this.chatsCursor = page.nextCursor;
+                this.renderChats(this.chats);
+                await this.loadCurrentMessages();
+            } else {
+                await this.applyChanges(changes);
+            }
+        } finally {
+            this.syncing = false;
+        }
+    }
+
+    async applyChanges(changes) {
+        if (changes.deletedChatIds.some(id => String(id) === this.currentId)) {
+            window.location.href = '/cic/chatbot';
+            return;
+        }
+        changes.deletedChatIds.forEach(id => {
+            this.chats = this.chats.filter(c => String(c.id) !== String(id));
+            this.chatList.querySelector(`[data-chat-id="${id}"]`)?.closest('.chat-history-item')?.remove();
+        });
 
-        if (highlight) {
-        const tryScroll = () => {
-            const messages = this.chatMessagesContainer.querySelectorAll('.message');
-            if (messages.length > 0) {
-                this.scrollToMessage(highlight);
+        // Newest first, so prepending in reverse keeps that order
+        [...changes.chats].reverse().forEach(chat => {
+            const index = this.chats.findIndex(c => String(c.id) === String(chat.id));
+            const existing = this.chatList.querySelector(`[data-chat-id="${chat.id}"]`)?.closest('.chat-history-item');
+            if (index >= 0) {
+                this.chats[index] = chat;
+                if (existing) existing.querySelector('.chat-title').textContent = chat.title || "Untitled Chat";
             } else {
-                setTimeout(tryScroll, 100); 
+                if (this.chatList.querySelector('.no-chats')) this.chatList.innerHTML = "";
+                this.chats.unshift(chat);
+                this.chatList.prepend(this.createChatItem(chat));
             }
-        };
-        tryScroll();
+        });
+
+        // Reload the open chat only if something it shows, or something newer, changed
+        const stale = changes.messages.some(m => String(m.chatId) === this.currentId
+                && (m.id > this.lastMessageId || (this.renderedMessages.has(m.id)
+                    && this.renderedMessages.get(m.id) !== this.messageKey(m))))
+            || changes.deletedMessageIds.some(id => this.renderedMessages.has(id));
+        if (stale) await this.loadCurrentMessages();
+    }
+
+    messageKey(message) {
+        return JSON.stringify([message.userMessage, message.botMessage, message.like]);
     }
 
+    // Messages this page added itself, so syncing does not reload the chat for them
+    noteMessage(message) {
+        if (message?.id == null) return;
+        this.renderedMessages.set(message.id, this.messageKey(message));
+        this.lastMessageId = Math.max(this.lastMessageId, message.id);
     }
 
-    async loadChats() {
+    async loadChats(cursor = null) {
         try {
-            const response = await window.ApiCaller.getRequest('/api/chat/getAllByUser', true);
+            const query = cursor ? `&cursor=${encodeURIComponent(cursor)}` : '';
+            // Later pages load while the list scrolls, so they skip the overlay
+            const response = await window.ApiCaller.getRequest(`/api/chat/summaries?size=30${query}`, true,
+                cursor ? null : 'Loading...');
             if (response.success) return response.data;
             console.error('Failed to load chats:', response.message);
-            return [];
         } catch (error) {
             console.error('Error loading chats:', error);
-            return [];
         }
+        return { items: [], nextCursor: null };
+    }
+
+    async loadMoreChats() {
+        if (!this.chatsCursor || this.loadingChats) return;
+        this.loadingChats = true;
+        const page = await this.loadChats(this.chatsCursor);
+        this.chats.push(...page.items);
+        this.chatsCursor = page.nextCursor;
+        page.items.forEach(chat => this.chatList.appendChild(this.createChatItem(chat)));
+        this.loadingChats = false;
+    }
+
+    async loadMessages(cursor = null, size = 50) {
+        try {
+            const query = cursor ? `&cursor=${encodeURIComponent(cursor)}` : '';
+            const response = await window.ApiCaller.getRequest(
+                `/api/chat/messages?chatId=${encodeURIComponent(this.currentId)}&size=${size}${query}`, true,
+                cursor ? null : 'Loading...');
+            if (response.success) return response.data;
+            console.error('Failed to load messages:', response.message);
+        } catch (error) {
+            console.error('Error loading messages:', error);
+        }
+        return { items: [], nextCursor: null };
+    }
+
+    hasCurrentChat() {
+        return this.currentId && this.currentId !== 'null';
+    }
+
+    // The latest messages of the open chat; at least as many as are on screen already
+    async loadCurrentMessages() {
+        if (!this.hasCurrentChat()) {
+            this.renderMessages([]);
+            return;
+        }
+        const shown = this.chatMessagesContainer.querySelectorAll('.message').length;
+        const page = await this.loadMessages(null, Math.max(50, Math.ceil(shown / 2)));
+        this.messagesCursor = page.nextCursor;
+        this.renderMessages(page.items);
+    }
+
+    async loadOlderMessages() {
+        if (!this.messagesCursor || this.loadingMessages) return;
+        this.loadingMessages = true;
+        const page = await this.loadMessages(this.messagesCursor);
+        this.messagesCursor = page.nextCursor;
+
+        // Keep the messages that were on screen where they were
+        const container = this.chatMessagesContainer;
+        const fromBottom = container.scrollHeight - container.scrollTop;
+        const older = document.createDocumentFragment();
+        page.items.forEach(message => this.appendMessage(older, message));
+        container.prepend(older);
+        container.scrollTop = container.scrollHeight - fromBottom;
+        this.loadingMessages = false;
+    }
+
+    // Every chat with every message, for searching; only fetched when a search runs
+    async loadHistory() {
+        try {
+            const response = await window.ApiCaller.getRequest('/api/chat/getAllByUser', true, 'Searching...');
+            if (response.success) return response.data;
+            console.error('Failed to load chat history:', response.message);
+        } catch (error) {
+            console.error('Error loading chat history:', error);
+        }
+        return [];
     }
 
     async createNewChat() {
@@ -81,43 +257,43 @@ class ChatManager {
         }
     }
 
-    renderMessages(chat) {
+    renderMessages(messages) {
         this.chatMessagesContainer.innerHTML = '';
-        if (!chat) return;
-
-        chat.messages.forEach(message => {
-            if (message.userMessage) {
-                this.chatMessagesContainer.appendChild(
-                    this.messageFactory.createUserMessage(message)
-                );
-            }
-            if (message.botMessage) {
-                this.chatMessagesContainer.appendChild(
-                    this.messageFactory.createBotMessage(message)
-                );
-            }
-        });
-
+        this.renderedMessages.clear();
+        this.lastMessageId = 0;
+        messages.forEach(message => this.appendMessage(this.chatMessagesContainer, message));
         this.chatMessagesContainer.scrollTop = this.chatMessagesContainer.scrollHeight;
     }
 
-    async refreshCurrentChat() {
-        if (!this.currentId) return;
-        
-        // Reload chats to get updated data
-        this.chats = await this.loadChats();
-        const currentChat = this.chats.find(c => String(c.id) === this.currentId);
-        
-        if (currentChat) {
-            this.renderMessages(currentChat);
+    appendMessage(parent, message) {
+        this.noteMessage(message);
+        if (message.userMessage) {
+            parent.appendChild(this.messageFactory.createUserMessage(message));
         }
+        if (message.botMessage) {
+            parent.appendChild(this.messageFactory.createBotMessage(message));
+        }
+    }
+
+    async refreshCurrentChat() {
+        if (!this.hasCurrentChat()) return;
+        await this.loadCurrentMessages();
     }
 
     pushChat(chat){
         if(this.chatList.textContent.trim() === 'No chat history yet') this.chatList.innerHTML = "";
+        // The new chat is now the open one, so refreshes reload its messages
+        this.currentId = String(chat.id);
+        this.chats?.unshift(chat);
+        const item = this.createChatItem(chat);
+        item.classList.add("active");
+        this.chatList.prepend(item);
+    }
+
+    createChatItem(chat) {
         const item = document.createElement("div");
         item.classList.add("chat-history-item");
-        item.classList.add("active");
+        if (String(chat.id) === this.currentId) item.classList.add("active");
         item.innerHTML = `
             <span class="chat-title">${chat.title || "Untitled Chat"}</span>
             <button class="delete-chat-btn" data-chat-id="${chat.id}" title="Delete chat">
@@ -139,7 +315,7 @@ class ChatManager {
             e.stopPropagation();
             this.handleChatDelete(chat, item, deleteBtn);
         });
-        this.chatList.prepend(item);
+        return item;
     }
 
     renderChats(chats) {
@@ -150,38 +326,8 @@ class ChatManager {
             return;
         }
 
-        chats.sort((a, b) => new Date(b.timestamp) - new Date(a.timestamp))
-        .forEach(chat => {
-            const item = document.createElement("div");
-            item.classList.add("chat-history-item");
-            if (String(chat.id) === this.currentId) item.classList.add("active");
-
-            item.innerHTML = `
-                <span class="chat-title">${chat.title || "Untitled Chat"}</span>
-                <button class="delete-chat-btn" data-chat-id="${chat.id}" title="Delete chat">
-                    <svg xmlns="http://www.w3.org/2000/svg" viewBox="0 0 24 24" fill="none"
-                         stroke="currentColor" stroke-width="2" stroke-linecap="round" stroke-linejoin="round">
-                        <path d="M3 6h18M19 6v14a2 2 0 0 1-2 2H7a2 2 0 0 1-2-2V6
-                                 m3 0V4a2 2 0 0 1 2-2h4a2 2 0 0 1 2 2v2M10 11v6M14 11v6"/>
-                    </svg>
-                </button>
-            `;
-
-            // Handle chat title click
-            const chatTitle = item.querySelector('.chat-title');
-            chatTitle.addEventListener("click", () => {
-                window.location.href = `/cic/chatbot?id=${chat.id}`;
-            });
-
-            // Handle delete button click
-            const deleteBtn = item.querySelector('.delete-chat-btn');
-            deleteBtn.addEventListener("click", async (e) => {
-                e.stopPropagation();
-                this.handleChatDelete(chat, item, deleteBtn);
-            });
-
-            this.chatList.appendChild(item);
-        });
+        // Already newest first from the server
+        chats.forEach(chat => this.chatList.appendChild(this.createChatItem(chat)));
     }
 
     async handleChatDelete(chat, item, deleteBtn) {
@@ -196,7 +342,10 @@ class ChatManager {
                     item.style.animation = 'slideOutRight 0.3s ease';
 
                     setTimeout(async () => {
-                        const updatedChats = await this.loadChats();
+                        const page = await this.loadChats();
+                        const updatedChats = page.items;
+                        this.chats = updatedChats;
+                        this.chatsCursor = page.nextCursor;
                         this.renderChats(updatedChats);
 
                         // Redirect if active chat was deleted
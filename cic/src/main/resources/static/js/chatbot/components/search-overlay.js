@@ -198,8 +198,8 @@ class SearchOverlay {
         this.showLoadingState();
 
         try {
-            const chats = await window.ChatManager.chats;
-            console.log("chats in searc", chats);
+            // The chat list only has summaries, so the messages are fetched for the search
+            const chats = await window.ChatManager.loadHistory();
             const messages = chats
               .map(chat => 
                 chat.messages.map(m => ({
@@ -252,7 +252,7 @@ class MessageFactory {
             });
             dislikeBtn.addEventListener('click', async () => {
                 this.toggleAction(dislikeBtn, likeBtn)
-                await window.ApiCaller.postRequest(`/api/message/handle-like`, {id, like:true}, true);
+                await window.ApiCaller.postRequest(`/api/message/handle-like`, {id, like:false}, true);
             });
         }
 
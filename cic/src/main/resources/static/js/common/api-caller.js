@@ -35,8 +35,56 @@ class ApiCaller{
         }
     }
 
+    // POSTs and reads a text/event-stream body, calling onEvent(name, data) for every event
+    async streamRequest(url, data, onEvent){
+        const headers = {
+            ...this.auth.getAuthHeaders(),
+            'Accept': 'text/event-stream'
+        };
+
+        let response = null;
+        try{
+            response = await fetch(url, {
+                method: 'POST',
+                headers: headers,
+                body: JSON.stringify(data)
+            });
+            if(!response.ok || !response.body){
+                return {success: false, status: response.status, retryAfter: response.headers.get('Retry-After')};
+            }
+
+            const reader = response.body.getReader();
+            const decoder = new TextDecoder();
+            let buffer = '';
+            while(true){
+                const {value, done} = await reader.read();
+                if(done) break;
+                buffer += decoder.decode(value, {stream: true});
+
+                let boundary;
+                while((boundary = buffer.indexOf('\n\n')) !== -1){
+                    const rawEvent = buffer.slice(0, boundary);
+                    buffer = buffer.slice(boundary + 2);
+
+                    let name = 'message';
+                    const dataLines = [];
+                    rawEvent.split('\n').forEach(line => {
+                        if(line.startsWith('event:')) name = line.slice(6).trim();
+                        else if(line.startsWith('data:')) dataLines.push(line.slice(5));
+                    });
+                    onEvent(name, dataLines.join('\n'));
+                }
+            }
+            return {success: true, status: response.status};
+        }catch(e){
+            // No status means the request never got an answer; with one, the stream broke midway
+            return {success: false, status: response?.status, error: e.message};
+        }
+    }
+
+    // A null loadingText loads in the background, without the overlay
     async getRequest(url, requireAuth = false, loadingText = 'Loading...'){
-        window.LoadingOverlay.show(loadingText);
+        if(loadingText) window.LoadingOverlay.show(loadingText);
          const headers = requireAuth ? this.auth.getAuthHeaders() : {
             'Content-Type': 'application/json'
         };
@@ -56,7 +104,7 @@ class ApiCaller{
         }catch(e){
             return {success: false, error: e.message};
         }finally{
-            window.LoadingOverlay.hide();
+            if(loadingText) window.LoadingOverlay.hide();
         }
     }
 }
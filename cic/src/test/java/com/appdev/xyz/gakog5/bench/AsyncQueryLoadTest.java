@@ -0,0 +1,96 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.service.auth.SessionService;
+import com.appdev.xyz.gakog5.support.EmbeddedApp;
+import com.appdev.xyz.gakog5.support.StubCompletionServer;
+
+/**
+ * Boots the app with a fixed, small Tomcat worker pool and a stub LLM with a fixed latency,
+ * then sends batches of concurrent questions to /api/chat/process-query and reports how long
+ * each batch takes. While a question waits on the LLM it holds no worker, so a batch of any size
+ * finishes in about one LLM latency; a blocking handler needs one worker per question and takes
+ * batch / workers rounds.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.AsyncQueryLoadTest
+ */
+public class AsyncQueryLoadTest {
+
+    private static final long STUB_LATENCY_MS = 1000;
+    private static final int WORKERS = 16;
+    private static final int[] IN_FLIGHT = {16, 64, 256, 512};
+
+    public static void main(String[] args) throws Exception {
+        try(StubCompletionServer stub = new StubCompletionServer(0, STUB_LATENCY_MS).start();
+            EmbeddedApp app = EmbeddedApp.start(stub.url(),
+                "server.tomcat.threads.max=" + WORKERS,
+                "server.tomcat.threads.min-spare=" + WORKERS,
+                // Only the worker pool should limit this run
+                "chat.scheduler.max-concurrent=10000",
+                "llm.limit.initial=10000",
+                "llm.limit.max=10000",
+                "llm.hedge.enabled=false")){
+            String baseUrl = app.baseUrl();
+            String token = app.bean(SessionService.class)
+                .updateOrCreateSession(app.createUser("load@test.local", "password", UserRole.STUDENT))
+                .getAccessToken().getValue();
+            Long categoryId = app.createCategory("Library",
+                "The library is open from 8am to 8pm on weekdays and 9am to 5pm on Saturdays.", null).getId();
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            System.out.printf("stub latency %d ms, %d Tomcat workers%n", STUB_LATENCY_MS, WORKERS);
+            System.out.printf("%10s %10s %10s %12s %10s %10s%n",
+                "in flight", "answered", "wall ms", "questions/s", "p50 ms", "p95 ms");
+            int asked = 0;
+            for(int inFlight : IN_FLIGHT){
+                List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+                List<CompletableFuture<HttpResponse<String>>> questions = new ArrayList<>();
+                long start = System.nanoTime();
+                for(int i = 0; i < inFlight; i++){
+                    // Distinct questions, so none is answered from the cache or coalesced
+                    String body = "{\"question\":\"When does the library open? #" + asked++ + "\",\"categoryId\":" + categoryId + "}";
+                    long sent = System.nanoTime();
+                    questions.add(http.sendAsync(post(baseUrl + "/api/chat/process-query", token, body),
+                            HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, e) -> latencies.add(System.nanoTime() - sent)));
+                }
+                int answered = 0;
+                for(CompletableFuture<HttpResponse<String>> question : questions){
+                    if(question.get(120, TimeUnit.SECONDS).statusCode() == 200) answered++;
+                }
+                long wall = System.nanoTime() - start;
+
+                System.out.printf("%10d %10s %10.0f %12.1f %10.0f %10.0f%n", inFlight, answered + "/" + inFlight,
+                    wall / 1e6, answered / (wall / 1e9), percentile(latencies, 0.50), percentile(latencies, 0.95));
+            }
+        }
+        System.exit(0);
+    }
+
+    private static HttpRequest post(String url, String token, String body){
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofSeconds(120))
+            .header("Authorization", "Bearer " + token)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    }
+
+    private static double percentile(List<Long> latencies, double p){
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(p * sorted.size()))) / 1e6;
+    }
+}
@@ -0,0 +1,140 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+import com.appdev.xyz.gakog5.service.llm.HttpChatCompletionClient;
+import com.appdev.xyz.gakog5.support.StubCompletionServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Throughput of the pooled async client against the old blocking RestTemplate path
+ * (one thread per question, capped at Tomcat's default 200 workers).
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.ChatCompletionClientBenchmark
+ */
+public class ChatCompletionClientBenchmark {
+
+    private static final int[] CONCURRENCY = {50, 200, 1000};
+    private static final int ROUNDS = 5;
+    private static final long STUB_LATENCY_MS = 250;
+    private static final int TOMCAT_THREADS = 200;
+
+    public static void main(String[] args) throws Exception {
+        try(StubCompletionServer stub = new StubCompletionServer(0, STUB_LATENCY_MS).start()){
+            // The stub is plaintext HTTP/1.1; production negotiates HTTP/2 over TLS
+            HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(3))
+                .build();
+            HttpChatCompletionClient client = new HttpChatCompletionClient(httpClient, new ObjectMapper(),
+                stub.url(), "bench", Duration.ofSeconds(30), Duration.ofSeconds(45));
+            RestTemplate restTemplate = new RestTemplate();
+
+            runAsync(client, 50); // warm-up
+            runBlocking(restTemplate, stub.url(), 50);
+
+            System.out.printf("stub latency %d ms, %d rounds per level%n", STUB_LATENCY_MS, ROUNDS);
+            System.out.printf("%-12s %-8s %12s %10s %10s%n", "client", "conc", "req/s", "p50 ms", "p99 ms");
+            for(int concurrency : CONCURRENCY){
+                print("async-pool", concurrency, runAsync(client, concurrency));
+                print("blocking", concurrency, runBlocking(restTemplate, stub.url(), concurrency));
+            }
+        }
+    }
+
+    private static Result runAsync(HttpChatCompletionClient client, int concurrency) throws InterruptedException {
+        int total = concurrency * ROUNDS;
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int i = 0; i < total; i++){
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            futures.add(client.complete(request()).whenComplete((c, e) -> {
+                latencies.add(System.nanoTime() - sent);
+                inFlight.release();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        return new Result(total, System.nanoTime() - start, latencies);
+    }
+
+    private static Result runBlocking(RestTemplate restTemplate, String url, int concurrency) throws InterruptedException {
+        int total = concurrency * ROUNDS;
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(concurrency, TOMCAT_THREADS));
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int i = 0; i < total; i++){
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            futures.add(CompletableFuture.runAsync(() -> {
+                try{
+                    restTemplate.exchange(url, HttpMethod.POST, legacyEntity(), Map.class);
+                }finally{
+                    latencies.add(System.nanoTime() - sent);
+                    inFlight.release();
+                }
+            }, workers));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        workers.shutdown();
+        return new Result(total, System.nanoTime() - start, latencies);
+    }
+
+    private static ChatCompletionRequest request(){
+        return ChatCompletionRequest.builder()
+            .model("stub-model")
+            .messages(List.of(ChatMessage.user("What are the library opening hours?")))
+            .maxTokens(1000)
+            .temperature(0.7)
+            .build();
+    }
+
+    private static HttpEntity<Map<String, Object>> legacyEntity(){
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", "stub-model");
+        body.put("messages", List.of(Map.of("role", "user", "content", "What are the library opening hours?")));
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static void print(String name, int concurrency, Result result){
+        System.out.printf("%-12s %-8d %12.1f %10.1f %10.1f%n", name, concurrency,
+            result.throughput(), result.percentile(0.50), result.percentile(0.99));
+    }
+
+    private record Result(int requests, long elapsedNanos, List<Long> latencies) {
+        double throughput(){
+            return requests / (elapsedNanos / 1e9);
+        }
+
+        double percentile(double p){
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(p * sorted.size()))) / 1e6;
+        }
+    }
+}
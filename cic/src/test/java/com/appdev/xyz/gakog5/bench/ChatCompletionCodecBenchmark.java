@@ -0,0 +1,186 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+import com.appdev.xyz.gakog5.service.llm.ChatCompletionCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * CPU time and allocation per call of the typed/streaming wire format against the old
+ * HashMap request and Map response path, for a request body, a response body and a stream chunk.
+ * Allocation is read from the thread's allocated-bytes counter, so the numbers are per
+ * operation on one thread after warm-up.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.ChatCompletionCodecBenchmark
+ */
+public class ChatCompletionCodecBenchmark {
+
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+    private static final int ROUNDS = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ChatCompletionCodec CODEC = new ChatCompletionCodec(MAPPER);
+
+    // Shaped like a Groq response: the fields we read plus the ones we never look at
+    private static final String ANSWER = "The enrollment period for the second semester runs from January 6 to January 17. "
+        .repeat(8);
+    private static final byte[] RESPONSE = ("""
+        {"id":"chatcmpl-9f1c2b7e-4d3a-4b8e-9a51-0c6f1e2d3b4a","object":"chat.completion","created":1760000000,
+        "model":"llama-3.1-8b-instant","choices":[{"index":0,"message":{"role":"assistant","content":"%s"},
+        "logprobs":null,"finish_reason":"stop"}],"usage":{"queue_time":0.021,"prompt_tokens":812,"prompt_time":0.04,
+        "completion_tokens":176,"completion_time":0.21,"total_tokens":988,"total_time":0.25},
+        "usage_breakdown":null,"system_fingerprint":"fp_0f5c75a5a9","x_groq":{"id":"req_01k7abcd"},"service_tier":"on_demand"}
+        """.formatted(ANSWER)).getBytes();
+    private static final String CHUNK = """
+        {"id":"chatcmpl-9f1c2b7e","object":"chat.completion.chunk","created":1760000000,"model":"llama-3.1-8b-instant",\
+        "system_fingerprint":"fp_0f5c75a5a9","choices":[{"index":0,"delta":{"content":" semester"},"logprobs":null,\
+        "finish_reason":null}]}""";
+
+    public static void main(String[] args) throws Exception {
+        ChatCompletionRequest request = request();
+        check(request);
+
+        System.out.printf("%-10s %-8s %12s %14s%n", "payload", "path", "ns/op", "bytes/op");
+        for(int round = 0; round < ROUNDS; round++){
+            run("request", "map", () -> writeWithMaps(request));
+            run("request", "typed", () -> write(request));
+            run("response", "map", () -> readWithMaps(RESPONSE));
+            run("response", "stream", () -> read(RESPONSE));
+            run("chunk", "tree", () -> readChunkWithTree(CHUNK));
+            run("chunk", "stream", () -> readChunk(CHUNK));
+            System.out.println();
+        }
+    }
+
+    private static void run(String payload, String path, Supplier<Object> operation){
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Object sink = null;
+        for(int i = 0; i < WARMUP; i++) sink = operation.get();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for(int i = 0; i < ITERATIONS; i++) sink = operation.get();
+        long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.printf("%-10s %-8s %12.0f %14.0f%s%n", payload, path, (double) cpu / ITERATIONS,
+            (double) allocated / ITERATIONS, sink == null ? " (no result)" : "");
+    }
+
+    // Both paths must agree before their costs mean anything
+    private static void check(ChatCompletionRequest request) throws Exception {
+        if(!MAPPER.readTree(writeWithMaps(request)).equals(MAPPER.readTree(write(request)))){
+            throw new IllegalStateException("Request bodies differ");
+        }
+        ChatCompletion old = readWithMaps(RESPONSE);
+        ChatCompletion typed = read(RESPONSE);
+        if(!old.getContent().equals(typed.getContent()) || !old.getModel().equals(typed.getModel())
+                || old.getPromptTokens() != typed.getPromptTokens() || old.getCompletionTokens() != typed.getCompletionTokens()){
+            throw new IllegalStateException("Responses differ");
+        }
+        if(!readChunkWithTree(CHUNK).equals(readChunk(CHUNK))){
+            throw new IllegalStateException("Chunks differ");
+        }
+    }
+
+    private static byte[] write(ChatCompletionRequest request){
+        try{
+            return CODEC.write(request, false);
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ChatCompletion read(byte[] body){
+        try{
+            return CODEC.read(body, 200);
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readChunk(String data){
+        try{
+            return CODEC.readChunk(data).delta();
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The request body as HttpChatCompletionClient used to build it
+    private static byte[] writeWithMaps(ChatCompletionRequest request){
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", request.getModel());
+        List<Map<String, String>> messages = new ArrayList<>();
+        for(ChatMessage m : request.getMessages()){
+            Map<String, String> message = new HashMap<>();
+            message.put("role", m.getRole());
+            message.put("content", m.getContent());
+            messages.add(message);
+        }
+        requestBody.put("messages", messages);
+        requestBody.put("max_tokens", request.getMaxTokens());
+        requestBody.put("temperature", request.getTemperature());
+        try{
+            return MAPPER.writeValueAsBytes(requestBody);
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The response as HttpChatCompletionClient used to read it
+    @SuppressWarnings("unchecked")
+    private static ChatCompletion readWithMaps(byte[] responseBody){
+        try{
+            Map<String, Object> body = MAPPER.readValue(responseBody, Map.class);
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) body.get("choices");
+            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+            Map<String, Object> usage = (Map<String, Object>) body.get("usage");
+            return ChatCompletion.builder()
+                .content(message != null && message.get("content") != null ? message.get("content").toString().trim() : null)
+                .model((String) body.get("model"))
+                .promptTokens(usage != null ? ((Number) usage.getOrDefault("prompt_tokens", 0)).intValue() : 0)
+                .completionTokens(usage != null ? ((Number) usage.getOrDefault("completion_tokens", 0)).intValue() : 0)
+                .build();
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A stream chunk as CompletionStreamSubscriber used to read it
+    private static String readChunkWithTree(String data){
+        try{
+            JsonNode chunk = MAPPER.readTree(data);
+            JsonNode delta = chunk.path("choices").path(0).path("delta").path("content");
+            return delta.isTextual() ? delta.asText() : null;
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ChatCompletionRequest request(){
+        String context = "Second semester enrollment opens on January 6 and closes on January 17. ".repeat(30);
+        return ChatCompletionRequest.builder()
+            .model("llama-3.1-8b-instant")
+            .messages(List.of(
+                ChatMessage.system("You are the campus information assistant. Answer only from the information given."),
+                ChatMessage.user("When does enrollment start?"),
+                ChatMessage.assistant("Enrollment starts on January 6."),
+                ChatMessage.user("Information:\n" + context + "\n\nQuestion: And when does it close?")))
+            .maxTokens(1000)
+            .temperature(0.7)
+            .build();
+    }
+}
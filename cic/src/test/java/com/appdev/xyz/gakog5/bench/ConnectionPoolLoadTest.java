@@ -0,0 +1,129 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.service.auth.SessionService;
+import com.appdev.xyz.gakog5.support.EmbeddedApp;
+import com.appdev.xyz.gakog5.support.StubCompletionServer;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Boots the app on H2 with a slow stub LLM and a 10-connection pool, keeps more questions in
+ * flight than the pool has connections, and meanwhile times a cheap DB-backed endpoint
+ * (the chat list). Runs once with open-in-view on (connection pinned for the whole request)
+ * and once with the shipped default (off) to show the pool no longer saturates.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.ConnectionPoolLoadTest
+ */
+public class ConnectionPoolLoadTest {
+
+    private static final long STUB_LATENCY_MS = 2000;
+    private static final int POOL_SIZE = 10;
+    private static final int QUESTIONS = 40;
+    private static final int LIST_CALLS = 20;
+
+    public static void main(String[] args) throws Exception {
+        try(StubCompletionServer stub = new StubCompletionServer(0, STUB_LATENCY_MS).start()){
+            System.out.printf("stub latency %d ms, pool %d, %d concurrent questions, %d chat-list calls%n",
+                STUB_LATENCY_MS, POOL_SIZE, QUESTIONS, LIST_CALLS);
+            System.out.printf("%-14s %8s %8s %10s %12s %12s %8s%n",
+                "open-in-view", "peak act", "peak wait", "answered", "list p50 ms", "list p95 ms", "list err");
+            run(stub, true);
+            run(stub, false);
+        }
+        System.exit(0);
+    }
+
+    private static void run(StubCompletionServer stub, boolean openInView) throws Exception {
+        try(EmbeddedApp app = EmbeddedApp.start(stub.url(),
+                "spring.jpa.open-in-view=" + openInView,
+                "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "spring.datasource.hikari.connection-timeout=3000")){
+            String baseUrl = app.baseUrl();
+            String token = app.bean(SessionService.class)
+                .updateOrCreateSession(app.createUser("load@test.local", "password", UserRole.STUDENT))
+                .getAccessToken().getValue();
+            Long categoryId = app.createCategory("Library",
+                "The library is open from 8am to 8pm on weekdays and 9am to 5pm on Saturdays.", null).getId();
+            HikariPoolMXBean pool = ((HikariDataSource) app.bean(DataSource.class)).getHikariPoolMXBean();
+
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            AtomicInteger peakActive = new AtomicInteger();
+            AtomicInteger peakWaiting = new AtomicInteger();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> {
+                peakActive.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                peakWaiting.accumulateAndGet(pool.getThreadsAwaitingConnection(), Math::max);
+            }, 0, 10, TimeUnit.MILLISECONDS);
+
+            List<CompletableFuture<HttpResponse<String>>> questions = new ArrayList<>();
+            for(int i = 0; i < QUESTIONS; i++){
+                String body = "{\"question\":\"When does the library open? #" + i + "\",\"categoryId\":" + categoryId + "}";
+                questions.add(http.sendAsync(post(baseUrl + "/api/chat/process-query", token, body),
+                    HttpResponse.BodyHandlers.ofString()));
+            }
+
+            // Let the questions reach the LLM, then time the chat list while they wait on it
+            Thread.sleep(STUB_LATENCY_MS / 4);
+            List<Long> listLatencies = new ArrayList<>();
+            int listErrors = 0;
+            for(int i = 0; i < LIST_CALLS; i++){
+                long start = System.nanoTime();
+                HttpResponse<String> response = http.send(get(baseUrl + "/api/chat/getAllByUser", token),
+                    HttpResponse.BodyHandlers.ofString());
+                listLatencies.add(System.nanoTime() - start);
+                if(response.statusCode() != 200) listErrors++;
+            }
+
+            int answered = 0;
+            for(CompletableFuture<HttpResponse<String>> question : questions){
+                if(question.get(60, TimeUnit.SECONDS).statusCode() == 200) answered++;
+            }
+            sampler.shutdownNow();
+
+            System.out.printf("%-14s %8d %8d %10s %12.1f %12.1f %8d%n", openInView,
+                peakActive.get(), peakWaiting.get(), answered + "/" + QUESTIONS,
+                percentile(listLatencies, 0.50), percentile(listLatencies, 0.95), listErrors);
+        }
+    }
+
+    private static HttpRequest post(String url, String token, String body){
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofSeconds(60))
+            .header("Authorization", "Bearer " + token)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    }
+
+    private static HttpRequest get(String url, String token){
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofSeconds(60))
+            .header("Authorization", "Bearer " + token)
+            .GET()
+            .build();
+    }
+
+    private static double percentile(List<Long> latencies, double p){
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(p * sorted.size()))) / 1e6;
+    }
+}
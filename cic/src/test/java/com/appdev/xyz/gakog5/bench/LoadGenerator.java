@@ -0,0 +1,301 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.appdev.xyz.gakog5.entity.user.Admin;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.support.Args;
+import com.appdev.xyz.gakog5.support.EmbeddedApp;
+import com.appdev.xyz.gakog5.support.StubCompletionServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Closed-loop load test of the chat API. Each virtual user signs in, then works through a
+ * session of process-query, getAllByUser and category/getAll calls with think time between
+ * them, and signs in again. An optional admin user edits a category now and then. Prints
+ * throughput and p50/p95/p99 per endpoint.
+ *
+ * By default it boots the app on H2 against {@link StubCompletionServer} and seeds its own
+ * accounts and categories:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.LoadGenerator
+ *     -Dexec.args="--users=50 --duration-s=60 --median-ms=800 --sigma=0.5 --error-rate=0.01"
+ * Add --rate-capacity and --rate-per-minute to run with the per-user rate limit on.
+ *
+ * Against a running app (started with GROQ_API_URL pointing at a stub), pass one account per
+ * virtual user, since signing in rotates that account's token:
+ *     -Dexec.args="--base-url=http://localhost:8081 --students=a@x.com:pw,b@x.com:pw --admin=admin@x.com:pw"
+ */
+public class LoadGenerator {
+
+    private static final String[] QUESTIONS = {
+        "What are the library opening hours?", "How do I enroll in a class?", "When is the tuition deadline?",
+        "How can I request a refund?", "Where is the registrar's office?", "How do I apply for a scholarship?",
+        "What documents do I need for enrollment?", "Can I borrow books during exams?", "How are grades computed?",
+        "Who do I contact about my schedule?"
+    };
+
+    private final Args options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private String baseUrl;
+    private List<Long> categoryIds = List.of();
+
+    private LoadGenerator(Args options){
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(Args.parse(args)).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        List<String[]> students = new ArrayList<>();
+        String[] admin = null;
+
+        if(options.has("base-url")){
+            baseUrl = options.get("base-url", null);
+            for(String account : options.get("students", "").split(",")){
+                if(!account.isBlank()) students.add(account.split(":", 2));
+            }
+            if(options.has("admin")) admin = options.get("admin", null).split(":", 2);
+            runLoad(students, admin);
+            return;
+        }
+
+        long median = options.getLong("median-ms", 800);
+        try(StubCompletionServer stub = new StubCompletionServer(0, median)
+                .latency(median, options.getDouble("sigma", 0.5))
+                .tokensPerSecond(options.getDouble("tokens-per-second", 250))
+                .answerTokens(options.getInt("answer-tokens", 120))
+                .errorRate(options.getDouble("error-rate", 0), options.getInt("error-status", 500))
+                .start();
+            EmbeddedApp app = EmbeddedApp.start(stub.url(), rateLimitProperties())){
+            baseUrl = app.baseUrl();
+            for(int i = 0; i < options.getInt("users", 50); i++){
+                String email = "student" + i + "@load.test";
+                app.createUser(email, "password", UserRole.STUDENT);
+                students.add(new String[]{email, "password"});
+            }
+            Admin createdBy = app.createAdmin("admin@load.test", "password");
+            admin = new String[]{"admin@load.test", "password"};
+            for(String name : new String[]{"Library", "Enrollment", "Finance"}){
+                app.createCategory(name, categoryContent(name), createdBy);
+            }
+            runLoad(students, admin);
+            System.out.printf("stub: %d completions, %d injected errors%n", stub.requestCount(), stub.errorCount());
+        }
+    }
+
+    // Per-user rate limiting is off in the embedded app unless asked for
+    private String[] rateLimitProperties(){
+        List<String> properties = new ArrayList<>();
+        if(options.has("rate-capacity")) properties.add("chat.rate.capacity=" + options.get("rate-capacity", null));
+        if(options.has("rate-per-minute")) properties.add("chat.rate.refill-per-minute=" + options.get("rate-per-minute", null));
+        return properties.toArray(String[]::new);
+    }
+
+    private void runLoad(List<String[]> students, String[] admin) throws Exception {
+        if(students.isEmpty()) throw new IllegalArgumentException("No student accounts to drive the load with");
+        long durationMs = options.getLong("duration-s", 30) * 1000;
+        long thinkMs = options.getLong("think-ms", 200);
+        int sessionLength = options.getInt("session-length", 20);
+
+        categoryIds = fetchCategoryIds(signIn(students.get(0)));
+        System.out.printf("%d virtual users, %d s, think %d ms, %d categories, target %s%n",
+            students.size(), durationMs / 1000, thinkMs, categoryIds.size(), baseUrl);
+
+        long deadline = System.currentTimeMillis() + durationMs;
+        long start = System.nanoTime();
+        ExecutorService users = Executors.newFixedThreadPool(students.size() + 1);
+        for(String[] student : students){
+            users.submit(() -> studentLoop(student, deadline, thinkMs, sessionLength));
+        }
+        if(admin != null){
+            String[] account = admin;
+            users.submit(() -> adminLoop(account, deadline, options.getLong("admin-interval-ms", 10000)));
+        }
+        users.shutdown();
+        users.awaitTermination(durationMs + 120_000, TimeUnit.MILLISECONDS);
+        report((System.nanoTime() - start) / 1e9);
+    }
+
+    private void studentLoop(String[] account, long deadline, long thinkMs, int sessionLength){
+        Random random = ThreadLocalRandom.current();
+        while(System.currentTimeMillis() < deadline){
+            String token = signIn(account);
+            if(token == null){
+                pause(1000);
+                continue;
+            }
+            String chatId = null;
+            for(int i = 0; i < sessionLength && System.currentTimeMillis() < deadline; i++){
+                double roll = random.nextDouble();
+                if(roll < 0.5){
+                    chatId = ask(token, random.nextDouble() < 0.7 ? chatId : null, random);
+                }else if(roll < 0.8){
+                    call("chat/getAllByUser", get("/api/chat/getAllByUser", token));
+                }else{
+                    call("category/getAll", get("/api/category/getAll", token));
+                }
+                pause((long) (-thinkMs * Math.log(1 - random.nextDouble())));
+            }
+        }
+    }
+
+    private void adminLoop(String[] account, long deadline, long intervalMs){
+        String token = signIn(account);
+        while(token != null && System.currentTimeMillis() + intervalMs < deadline){
+            pause(intervalMs);
+            Long id = categoryIds.get(ThreadLocalRandom.current().nextInt(categoryIds.size()));
+            String body = "{\"id\":" + id + ",\"content\":" + quote(categoryContent("Edited " + UUID.randomUUID())) + "}";
+            call("category/update", post("/api/category/update", token, body));
+        }
+    }
+
+    private String signIn(String[] account){
+        String body = "{\"email\":" + quote(account[0]) + ",\"password\":" + quote(account[1]) + "}";
+        JsonNode response = call("auth/sign-in", post("/api/auth/sign-in", null, body));
+        return response != null ? response.path("data").path("session").path("accessToken").asText(null) : null;
+    }
+
+    private String ask(String token, String chatId, Random random){
+        StringBuilder body = new StringBuilder("{\"question\":")
+            .append(quote(QUESTIONS[random.nextInt(QUESTIONS.length)]));
+        if(!categoryIds.isEmpty()) body.append(",\"categoryId\":").append(categoryIds.get(random.nextInt(categoryIds.size())));
+        if(chatId != null) body.append(",\"id\":").append(quote(chatId));
+        body.append('}');
+        JsonNode response = call("chat/process-query", post("/api/chat/process-query", token, body.toString()));
+        return response != null ? response.path("data").path("id").asText(chatId) : chatId;
+    }
+
+    private List<Long> fetchCategoryIds(String token){
+        List<Long> ids = new ArrayList<>();
+        if(token == null) return ids;
+        JsonNode response = call("category/getAll", get("/api/category/getAll", token));
+        if(response != null){
+            response.path("data").forEach(category -> ids.add(category.path("id").asLong()));
+        }
+        return ids;
+    }
+
+    private JsonNode call(String name, HttpRequest request){
+        Endpoint endpoint = endpoints.computeIfAbsent(name, n -> new Endpoint());
+        long start = System.nanoTime();
+        try{
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            endpoint.record(System.nanoTime() - start, response.statusCode() / 100 == 2);
+            return response.statusCode() / 100 == 2 ? objectMapper.readTree(response.body()) : null;
+        }catch(Exception e){
+            endpoint.record(System.nanoTime() - start, false);
+            return null;
+        }
+    }
+
+    private HttpRequest get(String path, String token){
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Authorization", "Bearer " + token)
+            .GET()
+            .build();
+    }
+
+    private HttpRequest post(String path, String token, String body){
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+        if(token != null) builder.header("Authorization", "Bearer " + token);
+        return builder.build();
+    }
+
+    private void report(double seconds){
+        System.out.printf("%-20s %8s %7s %9s %9s %9s %9s %9s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        Endpoint total = new Endpoint();
+        for(Map.Entry<String, Endpoint> e : new TreeMap<>(endpoints).entrySet()){
+            print(e.getKey(), e.getValue(), seconds);
+            total.addAll(e.getValue());
+        }
+        print("total", total, seconds);
+    }
+
+    private static void print(String name, Endpoint endpoint, double seconds){
+        List<Long> sorted = endpoint.sorted();
+        System.out.printf("%-20s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, sorted.size(), endpoint.errors,
+            sorted.size() / seconds, percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+            percentile(sorted, 1.0));
+    }
+
+    private static double percentile(List<Long> sorted, double p){
+        if(sorted.isEmpty()) return 0;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(p * sorted.size()))) / 1e6;
+    }
+
+    private static String categoryContent(String topic){
+        StringBuilder content = new StringBuilder();
+        for(int i = 0; i < 40; i++){
+            content.append(topic).append(" policy ").append(i)
+                .append(": students should check the office schedule, bring their ID and submit forms before the deadline.\n\n");
+        }
+        return content.toString();
+    }
+
+    private String quote(String value){
+        try{
+            return objectMapper.writeValueAsString(value);
+        }catch(Exception e){
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void pause(long ms){
+        try{
+            Thread.sleep(ms);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Endpoint {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private volatile int errors;
+
+        synchronized void record(long nanos, boolean ok){
+            latencies.add(nanos);
+            if(!ok) errors++;
+        }
+
+        synchronized void addAll(Endpoint other){
+            latencies.addAll(other.latencies);
+            errors += other.errors;
+        }
+
+        List<Long> sorted(){
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.appdev.xyz.gakog5.bench;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.Bm25Segment;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.ContentChunker;
+import com.appdev.xyz.gakog5.service.chatbot.retrieval.ScoredChunk;
+import com.appdev.xyz.gakog5.service.llm.HttpChatCompletionClient;
+import com.appdev.xyz.gakog5.support.StubCompletionServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Prompt size and end-to-end latency with the whole category pasted into the prompt versus
+ * the top-k BM25 chunks. The stub charges prefill time per KB of request like a real model.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.bench.RetrievalPromptBenchmark
+ */
+public class RetrievalPromptBenchmark {
+
+    private static final int[] SIZES = {5 * 1024, 100 * 1024, 1024 * 1024};
+    private static final int QUESTIONS = 20;
+    private static final int TOP_K = 4;
+    private static final int FULL_CONTENT_MAX_CHARS = 6000;
+    private static final double PREFILL_MS_PER_KB = 2.0;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        String[] vocabulary = new String[3000];
+        for(int i = 0; i < vocabulary.length; i++) vocabulary[i] = word(random);
+
+        try(StubCompletionServer stub = new StubCompletionServer(0, 150).prefillMsPerKb(PREFILL_MS_PER_KB).start()){
+            HttpChatCompletionClient client = new HttpChatCompletionClient(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), new ObjectMapper(),
+                stub.url(), "bench", Duration.ofSeconds(60), Duration.ofSeconds(60));
+
+            System.out.printf("%-8s %-10s %14s %12s %12s %12s%n",
+                "size", "mode", "prompt chars", "select ms", "e2e p50 ms", "index ms");
+            for(int size : SIZES){
+                List<String> paragraphs = new ArrayList<>();
+                String content = content(random, vocabulary, size, paragraphs);
+
+                long indexStart = System.nanoTime();
+                Bm25Segment segment = Bm25Segment.build("bench", new ContentChunker(800).chunk(content));
+                double indexMs = (System.nanoTime() - indexStart) / 1e6;
+
+                List<String> questions = new ArrayList<>();
+                for(int q = 0; q < QUESTIONS; q++){
+                    String[] words = paragraphs.get(random.nextInt(paragraphs.size())).split(" ");
+                    questions.add("What does " + words[3] + " " + words[7] + " mean for " + words[11] + "?");
+                }
+
+                run(client, "full", size, questions, q -> content, indexMs);
+                run(client, "top-k", size, questions, q -> select(segment, content, q), indexMs);
+            }
+        }
+    }
+
+    private static void run(HttpChatCompletionClient client, String mode, int size, List<String> questions,
+            Function<String, String> context, double indexMs){
+        List<Double> e2e = new ArrayList<>();
+        double selectMs = 0;
+        long promptChars = 0;
+        for(String question : questions){
+            long start = System.nanoTime();
+            String prompt = "Knowledge Base Content:\n" + context.apply(question) + "\n\nUser Question: " + question;
+            selectMs += (System.nanoTime() - start) / 1e6;
+            promptChars += prompt.length();
+
+            client.complete(ChatCompletionRequest.builder()
+                .model("stub-model")
+                .messages(List.of(ChatMessage.user(prompt)))
+                .maxTokens(1000)
+                .temperature(0.7)
+                .build()).join();
+            e2e.add((System.nanoTime() - start) / 1e6);
+        }
+        e2e.sort(Comparator.naturalOrder());
+        System.out.printf("%-8s %-10s %14d %12.3f %12.1f %12.1f%n", size / 1024 + "KB", mode,
+            promptChars / questions.size(), selectMs / questions.size(), e2e.get(e2e.size() / 2), indexMs);
+    }
+
+    // Mirrors ChunkIndex.selectContext
+    private static String select(Bm25Segment segment, String content, String question){
+        if(content.length() <= FULL_CONTENT_MAX_CHARS) return content;
+        List<ScoredChunk> hits = new ArrayList<>(segment.search(question, TOP_K));
+        hits.sort(Comparator.comparingInt(ScoredChunk::ordinal));
+        return hits.stream().map(ScoredChunk::text).collect(Collectors.joining("\n\n[...]\n\n"));
+    }
+
+    private static String content(Random random, String[] vocabulary, int size, List<String> paragraphs){
+        StringBuilder content = new StringBuilder();
+        while(content.length() < size){
+            StringBuilder paragraph = new StringBuilder();
+            int sentences = 3 + random.nextInt(4);
+            for(int s = 0; s < sentences; s++){
+                int words = 8 + random.nextInt(10);
+                for(int w = 0; w < words; w++){
+                    if(w > 0) paragraph.append(' ');
+                    paragraph.append(vocabulary[(int) Math.abs(random.nextGaussian() * vocabulary.length / 3) % vocabulary.length]);
+                }
+                paragraph.append(". ");
+            }
+            paragraphs.add(paragraph.toString().trim());
+            content.append(paragraph.toString().trim()).append("\n\n");
+        }
+        return content.toString();
+    }
+
+    private static String word(Random random){
+        int length = 3 + random.nextInt(7);
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < length; i++) sb.append((char) ('a' + random.nextInt(26)));
+        return sb.toString();
+    }
+}
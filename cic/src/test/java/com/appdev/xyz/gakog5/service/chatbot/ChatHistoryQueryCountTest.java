@@ -0,0 +1,168 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.appdev.xyz.gakog5.CicApplication;
+import com.appdev.xyz.gakog5.dto.chatbot.ChatResponse;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.chatbot.Chat;
+import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+import com.appdev.xyz.gakog5.repository.user.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The chat list endpoints must take the same number of SQL statements however many chats
+ * there are. Counted with Hibernate statistics against an in-memory H2 database.
+ */
+@SpringBootTest(classes = CicApplication.class, properties = {
+    "spring.main.banner-mode=off",
+    "spring.devtools.restart.enabled=false",
+    "spring.datasource.url=jdbc:h2:mem:chat-history;MODE=MySQL;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.mail.host=localhost",
+    "groq.api.url=http://localhost:9/unused",
+    "groq.api.key=test"
+})
+class ChatHistoryQueryCountTest {
+
+    private static final int MESSAGES_PER_CHAT = 3;
+
+    @DynamicPropertySource
+    static void vectorIndex(DynamicPropertyRegistry registry) throws IOException {
+        String path = Files.createTempFile("vector-index", ".bin").toString();
+        registry.add("nlp.vector-index.path", () -> path);
+    }
+
+    @Autowired
+    private ChatService chatService;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private User other;
+    private List<Category> categories;
+    private int chats;
+
+    @BeforeEach
+    void seedAccounts(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        messageRepository.deleteAll();
+        chatRepository.deleteAll();
+        user = userRepository.save(User.builder().firstName("History").lastName("Test")
+            .email("history-" + System.nanoTime() + "@test.local").password("x").role(UserRole.STUDENT).build());
+        other = userRepository.save(User.builder().firstName("Other").lastName("Test")
+            .email("other-" + System.nanoTime() + "@test.local").password("x").role(UserRole.STUDENT).build());
+        categories = categoryRepository.saveAll(List.of(
+            Category.builder().name("Library").content("The library is open from 8am to 8pm.").build(),
+            Category.builder().name("Registrar").content("Transcripts are requested at the registrar.").build()));
+        chats = 0;
+    }
+
+    @Test
+    void userChatListDoesNotGrowWithChats(){
+        addChats(10);
+        long few = count(() -> chatService.convertAllToChatResponse(chatService.getAllChatsByUser(user)));
+        addChats(190);
+        long many = count(() -> chatService.convertAllToChatResponse(chatService.getAllChatsByUser(user)));
+        assertEquals(few, many);
+    }
+
+    @Test
+    void everyChatListDoesNotGrowWithChats(){
+        addChats(10);
+        long few = count(chatService::getAllChatResponses);
+        addChats(190);
+        long many = count(chatService::getAllChatResponses);
+        assertEquals(few, many);
+    }
+
+    @Test
+    void chatSummaryPageDoesNotGrowWithChats(){
+        addChats(10);
+        long few = count(() -> chatService.getChatSummaries(user, null, 20).getItems());
+        addChats(190);
+        long many = count(() -> chatService.getChatSummaries(user, null, 20).getItems());
+        assertEquals(few, many);
+    }
+
+    // Shows the count can catch the old query-per-chat loading
+    @Test
+    void loadingMessagesPerChatDoesGrow(){
+        addChats(10);
+        long few = count(this::perChat);
+        addChats(190);
+        long many = count(this::perChat);
+        assertTrue(many > few, few + " statements for 10 chats, " + many + " for 200");
+    }
+
+    private List<Chat> perChat(){
+        List<Chat> list = chatService.getAll();
+        list.forEach(messageRepository::findByChat);
+        return list;
+    }
+
+    private long count(Supplier<?> work){
+        statistics.clear();
+        Object result = work.get();
+        long statements = statistics.getPrepareStatementCount();
+        // A low count only means something if every message was loaded
+        if(result instanceof List<?> list){
+            for(Object item : list){
+                if(item instanceof ChatResponse response) assertEquals(MESSAGES_PER_CHAT, response.getMessages().size());
+            }
+        }
+        return statements;
+    }
+
+    private void addChats(int count){
+        List<Chat> added = new ArrayList<>();
+        for(int i = 0; i < count; i++, chats++){
+            added.add(Chat.builder().user(chats % 2 == 0 ? user : other).title("Chat " + chats).build());
+        }
+        chatRepository.saveAll(added);
+        List<Message> messages = new ArrayList<>();
+        for(Chat chat : added){
+            for(int j = 0; j < MESSAGES_PER_CHAT; j++){
+                messages.add(Message.builder()
+                    .chat(chat)
+                    .category(j == 0 ? null : categories.get(j % categories.size()))
+                    .userMessage("Question " + j)
+                    .botMessage("Answer " + j)
+                    .build());
+            }
+        }
+        messageRepository.saveAll(messages);
+    }
+}
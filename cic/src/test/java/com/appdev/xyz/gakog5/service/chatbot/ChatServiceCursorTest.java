@@ -0,0 +1,53 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class ChatServiceCursorTest {
+
+    private final LocalDateTime timestamp = LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_000_000);
+
+    @Test
+    void chatCursorRoundTrips(){
+        UUID id = UUID.randomUUID();
+        ChatService.Cursor cursor = ChatService.Cursor.decode(ChatService.Cursor.encode(timestamp, id));
+        assertEquals(timestamp, cursor.timestamp());
+        assertEquals(id, cursor.uuid());
+    }
+
+    @Test
+    void messageCursorRoundTrips(){
+        ChatService.Cursor cursor = ChatService.Cursor.decode(ChatService.Cursor.encode(timestamp, 42L));
+        assertEquals(timestamp, cursor.timestamp());
+        assertEquals(42L, cursor.number());
+    }
+
+    @Test
+    void cursorIsSafeInAUrl(){
+        String encoded = ChatService.Cursor.encode(timestamp, UUID.randomUUID());
+        assertFalse(encoded.matches(".*[+/=].*"), encoded);
+    }
+
+    @Test
+    void malformedCursorsAreBadRequests(){
+        assertThrows(IllegalArgumentException.class, () -> ChatService.Cursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> ChatService.Cursor.decode(encode("no separator")));
+        assertThrows(IllegalArgumentException.class, () -> ChatService.Cursor.decode(encode("yesterday|42")));
+        // A message cursor handed to the chat list, and the other way round
+        assertThrows(IllegalArgumentException.class, () -> ChatService.Cursor.decode(ChatService.Cursor.encode(timestamp, 42L)).uuid());
+        assertThrows(IllegalArgumentException.class,
+            () -> ChatService.Cursor.decode(ChatService.Cursor.encode(timestamp, UUID.randomUUID())).number());
+    }
+
+    private static String encode(String raw){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
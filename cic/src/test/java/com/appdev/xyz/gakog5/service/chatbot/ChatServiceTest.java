@@ -0,0 +1,95 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.appdev.xyz.gakog5.dto.chatbot.ChatRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatDeletionRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.ChatRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.TokenUsageRepository;
+import com.appdev.xyz.gakog5.repository.user.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChatServiceTest {
+
+    private final TokenUsageService tokenUsageService = new TokenUsageService(mock(TokenUsageRepository.class),
+        mock(UserRepository.class), mock(CategoryRepository.class), mock(PlatformTransactionManager.class),
+        "", 100, 0, new SimpleMeterRegistry());
+    private final PresetAnswerService presetAnswerService = mock(PresetAnswerService.class);
+    private final QueryScheduler queryScheduler = mock(QueryScheduler.class);
+    private final ChatService chatService = new ChatService(mock(NLPService.class), mock(ChatRepository.class),
+        mock(MessageRepository.class), mock(ChatDeletionRepository.class), mock(CategoryService.class),
+        mock(ConversationMemory.class), presetAnswerService, queryScheduler,
+        tokenUsageService, mock(AsyncTaskExecutor.class), mock(ApplicationEventPublisher.class));
+    private final User student = User.builder().id(1L).email("student@test.local").role(UserRole.STUDENT).build();
+    private final User admin = User.builder().id(2L).email("admin@test.local").role(UserRole.ADMIN).build();
+
+    @Test
+    void studentCannotSkipTheQuotaWithTheTestFlag(){
+        tokenUsageService.checkQuota(student, null);
+        tokenUsageService.record(student.getId(), null, "m",
+            ChatCompletion.builder().content("answer").promptTokens(60).completionTokens(40).build());
+
+        ChatRequest req = new ChatRequest();
+        req.setQuestion("When does the library open?");
+        req.setTest(true);
+        QueryRejectedException e = assertThrows(QueryRejectedException.class, () -> chatService.processQueryAsync(req, student));
+        assertEquals(429, e.getStatusCode());
+        assertThrows(QueryRejectedException.class, () -> chatService.streamQuery(req, student, token -> {}));
+    }
+
+    @Test
+    void studentTestFlagStillGetsPresetAnswers(){
+        when(presetAnswerService.find(5L, "Library hours?")).thenReturn("8am to 8pm.");
+        ChatRequest req = testRequest();
+
+        assertEquals("8am to 8pm.", chatService.processQueryAsync(req, student).join().getAnswer());
+        verify(queryScheduler, never()).acquire(any(), anyBoolean());
+    }
+
+    @Test
+    void adminTestSkipsPresetAnswersAndJumpsTheQueue(){
+        when(presetAnswerService.find(5L, "Library hours?")).thenReturn("8am to 8pm.");
+        when(queryScheduler.acquire(any(), anyBoolean())).thenReturn(new CompletableFuture<>());
+
+        chatService.processQueryAsync(testRequest(), admin);
+        verify(presetAnswerService, never()).find(any(), any());
+        verify(queryScheduler).acquire(admin, true);
+    }
+
+    @Test
+    void onlyAdminsRunTestQueries(){
+        assertTrue(ChatService.isAdminTest(testRequest(), admin));
+        assertFalse(ChatService.isAdminTest(testRequest(), student));
+        assertFalse(ChatService.isAdminTest(new ChatRequest(), admin));
+    }
+
+    private static ChatRequest testRequest(){
+        ChatRequest req = new ChatRequest();
+        req.setQuestion("Library hours?");
+        req.setCategoryId(5L);
+        req.setTest(true);
+        return req;
+    }
+}
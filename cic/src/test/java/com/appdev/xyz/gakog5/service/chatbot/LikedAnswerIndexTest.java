@@ -0,0 +1,90 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.chatbot.Message;
+import com.appdev.xyz.gakog5.event.MessageChangedEvent;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.chatbot.MessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LikedAnswerIndexTest {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final LikedAnswerIndex index = new LikedAnswerIndex(messageRepository, categoryRepository,
+        mock(AsyncTaskExecutor.class), true, 3, 0.75, new SimpleMeterRegistry());
+    private final Category library = Category.builder().id(1L).name("Library").contentVersion("v1").build();
+
+    @Test
+    void fingerprintsAFewBitsApartAlwaysShareABand(){
+        Random random = new Random(3);
+        for(int i = 0; i < 10_000; i++){
+            long hash = random.nextLong();
+            long near = hash;
+            for(int flips = random.nextInt(LikedAnswerIndex.BANDS); flips > 0; flips--){
+                near ^= 1L << random.nextInt(64);
+            }
+            boolean shared = false;
+            for(int band = 0; band < LikedAnswerIndex.BANDS; band++){
+                shared |= LikedAnswerIndex.bandKey(band, hash) == LikedAnswerIndex.bandKey(band, near);
+            }
+            assertTrue(shared, Long.toBinaryString(hash) + " and " + Long.toBinaryString(near));
+        }
+    }
+
+    @Test
+    void bandKeysOfDifferentBandsNeverCollide(){
+        assertTrue(LikedAnswerIndex.bandKey(0, 0xabcdL) != LikedAnswerIndex.bandKey(1, 0xabcdL << 16));
+    }
+
+    @Test
+    void rewordedQuestionGetsTheLikedAnswer(){
+        like(10L, "What time does the library open?", "The library opens at 8am.", false, false);
+        assertEquals("The library opens at 8am.", index.find(library, "what time does the library open"));
+        assertNull(index.find(library, "What time does the library close?"));
+    }
+
+    @Test
+    void editedAnswersAndFollowUpsAreNotServed(){
+        like(10L, "What time does the library open?", "Edited by the student.", true, false);
+        like(11L, "Where is the library located?", "Next to the gym, as we discussed.", false, true);
+        assertNull(index.find(library, "What time does the library open?"));
+        assertNull(index.find(library, "Where is the library located?"));
+    }
+
+    @Test
+    void answersFromOlderContentAreNotServed(){
+        like(10L, "What time does the library open?", "The library opens at 8am.", false, false);
+        Category edited = Category.builder().id(1L).name("Library").contentVersion("v2").build();
+        assertNull(index.find(edited, "What time does the library open?"));
+    }
+
+    private void like(Long id, String question, String answer, boolean edited, boolean withHistory){
+        Message message = Message.builder()
+            .id(id)
+            .userMessage(question)
+            .botMessage(answer)
+            .like(true)
+            .category(library)
+            .contentVersion(library.getContentVersion())
+            .edited(edited)
+            .withHistory(withHistory)
+            .build();
+        when(messageRepository.findById(id)).thenReturn(Optional.of(message));
+        when(categoryRepository.findById(library.getId())).thenReturn(Optional.of(library));
+        index.onMessageChanged(new MessageChangedEvent(id, library.getId()));
+    }
+}
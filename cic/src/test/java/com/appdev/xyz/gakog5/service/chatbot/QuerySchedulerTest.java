@@ -0,0 +1,115 @@
+package com.appdev.xyz.gakog5.service.chatbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QuerySchedulerTest {
+
+    private final User alice = user(1L, UserRole.STUDENT);
+    private final User bob = user(2L, UserRole.STUDENT);
+    private final User admin = user(3L, UserRole.ADMIN);
+
+    private static QueryScheduler scheduler(double capacity, int maxConcurrent, int maxQueue){
+        return new QueryScheduler(capacity, 0.001, maxConcurrent, maxQueue, 30000, 2, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void userWithManyQueuedQuestionsDoesNotStarveAnother(){
+        QueryScheduler scheduler = scheduler(100, 1, 100);
+        QueryScheduler.Permit running = scheduler.acquire(alice, false).join();
+
+        List<String> names = new ArrayList<>();
+        List<CompletableFuture<QueryScheduler.Permit>> waiting = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            names.add("alice");
+            waiting.add(scheduler.acquire(alice, false));
+        }
+        names.add("bob");
+        waiting.add(scheduler.acquire(bob, false));
+
+        // One slot, so every close hands it to exactly one waiting question
+        List<String> order = new ArrayList<>();
+        running.close();
+        while(order.size() < waiting.size()){
+            int granted = -1;
+            for(int i = 0; i < waiting.size(); i++){
+                if(waiting.get(i).isDone() && names.get(i) != null) granted = i;
+            }
+            order.add(names.get(granted));
+            names.set(granted, null);
+            waiting.get(granted).join().close();
+        }
+        assertEquals(5, order.size());
+        assertTrue(order.indexOf("bob") <= 1, "bob was served at " + order.indexOf("bob") + ": " + order);
+    }
+
+    @Test
+    void adminTestQueriesGoFirst(){
+        QueryScheduler scheduler = scheduler(100, 1, 100);
+        QueryScheduler.Permit running = scheduler.acquire(alice, false).join();
+        CompletableFuture<QueryScheduler.Permit> student = scheduler.acquire(bob, false);
+        CompletableFuture<QueryScheduler.Permit> test = scheduler.acquire(admin, true);
+
+        running.close();
+        assertTrue(test.isDone());
+        assertFalse(student.isDone());
+        test.join().close();
+        assertTrue(student.isDone());
+    }
+
+    @Test
+    void emptyBucketIsRejectedRightAway(){
+        QueryScheduler scheduler = scheduler(2, 10, 100);
+        scheduler.acquire(alice, false).join().close();
+        scheduler.acquire(alice, false).join().close();
+        QueryRejectedException e = assertThrows(QueryRejectedException.class, () -> scheduler.acquire(alice, false));
+        assertEquals(429, e.getStatusCode());
+        // Another user's bucket is untouched
+        scheduler.acquire(bob, false).join().close();
+    }
+
+    @Test
+    void fullQueueIsRejected(){
+        QueryScheduler scheduler = scheduler(100, 1, 1);
+        scheduler.acquire(alice, false).join();
+        scheduler.acquire(alice, false);
+        QueryRejectedException e = assertThrows(QueryRejectedException.class, () -> scheduler.acquire(bob, false));
+        assertEquals(503, e.getStatusCode());
+    }
+
+    @Test
+    void borrowedSlotsAreFreeOnesOnlyAndReturnedOnClose(){
+        QueryScheduler scheduler = scheduler(100, 3, 100);
+        QueryScheduler.Permit permit = scheduler.acquire(alice, false).join();
+        assertEquals(2, permit.borrow(5));
+
+        CompletableFuture<QueryScheduler.Permit> next = scheduler.acquire(bob, false);
+        assertFalse(next.isDone());
+        permit.close();
+        assertTrue(next.isDone());
+
+        // Never ahead of a waiting question
+        QueryScheduler.Permit first = next.join();
+        scheduler.acquire(alice, false).join();
+        scheduler.acquire(alice, false).join();
+        scheduler.acquire(bob, false);
+        assertEquals(0, first.borrow(1));
+    }
+
+    private static User user(Long id, UserRole role){
+        return User.builder().id(id).email(id + "@test.local").role(role).build();
+    }
+}
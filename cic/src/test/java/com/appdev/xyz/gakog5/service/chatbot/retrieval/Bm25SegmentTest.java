@@ -0,0 +1,49 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class Bm25SegmentTest {
+
+    private final Bm25Segment segment = Bm25Segment.build("v1", List.of(
+        "The library is open from 8am to 8pm on weekdays.",
+        "Library cards are issued at the front desk of the library.",
+        "Tuition is paid at the cashier before enrollment.",
+        "Enrollment requires a copy of your grades and a library clearance."));
+
+    @Test
+    void bestMatchingChunkComesFirst(){
+        List<ScoredChunk> hits = segment.search("when is the library open", 4);
+        assertEquals(0, hits.get(0).ordinal());
+        for(int i = 1; i < hits.size(); i++){
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+    }
+
+    @Test
+    void chunksSharingNoTermAreLeftOut(){
+        List<ScoredChunk> hits = segment.search("where do I pay tuition", 4);
+        assertEquals(List.of(2), hits.stream().map(ScoredChunk::ordinal).toList());
+        assertTrue(segment.search("parking permit", 4).isEmpty());
+    }
+
+    @Test
+    void resultsAreCappedAtK(){
+        assertEquals(2, segment.search("library enrollment", 2).size());
+    }
+
+    @Test
+    void rareTermsWeighMoreThanCommonOnes(){
+        assertTrue(segment.idf("cashier") > segment.idf("library"));
+        assertEquals(0, segment.idf("parking"));
+    }
+
+    @Test
+    void emptySegmentFindsNothing(){
+        assertTrue(Bm25Segment.build("v0", List.of()).search("library", 3).isEmpty());
+    }
+}
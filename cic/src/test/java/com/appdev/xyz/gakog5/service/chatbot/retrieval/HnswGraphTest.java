@@ -0,0 +1,105 @@
+package com.appdev.xyz.gakog5.service.chatbot.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int POINTS = 1000;
+
+    @TempDir
+    Path dir;
+
+    private MappedVectorStore store;
+    private HnswGraph graph;
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void build() throws IOException {
+        store = new MappedVectorStore(dir.resolve("vectors.bin"), "test", DIMENSIONS);
+        graph = new HnswGraph(store, 16, 100);
+        for(int i = 0; i < POINTS; i++){
+            graph.insert(store.append(i, randomVector()));
+        }
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void findsNearlyAllTrueNearestNeighbours(){
+        int found = 0, wanted = 0;
+        for(int q = 0; q < 50; q++){
+            float[] query = randomVector();
+            Set<Integer> exact = new HashSet<>(exact(query, 10));
+            for(HnswGraph.Hit hit : graph.search(query, 10, 50, node -> true)){
+                if(exact.contains(hit.node())) found++;
+            }
+            wanted += exact.size();
+        }
+        assertTrue(found >= wanted * 0.9, "recall " + found + "/" + wanted);
+    }
+
+    @Test
+    void hitsComeMostSimilarFirst(){
+        List<HnswGraph.Hit> hits = graph.search(randomVector(), 10, 50, node -> true);
+        assertEquals(10, hits.size());
+        for(int i = 1; i < hits.size(); i++){
+            assertTrue(hits.get(i - 1).similarity() >= hits.get(i).similarity());
+        }
+    }
+
+    @Test
+    void deletedNodesAreNeverReturned(){
+        float[] query = store.read(graph.slotOf(5));
+        assertEquals(5, graph.search(query, 1, 50, node -> true).get(0).node());
+
+        graph.delete(5);
+        assertEquals(1, graph.deletedCount());
+        assertFalse(graph.search(query, 10, 50, node -> true).stream().anyMatch(hit -> hit.node() == 5));
+    }
+
+    @Test
+    void filterIsAppliedAndStillFillsK(){
+        List<HnswGraph.Hit> hits = graph.search(randomVector(), 10, 50, node -> node % 10 == 0);
+        assertEquals(10, hits.size());
+        assertTrue(hits.stream().allMatch(hit -> hit.node() % 10 == 0));
+    }
+
+    private List<Integer> exact(float[] query, int k){
+        return IntStream.range(0, graph.size()).boxed()
+            .sorted(Comparator.comparingDouble(node -> -store.dot(query, graph.slotOf(node))))
+            .limit(k)
+            .toList();
+    }
+
+    private float[] randomVector(){
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for(int i = 0; i < DIMENSIONS; i++){
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for(int i = 0; i < DIMENSIONS; i++) vector[i] /= (float) Math.sqrt(norm);
+        return vector;
+    }
+}
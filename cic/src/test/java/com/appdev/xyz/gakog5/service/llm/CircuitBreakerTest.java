@@ -0,0 +1,137 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(100).toNanos();
+    private static final long SLOW = Duration.ofSeconds(5).toNanos();
+
+    private static CircuitBreaker breaker(Duration openDuration){
+        return new CircuitBreaker(10, 5, 0.5, Duration.ofSeconds(1), 0.5, openDuration, 2);
+    }
+
+    @Test
+    void opensOnceHalfTheWindowFailed(){
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        for(int i = 0; i < 3; i++) succeed(breaker, FAST);
+        fail(breaker);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void waitsForMinimumCallsBeforeJudging(){
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        for(int i = 0; i < 4; i++) fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void slowCallsOpenItToo(){
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        for(int i = 0; i < 3; i++) succeed(breaker, FAST);
+        for(int i = 0; i < 3; i++) succeed(breaker, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void closesAfterHalfOpenTrialsSucceed(){
+        CircuitBreaker breaker = opened();
+        CircuitBreaker.Permit first = breaker.tryAcquirePermission();
+        CircuitBreaker.Permit second = breaker.tryAcquirePermission();
+        assertTrue(first.trial() && second.trial());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only halfOpenCalls trials at a time
+        assertNull(breaker.tryAcquirePermission());
+
+        breaker.onSuccess(first, FAST);
+        breaker.onSuccess(second, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNotNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void reopensWhenATrialFailsOrIsSlow(){
+        CircuitBreaker failed = opened();
+        failed.onFailure(failed.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, failed.getState());
+
+        CircuitBreaker slow = opened();
+        slow.onSuccess(slow.tryAcquirePermission(), SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, slow.getState());
+    }
+
+    @Test
+    void ignoredTrialHandsItsSlotBack(){
+        CircuitBreaker breaker = opened();
+        CircuitBreaker.Permit ignored = breaker.tryAcquirePermission();
+        assertNotNull(breaker.tryAcquirePermission());
+        assertNull(breaker.tryAcquirePermission());
+
+        breaker.onIgnored(ignored);
+        assertNotNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void callsAdmittedWhileClosedAreNotTrials(){
+        CircuitBreaker breaker = breaker(Duration.ZERO);
+        CircuitBreaker.Permit early = breaker.tryAcquirePermission();
+        for(int i = 0; i < 5; i++) fail(breaker);
+        CircuitBreaker.Permit trial = breaker.tryAcquirePermission();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Neither closes the breaker on a success nor re-opens it on a failure
+        breaker.onSuccess(early, FAST);
+        breaker.onFailure(early);
+        breaker.onIgnored(early);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(trial, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(breaker.tryAcquirePermission(), FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void trialsFromAnEarlierRoundDoNotCount(){
+        CircuitBreaker breaker = opened();
+        CircuitBreaker.Permit stale = breaker.tryAcquirePermission();
+        breaker.onFailure(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        CircuitBreaker.Permit trial = breaker.tryAcquirePermission();
+        breaker.onSuccess(stale, FAST);
+        breaker.onSuccess(trial, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    private static void succeed(CircuitBreaker breaker, long durationNanos){
+        breaker.onSuccess(breaker.tryAcquirePermission(), durationNanos);
+    }
+
+    private static void fail(CircuitBreaker breaker){
+        breaker.onFailure(breaker.tryAcquirePermission());
+    }
+
+    // Open with no wait, so the next permission check goes half-open
+    private static CircuitBreaker opened(){
+        CircuitBreaker breaker = breaker(Duration.ZERO);
+        for(int i = 0; i < 5; i++) fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
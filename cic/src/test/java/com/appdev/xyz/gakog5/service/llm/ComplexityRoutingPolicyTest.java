@@ -0,0 +1,40 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ComplexityRoutingPolicyTest {
+
+    private final ComplexityRoutingPolicy policy = new ComplexityRoutingPolicy(6, 12, 3000, 8000, 10);
+
+    private String route(String question, Map<String, Double> latency){
+        return policy.choose(new ModelRoutingPolicy.Signals(question, 2000, true, false, latency));
+    }
+
+    @Test
+    void everydayLookupsStayOffTheLargeModel(){
+        assertEquals(ModelRouter.FAST, route("What are the requirements for enrollment?", Map.of()));
+        assertEquals(ModelRouter.FAST, route("List all the library services", Map.of()));
+        assertEquals(ModelRouter.FAST, route("What is the process for dropping a subject?", Map.of()));
+    }
+
+    @Test
+    void comparisonsGoToTheLargeModel(){
+        assertEquals(ModelRouter.LARGE, route("Compare the BSIT and BSCS curriculum", Map.of()));
+        assertEquals(ModelRouter.LARGE, route("Explain the grading system", Map.of()));
+    }
+
+    @Test
+    void slowLargeModelStillGetsProbes(){
+        Map<String, Double> slow = Map.of(ModelRouter.LARGE, 20000.0);
+        int large = 0;
+        for(int i = 0; i < 100; i++){
+            if(ModelRouter.LARGE.equals(route("Compare the BSIT and BSCS curriculum", slow))) large++;
+        }
+        assertEquals(10, large);
+        assertEquals(ModelRouter.LARGE, route("Compare the BSIT and BSCS curriculum", Map.of(ModelRouter.LARGE, 3000.0)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.appdev.xyz.gakog5.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletion;
+import com.appdev.xyz.gakog5.dto.llm.ChatCompletionRequest;
+import com.appdev.xyz.gakog5.dto.llm.ChatMessage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HedgingChatCompletionClientTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final FakeEndpoint endpoint = new FakeEndpoint();
+    private final HedgingChatCompletionClient client = new HedgingChatCompletionClient(
+        List.of(new HedgingChatCompletionClient.Endpoint("only", endpoint, null)),
+        timer, true, Duration.ofMillis(1), Duration.ofSeconds(5), 1.0, new SimpleMeterRegistry());
+
+    @AfterEach
+    void stopTimer(){
+        timer.shutdownNow();
+    }
+
+    @Test
+    void streamsAreHedgedOnTheirOwnFirstTokenLatency(){
+        warm("m", false, 80);
+        warm("m", true, 2);
+
+        // Slow for a first token, quick for a full answer: only the stream is hedged
+        assertEquals(2, callsFor("m", true, 40));
+        assertEquals(1, callsFor("m", false, 40));
+    }
+
+    @Test
+    void modelsAreHedgedOnTheirOwnLatency(){
+        warm("large", false, 80);
+        warm("fast", false, 2);
+
+        assertEquals(2, callsFor("fast", false, 40));
+        assertEquals(1, callsFor("large", false, 40));
+    }
+
+    private void warm(String model, boolean stream, long millis){
+        for(int i = 0; i < 25; i++) callsFor(model, stream, millis);
+    }
+
+    // Attempts the endpoint saw for one call that takes this long
+    private int callsFor(String model, boolean stream, long millis){
+        endpoint.delayMillis = millis;
+        int before = endpoint.calls.get();
+        ChatCompletionRequest request = ChatCompletionRequest.builder()
+            .model(model)
+            .messages(List.of(ChatMessage.user("hi")))
+            .build();
+        if(stream) client.stream(request, delta -> {}).join();
+        else client.complete(request).join();
+        return endpoint.calls.get() - before;
+    }
+
+    private static final class FakeEndpoint implements ChatCompletionClient {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile long delayMillis;
+
+        @Override
+        public CompletableFuture<ChatCompletion> complete(ChatCompletionRequest request){
+            return stream(request, null);
+        }
+
+        @Override
+        public CompletableFuture<ChatCompletion> stream(ChatCompletionRequest request, Consumer<String> onDelta){
+            calls.incrementAndGet();
+            // A stream shows its token after the delay and ends right after
+            return CompletableFuture.supplyAsync(() -> {
+                if(onDelta != null) onDelta.accept("answer");
+                return ChatCompletion.builder().content("answer").model(request.getModel()).build();
+            }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+}
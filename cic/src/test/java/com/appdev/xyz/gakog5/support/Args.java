@@ -0,0 +1,47 @@
+package com.appdev.xyz.gakog5.support;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * --key=value command line options for the benchmark and load-test mains.
+ */
+public final class Args {
+
+    private final Map<String, String> options;
+
+    private Args(Map<String, String> options){
+        this.options = options;
+    }
+
+    public static Args parse(String[] args){
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args){
+            if(!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if(eq < 0) options.put(arg.substring(2), "true");
+            else options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return new Args(options);
+    }
+
+    public String get(String key, String fallback){
+        return options.getOrDefault(key, fallback);
+    }
+
+    public int getInt(String key, int fallback){
+        return options.containsKey(key) ? Integer.parseInt(options.get(key)) : fallback;
+    }
+
+    public long getLong(String key, long fallback){
+        return options.containsKey(key) ? Long.parseLong(options.get(key)) : fallback;
+    }
+
+    public double getDouble(String key, double fallback){
+        return options.containsKey(key) ? Double.parseDouble(options.get(key)) : fallback;
+    }
+
+    public boolean has(String key){
+        return options.containsKey(key);
+    }
+}
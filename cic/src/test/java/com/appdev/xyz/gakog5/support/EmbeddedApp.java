@@ -0,0 +1,104 @@
+package com.appdev.xyz.gakog5.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.appdev.xyz.gakog5.CicApplication;
+import com.appdev.xyz.gakog5.entity.chatbot.Category;
+import com.appdev.xyz.gakog5.entity.user.Admin;
+import com.appdev.xyz.gakog5.entity.user.User;
+import com.appdev.xyz.gakog5.entity.user.UserRole;
+import com.appdev.xyz.gakog5.repository.chatbot.CategoryRepository;
+import com.appdev.xyz.gakog5.repository.user.AdminRepository;
+import com.appdev.xyz.gakog5.repository.user.UserRepository;
+
+/**
+ * The whole app on a random port with an in-memory H2 database, talking to the given
+ * completion endpoint. Used by the load tests to get a realistic stack without MySQL or Groq.
+ */
+public class EmbeddedApp implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedApp(ConfigurableApplicationContext context){
+        this.context = context;
+    }
+
+    /**
+     * @param properties extra key=value properties; they override the defaults set here
+     */
+    public static EmbeddedApp start(String completionUrl, String... properties){
+        List<String> all = new ArrayList<>(List.of(
+            "server.port=0",
+            "spring.main.banner-mode=off",
+            "logging.level.root=WARN",
+            "spring.devtools.restart.enabled=false",
+            "spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.mail.host=localhost",
+            "groq.api.url=" + completionUrl,
+            "groq.api.key=stub",
+            "nlp.vector-index.path=" + tempFile(),
+            // Load tests push many questions through few accounts; pass chat.rate.* to test the limiter
+            "chat.rate.capacity=1000000",
+            "chat.rate.refill-per-minute=1000000"));
+        all.addAll(List.of(properties));
+        return new EmbeddedApp(new SpringApplicationBuilder(CicApplication.class)
+            .properties(all.toArray(String[]::new))
+            .run());
+    }
+
+    public String baseUrl(){
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public <T> T bean(Class<T> type){
+        return context.getBean(type);
+    }
+
+    public User createUser(String email, String password, UserRole role){
+        return bean(UserRepository.class).save(User.builder()
+            .firstName("Load")
+            .lastName("Test")
+            .email(email)
+            .password(bean(PasswordEncoder.class).encode(password))
+            .role(role)
+            .build());
+    }
+
+    public Admin createAdmin(String email, String password){
+        return bean(AdminRepository.class).save(Admin.builder()
+            .user(createUser(email, password, UserRole.ADMIN))
+            .build());
+    }
+
+    public Category createCategory(String name, String content, Admin createdBy){
+        return bean(CategoryRepository.class).save(Category.builder()
+            .name(name)
+            .content(content)
+            .createdBy(createdBy)
+            .build());
+    }
+
+    @Override
+    public void close(){
+        context.close();
+    }
+
+    private static String tempFile(){
+        try{
+            return Files.createTempFile("vector-index", ".bin").toString();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
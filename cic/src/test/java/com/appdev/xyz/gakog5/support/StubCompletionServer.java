@@ -0,0 +1,210 @@
+package com.appdev.xyz.gakog5.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal OpenAI-compatible chat-completion endpoint for local benchmarks and load tests.
+ * Responses are completed from a scheduler after the configured latency, so a
+ * handful of threads can hold thousands of requests in flight like a real upstream.
+ *
+ * Latency is log-normal around a median (fixed when sigma is 0), answers are produced at a
+ * configurable token rate (streamed token by token when the request asks for it), and a
+ * fraction of requests can be failed with a chosen status.
+ *
+ * It can also run on its own so a local app can be pointed at it with GROQ_API_URL:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.appdev.xyz.gakog5.support.StubCompletionServer
+ *     -Dexec.args="--port=8089 --median-ms=800 --sigma=0.5 --tokens-per-second=250 --answer-tokens=120 --error-rate=0.02"
+ */
+public class StubCompletionServer implements AutoCloseable {
+
+    private static final String[] WORDS = {"Stub", " streamed", " answer", " about", " the", " category", " content", "."};
+
+    private final HttpServer server;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile long medianLatencyMs;
+    private volatile double latencySigma;
+    private volatile double prefillMsPerKb;
+    private volatile double tokensPerSecond;
+    private volatile int answerTokens = 3;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+
+    public StubCompletionServer(int port, long latencyMs) throws IOException {
+        this.medianLatencyMs = latencyMs;
+        // The JDK server closes keep-alive connections beyond 200 idle ones by default
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(Executors.newFixedThreadPool(4));
+    }
+
+    /**
+     * Log-normal time to first token: half of the requests are faster than the median and
+     * about 1% slower than median * e^(2.33 * sigma).
+     */
+    public StubCompletionServer latency(long medianMs, double sigma){
+        this.medianLatencyMs = medianMs;
+        this.latencySigma = sigma;
+        return this;
+    }
+
+    /**
+     * Adds latency proportional to the request size, like the prompt prefill of a real model.
+     */
+    public StubCompletionServer prefillMsPerKb(double prefillMsPerKb){
+        this.prefillMsPerKb = prefillMsPerKb;
+        return this;
+    }
+
+    /**
+     * Generation speed once the first token is out; 0 produces the whole answer at once.
+     */
+    public StubCompletionServer tokensPerSecond(double tokensPerSecond){
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+
+    public StubCompletionServer answerTokens(int answerTokens){
+        this.answerTokens = Math.max(1, answerTokens);
+        return this;
+    }
+
+    /**
+     * Fails this fraction of requests with the given status (429 answers carry Retry-After).
+     */
+    public StubCompletionServer errorRate(double errorRate, int status){
+        this.errorRate = errorRate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    public StubCompletionServer start(){
+        server.start();
+        return this;
+    }
+
+    public String url(){
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public long requestCount(){
+        return requests.get();
+    }
+
+    public long errorCount(){
+        return errors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = (long) (medianLatencyMs * Math.exp(latencySigma * random.nextGaussian()))
+            + (long) (prefillMsPerKb * request.length() / 1024);
+
+        if(random.nextDouble() < errorRate){
+            errors.incrementAndGet();
+            scheduler.schedule(() -> respondError(exchange), delay, TimeUnit.MILLISECONDS);
+        }else if(request.contains("\"stream\":true")){
+            scheduler.schedule(() -> startStream(exchange), delay, TimeUnit.MILLISECONDS);
+        }else{
+            long generation = tokensPerSecond > 0 ? (long) (answerTokens * 1000 / tokensPerSecond) : 0;
+            scheduler.schedule(() -> respond(exchange), delay + generation, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void startStream(HttpExchange exchange){
+        try{
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            streamToken(exchange, exchange.getResponseBody(), 0);
+        }catch(IOException e){
+            exchange.close();
+        }
+    }
+
+    // Writes one token, then schedules the next one at the configured rate
+    private void streamToken(HttpExchange exchange, OutputStream out, int index){
+        try{
+            if(index == answerTokens){
+                out.write(("data: {\"model\":\"stub-model\",\"choices\":[],\"usage\":{\"prompt_tokens\":42,"
+                    + "\"completion_tokens\":" + answerTokens + "}}\n\ndata: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+                out.close();
+                return;
+            }
+            String chunk = "data: {\"model\":\"stub-model\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\""
+                + WORDS[index % WORDS.length] + "\"}}]}\n\n";
+            out.write(chunk.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            if(tokensPerSecond > 0){
+                scheduler.schedule(() -> streamToken(exchange, out, index + 1),
+                    (long) (1_000_000 / tokensPerSecond), TimeUnit.MICROSECONDS);
+            }else{
+                streamToken(exchange, out, index + 1);
+            }
+        }catch(IOException e){
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange){
+        StringBuilder answer = new StringBuilder();
+        for(int i = 0; i < answerTokens; i++) answer.append(WORDS[i % WORDS.length]);
+        String body = "{\"id\":\"stub\",\"object\":\"chat.completion\",\"model\":\"stub-model\","
+            + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + answer + "\"},\"finish_reason\":\"stop\"}],"
+            + "\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":" + answerTokens + ",\"total_tokens\":" + (42 + answerTokens) + "}}";
+        write(exchange, 200, body);
+    }
+
+    private void respondError(HttpExchange exchange){
+        if(errorStatus == 429) exchange.getResponseHeaders().set("Retry-After", "1");
+        write(exchange, errorStatus, "{\"error\":{\"message\":\"Stub failure\",\"type\":\"stub_error\"}}");
+    }
+
+    private void write(HttpExchange exchange, int status, String body){
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try(OutputStream out = exchange.getResponseBody()){
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        }catch(IOException e){
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close(){
+        server.stop(0);
+        scheduler.shutdownNow();
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Args options = Args.parse(args);
+        long median = options.getLong("median-ms", 800);
+        StubCompletionServer stub = new StubCompletionServer(options.getInt("port", 8089), median)
+            .latency(median, options.getDouble("sigma", 0.5))
+            .tokensPerSecond(options.getDouble("tokens-per-second", 250))
+            .answerTokens(options.getInt("answer-tokens", 120))
+            .prefillMsPerKb(options.getDouble("prefill-ms-per-kb", 0))
+            .errorRate(options.getDouble("error-rate", 0), options.getInt("error-status", 500))
+            .start();
+        System.out.println("Stub completion endpoint listening on " + stub.url());
+        System.out.println("Start the app with GROQ_API_URL=" + stub.url());
+        Thread.currentThread().join();
+    }
+}